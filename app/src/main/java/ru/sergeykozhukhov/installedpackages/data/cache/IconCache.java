@@ -0,0 +1,342 @@
+package ru.sergeykozhukhov.installedpackages.data.cache;
+
+import android.content.pm.PackageManager;
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.drawable.BitmapDrawable;
+import android.graphics.drawable.Drawable;
+import android.os.Build;
+import android.util.Log;
+import android.util.LruCache;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import ru.sergeykozhukhov.installedpackages.data.metrics.Metrics;
+
+/**
+ * Двухуровневый кэш иконок приложений.
+ *
+ * <p> Первый уровень - LRU кэш растровых изображений в памяти, ограниченный по количеству байт.
+ * Второй уровень - PNG файлы на диске, уже уменьшенные до размера отображения.
+ * Ключ кэша - имя пакета и время его последнего обновления, поэтому обновленное приложение получает новую иконку.
+ *
+ * <p> Иконка растрируется один раз в размере отображения. В памяти на Android 8.0+ хранятся аппаратные
+ * растровые изображения ({@link Bitmap.Config#HARDWARE}): пиксели загружаются в память GPU один раз при
+ * декодировании и не занимают кучу. На более ранних версиях непрозрачные иконки хранятся в RGB_565,
+ * остальные - в ARGB_8888.
+ */
+public class IconCache {
+
+    private static final String TAG = "IconCache";
+
+    private static final String FILE_EXTENSION = ".png";
+    private static final char VERSION_SEPARATOR = '_';
+    // TEMP_FILE_SUFFIX - суффикс временного файла, в который иконка записывается перед переименованием
+    private static final String TEMP_FILE_SUFFIX = ".tmp";
+    // HARDWARE_BITMAP_BYTES - учитываемый объем аппаратного изображения: пиксели хранятся в памяти GPU,
+    // а в куче остается только объект изображения; ограничивает количество таких иконок в памяти
+    private static final int HARDWARE_BITMAP_BYTES = 1024;
+
+    private final PackageManager mPackageManager;
+    private final Resources mResources;
+    private final File mDirectory;
+    // mIconSize - размер стороны иконки в пикселях, в котором она отображается в списке
+    private final int mIconSize;
+    private final LruCache<String, Bitmap> mMemoryCache;
+    private final Metrics mMetrics;
+
+    /**
+     * Конструктор кэша иконок.
+     *
+     * @param packageManager {@link PackageManager} для получения иконок, отсутствующих в кэше.
+     * @param resources      {@link Resources} для создания {@link BitmapDrawable}.
+     * @param directory      директория дискового кэша.
+     * @param iconSize       размер стороны иконки в пикселях.
+     * @param maxMemoryBytes максимальный объем памяти, занимаемый иконками в памяти.
+     * @param metrics        {@link Metrics} метрики получения иконок.
+     */
+    public IconCache(@NonNull PackageManager packageManager,
+                     @NonNull Resources resources,
+                     @NonNull File directory,
+                     int iconSize,
+                     int maxMemoryBytes,
+                     @NonNull Metrics metrics) {
+        mPackageManager = packageManager;
+        mMetrics = metrics;
+        mResources = resources;
+        mDirectory = directory;
+        mIconSize = iconSize;
+        mMemoryCache = new LruCache<String, Bitmap>(maxMemoryBytes) {
+            @Override
+            protected int sizeOf(String key, Bitmap bitmap) {
+                if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && bitmap.getConfig() == Bitmap.Config.HARDWARE)
+                    return HARDWARE_BITMAP_BYTES;
+                return bitmap.getByteCount();
+            }
+        };
+    }
+
+    /**
+     * Получение иконки из кэша в памяти без обращения к диску и PackageManager.
+     *
+     * @param key ключ иконки, см. {@link #createKey(String, long)}.
+     * @return иконка или {@code null}, если ее нет в памяти.
+     */
+    @Nullable
+    public Drawable peekIcon(@NonNull String key) {
+        Bitmap bitmap = mMemoryCache.get(key);
+        return bitmap != null ? new BitmapDrawable(mResources, bitmap) : null;
+    }
+
+    /**
+     * Получение иконки приложения. Иконка ищется в памяти, затем на диске,
+     * и только при их отсутствии запрашивается у PackageManager.
+     * Метод выполняет операции ввода-вывода и не должен вызываться в главном потоке.
+     *
+     * @param key ключ иконки, см. {@link #createKey(String, long)}.
+     * @return иконка приложения в размере отображения.
+     */
+    @NonNull
+    public Drawable getIcon(@NonNull String key) {
+        int separatorIndex = key.lastIndexOf(VERSION_SEPARATOR);
+        String packageName = key.substring(0, separatorIndex);
+        long lastUpdateTime = Long.parseLong(key.substring(separatorIndex + 1));
+
+        Bitmap bitmap = mMemoryCache.get(key);
+        if (bitmap != null)
+            return new BitmapDrawable(mResources, bitmap);
+
+        long startTime = mMetrics.startTimer();
+        if (lastUpdateTime != 0) {
+            bitmap = readFromDisk(key);
+            if (bitmap != null)
+                mMemoryCache.put(key, bitmap);
+        }
+
+        if (bitmap == null) {
+            Drawable drawable;
+            boolean isFound = true;
+            try {
+                drawable = mPackageManager.getApplicationIcon(packageName);
+            } catch (PackageManager.NameNotFoundException e) {
+                // пакет удален после загрузки списка
+                drawable = mPackageManager.getDefaultActivityIcon();
+                isFound = false;
+            }
+            mMetrics.increment(Metrics.Counter.BINDER_CALLS);
+            mMetrics.increment(Metrics.Counter.ICON_RASTERIZED);
+            bitmap = rasterize(drawable);
+            // на диск пишется программное изображение, в память - изображение для отображения
+            if (isFound && lastUpdateTime != 0)
+                writeToDisk(packageName, lastUpdateTime, key, bitmap);
+            bitmap = toDisplayBitmap(bitmap);
+            mMemoryCache.put(key, bitmap);
+        }
+        mMetrics.stopTimer(Metrics.Stage.LOAD_ICON, startTime);
+
+        return new BitmapDrawable(mResources, bitmap);
+    }
+
+    /**
+     * Очистка кэша в памяти, например при нехватке памяти. Дисковый кэш сохраняется.
+     */
+    public void trimMemory() {
+        mMemoryCache.evictAll();
+    }
+
+    /**
+     * Удаление иконок всех версий удаленного пакета из памяти и с диска.
+     * Метод выполняет операции ввода-вывода и не должен вызываться в главном потоке.
+     *
+     * @param packageName имя пакета.
+     */
+    public void remove(@NonNull String packageName) {
+        String prefix = packageName + VERSION_SEPARATOR;
+        for (String key : mMemoryCache.snapshot().keySet()) {
+            if (key.startsWith(prefix) && key.indexOf(VERSION_SEPARATOR, prefix.length()) < 0)
+                mMemoryCache.remove(key);
+        }
+        deleteFromDisk(packageName, Long.MAX_VALUE);
+    }
+
+    /**
+     * Отрисовка иконки в растровое изображение размера отображения.
+     */
+    @NonNull
+    private Bitmap rasterize(@NonNull Drawable drawable) {
+        Bitmap bitmap = Bitmap.createBitmap(mIconSize, mIconSize, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(bitmap);
+        drawable.setBounds(0, 0, mIconSize, mIconSize);
+        drawable.draw(canvas);
+        return bitmap;
+    }
+
+    /**
+     * Преобразование растрированной иконки в формат хранения в памяти.
+     * Исходное изображение после преобразования освобождается.
+     */
+    @NonNull
+    private Bitmap toDisplayBitmap(@NonNull Bitmap bitmap) {
+        Bitmap displayBitmap = null;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            displayBitmap = bitmap.copy(Bitmap.Config.HARDWARE, false);
+        } else if (isOpaque(bitmap)) {
+            displayBitmap = bitmap.copy(Bitmap.Config.RGB_565, false);
+        }
+        if (displayBitmap == null)
+            return bitmap;
+        bitmap.recycle();
+        return displayBitmap;
+    }
+
+    /**
+     * Проверка, что у иконки нет прозрачных пикселей и альфа-канал можно не хранить.
+     */
+    private static boolean isOpaque(@NonNull Bitmap bitmap) {
+        int width = bitmap.getWidth();
+        int[] row = new int[width];
+        for (int y = 0; y < bitmap.getHeight(); y++) {
+            bitmap.getPixels(row, 0, width, 0, y, width, 1);
+            for (int pixel : row) {
+                if ((pixel >>> 24) != 0xFF)
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    @Nullable
+    private Bitmap readFromDisk(@NonNull String key) {
+        File file = new File(mDirectory, key + FILE_EXTENSION);
+        if (!file.exists())
+            return null;
+
+        // файл мог быть сохранен при другой плотности экрана, поэтому крупные иконки декодируются с уменьшением
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeFile(file.getPath(), options);
+        if (options.outWidth <= 0 || options.outHeight <= 0)
+            return null;
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = calculateSampleSize(options.outWidth, options.outHeight);
+
+        boolean isExactSize = options.outWidth / options.inSampleSize == mIconSize
+                && options.outHeight / options.inSampleSize == mIconSize;
+        if (isExactSize && Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            // декодирование сразу в память GPU, без промежуточного изображения в куче
+            options.inPreferredConfig = Bitmap.Config.HARDWARE;
+            return BitmapFactory.decodeFile(file.getPath(), options);
+        }
+
+        options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+        Bitmap bitmap = BitmapFactory.decodeFile(file.getPath(), options);
+        if (bitmap == null)
+            return null;
+        if (!isExactSize) {
+            Bitmap scaledBitmap = Bitmap.createScaledBitmap(bitmap, mIconSize, mIconSize, true);
+            if (scaledBitmap != bitmap)
+                bitmap.recycle();
+            bitmap = scaledBitmap;
+        }
+        return toDisplayBitmap(bitmap);
+    }
+
+    /**
+     * Наибольшая степень двойки, при уменьшении в которую изображение остается не меньше размера отображения.
+     */
+    private int calculateSampleSize(int width, int height) {
+        int sampleSize = 1;
+        while (width / (sampleSize * 2) >= mIconSize && height / (sampleSize * 2) >= mIconSize) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    /**
+     * Удаление с диска иконок версий пакета, предшествующих указанной.
+     * Временные файлы не удаляются: в них могут писать другие потоки.
+     *
+     * @param lastUpdateTime версия, иконки которой и более новых версий сохраняются;
+     *                       {@link Long#MAX_VALUE} - удаляются иконки всех версий.
+     */
+    private void deleteFromDisk(@NonNull String packageName, final long lastUpdateTime) {
+        final String prefix = packageName + VERSION_SEPARATOR;
+        File[] files = mDirectory.listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                if (!name.startsWith(prefix) || !name.endsWith(FILE_EXTENSION))
+                    return false;
+                try {
+                    return Long.parseLong(name.substring(prefix.length(),
+                            name.length() - FILE_EXTENSION.length())) < lastUpdateTime;
+                } catch (NumberFormatException e) {
+                    return false; // иконка другого пакета или временный файл
+                }
+            }
+        });
+        if (files == null)
+            return;
+        for (File file : files) {
+            if (!file.delete())
+                Log.w(TAG, "Unable to delete icon " + file.getName());
+        }
+    }
+
+    private void writeToDisk(@NonNull String packageName, long lastUpdateTime, @NonNull String key,
+                             @NonNull Bitmap bitmap) {
+        if (!mDirectory.exists() && !mDirectory.mkdirs()) {
+            Log.w(TAG, "Unable to create icon cache directory");
+            return;
+        }
+
+        // запись через временный файл, чтобы параллельные загрузки не прочитали недописанный файл
+        File tempFile = new File(mDirectory, key + TEMP_FILE_SUFFIX + Thread.currentThread().getId());
+        OutputStream outputStream = null;
+        try {
+            outputStream = new FileOutputStream(tempFile);
+            bitmap.compress(Bitmap.CompressFormat.PNG, 100, outputStream);
+            outputStream.close();
+            outputStream = null;
+            if (tempFile.renameTo(new File(mDirectory, key + FILE_EXTENSION))) {
+                // иконки предыдущих версий пакета больше не понадобятся; более новую версию
+                // могла записать параллельная загрузка, и она сохраняется
+                deleteFromDisk(packageName, lastUpdateTime);
+            } else {
+                Log.w(TAG, "Unable to store icon " + key);
+            }
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to store icon " + key, e);
+        } finally {
+            if (outputStream != null) {
+                try {
+                    outputStream.close();
+                } catch (IOException e) {
+                    e.printStackTrace();
+                }
+            }
+            if (tempFile.exists() && !tempFile.delete())
+                Log.w(TAG, "Unable to delete temporary icon file");
+        }
+    }
+
+    /**
+     * Создание ключа иконки.
+     *
+     * @param packageName    имя пакета.
+     * @param lastUpdateTime время последнего обновления пакета (0 - неизвестно, дисковый кэш не используется).
+     * @return ключ иконки.
+     */
+    @NonNull
+    public static String createKey(@NonNull String packageName, long lastUpdateTime) {
+        return packageName + VERSION_SEPARATOR + lastUpdateTime;
+    }
+}
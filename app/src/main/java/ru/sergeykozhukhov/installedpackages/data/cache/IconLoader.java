@@ -0,0 +1,141 @@
+package ru.sergeykozhukhov.installedpackages.data.cache;
+
+import android.graphics.drawable.Drawable;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ru.sergeykozhukhov.installedpackages.data.executor.TaskExecutor;
+
+/**
+ * Асинхронный загрузчик иконок для элементов списка.
+ *
+ * <p> Иконки загружаются только для отображаемых и ближайших к ним элементов,
+ * запросы переиспользованных элементов отменяются.
+ */
+public class IconLoader {
+
+    private final IconCache mIconCache;
+    // mTaskExecutor - иконки видимых элементов загружаются раньше предварительно загружаемых
+    private final TaskExecutor mTaskExecutor;
+    // mPrefetchKeys - ключи иконок, предварительная загрузка которых уже запланирована
+    private final Set<String> mPrefetchKeys = Collections.newSetFromMap(new ConcurrentHashMap<String, Boolean>());
+
+    /**
+     * Конструктор загрузчика иконок.
+     *
+     * @param iconCache    {@link IconCache} кэш иконок.
+     * @param taskExecutor {@link TaskExecutor} исполнитель загрузки иконок.
+     */
+    public IconLoader(@NonNull IconCache iconCache, @NonNull TaskExecutor taskExecutor) {
+        mIconCache = iconCache;
+        mTaskExecutor = taskExecutor;
+    }
+
+    /**
+     * Получение иконки, если она уже находится в памяти.
+     *
+     * @param key ключ иконки.
+     * @return иконка или {@code null}, если ее необходимо загрузить.
+     */
+    @Nullable
+    public Drawable peekIcon(@NonNull String key) {
+        return mIconCache.peekIcon(key);
+    }
+
+    /**
+     * Асинхронная загрузка иконки.
+     *
+     * @param key      ключ иконки.
+     * @param listener {@link OnIconLoadedListener} слушатель, вызываемый в главном потоке, если запрос не отменен.
+     * @return {@link Request} запрос, который можно отменить.
+     */
+    @NonNull
+    public Request loadIcon(@NonNull final String key, @NonNull final OnIconLoadedListener listener) {
+        final Request request = new Request();
+        mTaskExecutor.executeInBackground(new Runnable() {
+            @Override
+            public void run() {
+                // элемент мог быть переиспользован, пока запрос ждал в очереди
+                if (request.isCancelled())
+                    return;
+
+                final Drawable icon = mIconCache.getIcon(key);
+                mTaskExecutor.executeOnMainThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (!request.isCancelled())
+                            listener.onIconLoaded(icon);
+                    }
+                });
+            }
+        }, TaskExecutor.Priority.VISIBLE);
+        return request;
+    }
+
+    /**
+     * Предварительная загрузка иконки в память для элемента, который скоро будет отображен.
+     *
+     * @param key ключ иконки.
+     */
+    public void prefetchIcon(@NonNull final String key) {
+        if (mIconCache.peekIcon(key) != null || !mPrefetchKeys.add(key))
+            return;
+
+        mTaskExecutor.executeInBackground(new Runnable() {
+            @Override
+            public void run() {
+                mIconCache.getIcon(key);
+                mPrefetchKeys.remove(key);
+            }
+        }, TaskExecutor.Priority.BACKGROUND);
+    }
+
+    /**
+     * Удаление иконок удаленного пакета из кэша.
+     * Метод выполняет операции ввода-вывода и не должен вызываться в главном потоке.
+     *
+     * @param packageName имя пакета.
+     */
+    @WorkerThread
+    public void removeIcons(@NonNull String packageName) {
+        mIconCache.remove(packageName);
+    }
+
+    /**
+     * Запрос загрузки иконки.
+     */
+    public static class Request {
+
+        private volatile boolean mIsCancelled;
+
+        /**
+         * Отмена запроса. Слушатель отмененного запроса не вызывается.
+         */
+        public void cancel() {
+            mIsCancelled = true;
+        }
+
+        boolean isCancelled() {
+            return mIsCancelled;
+        }
+    }
+
+    /**
+     * Интерфейс слушателя окончания загрузки иконки.
+     */
+    public interface OnIconLoadedListener {
+
+        /**
+         * Метод, вызываемый в главном потоке после загрузки иконки.
+         *
+         * @param icon иконка приложения.
+         */
+        void onIconLoaded(@NonNull Drawable icon);
+    }
+}
@@ -0,0 +1,161 @@
+package ru.sergeykozhukhov.installedpackages.data.cache;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import ru.sergeykozhukhov.installedpackages.data.model.ScanMode;
+import ru.sergeykozhukhov.installedpackages.data.store.PackageColumnStore;
+
+/**
+ * Кэш снимка списка установленных приложений, сохраняемый на диск в компактном двоичном формате.
+ *
+ * <p> Снимок переживает завершение процесса и позволяет показать список сразу после запуска,
+ * до обращения к PackageManager.
+ */
+public class PackageSnapshotCache {
+
+    private static final String TAG = "PackageSnapshotCache";
+
+    // MAGIC и VERSION - заголовок файла, позволяющий отбросить файл чужого или устаревшего формата
+    private static final int MAGIC = 0x50534E50; // "PSNP"
+    private static final int VERSION = 7;
+
+    private final File mFile;
+
+    /**
+     * Конструктор кэша снимка.
+     *
+     * @param file файл, в котором хранится снимок.
+     */
+    public PackageSnapshotCache(@NonNull File file) {
+        mFile = file;
+    }
+
+    /**
+     * Чтение снимка с диска.
+     *
+     * @return снимок или {@code null}, если снимок отсутствует или поврежден.
+     */
+    @Nullable
+    public Snapshot read() {
+        if (!mFile.exists())
+            return null;
+
+        DataInputStream inputStream = null;
+        try {
+            inputStream = new DataInputStream(new BufferedInputStream(new FileInputStream(mFile)));
+            if (inputStream.readInt() != MAGIC || inputStream.readInt() != VERSION)
+                return null;
+
+            boolean isSystem = inputStream.readBoolean();
+            ScanMode scanMode = ScanMode.valueOf(inputStream.readUTF());
+            String locale = inputStream.readUTF();
+            return new Snapshot(isSystem, scanMode, locale, PackageColumnStore.readFrom(inputStream));
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to read snapshot", e);
+            return null;
+        } catch (IllegalArgumentException e) {
+            Log.w(TAG, "Unknown scan mode in snapshot", e);
+            return null;
+        } finally {
+            closeQuietly(inputStream);
+        }
+    }
+
+    /**
+     * Запись снимка на диск. Файл заменяется целиком, поэтому при сбое записи остается прежний снимок.
+     *
+     * @param snapshot снимок для сохранения.
+     */
+    public void write(@NonNull Snapshot snapshot) {
+        File tempFile = new File(mFile.getPath() + ".tmp");
+        DataOutputStream outputStream = null;
+        try {
+            outputStream = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile)));
+            outputStream.writeInt(MAGIC);
+            outputStream.writeInt(VERSION);
+            outputStream.writeBoolean(snapshot.isSystem());
+            outputStream.writeUTF(snapshot.getScanMode().name());
+            outputStream.writeUTF(snapshot.getLocale());
+            snapshot.getStore().writeTo(outputStream);
+            outputStream.close();
+            outputStream = null;
+
+            if (!tempFile.renameTo(mFile))
+                Log.w(TAG, "Unable to replace snapshot file");
+        } catch (IOException e) {
+            Log.w(TAG, "Unable to write snapshot", e);
+        } finally {
+            closeQuietly(outputStream);
+            if (tempFile.exists() && !tempFile.delete())
+                Log.w(TAG, "Unable to delete temporary snapshot file");
+        }
+    }
+
+    private static void closeQuietly(@Nullable Closeable closeable) {
+        if (closeable == null)
+            return;
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    /**
+     * Снимок списка установленных приложений.
+     */
+    public static class Snapshot {
+
+        // mIsSystem - включены ли в снимок системные приложения
+        // mScanMode - режим, в котором получен список приложений
+        // mLocale - локаль названий приложений, как {@link java.util.Locale#toLanguageTag()}
+        private final boolean mIsSystem;
+        private final ScanMode mScanMode;
+        private final String mLocale;
+        private final PackageColumnStore mStore;
+
+        /**
+         * @param locale локаль, в которой получены названия приложений.
+         * @param store  данные приложений; после передачи в снимок хранилище не должно изменяться.
+         */
+        public Snapshot(boolean isSystem, @NonNull ScanMode scanMode, @NonNull String locale,
+                        @NonNull PackageColumnStore store) {
+            mIsSystem = isSystem;
+            mScanMode = scanMode;
+            mLocale = locale;
+            mStore = store;
+        }
+
+        public boolean isSystem() {
+            return mIsSystem;
+        }
+
+        @NonNull
+        public ScanMode getScanMode() {
+            return mScanMode;
+        }
+
+        @NonNull
+        public String getLocale() {
+            return mLocale;
+        }
+
+        @NonNull
+        public PackageColumnStore getStore() {
+            return mStore;
+        }
+    }
+}
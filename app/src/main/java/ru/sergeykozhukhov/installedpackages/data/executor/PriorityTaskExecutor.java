@@ -0,0 +1,124 @@
+package ru.sergeykozhukhov.installedpackages.data.executor;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Process;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Исполнитель задач на собственном пуле потоков с очередью по приоритетам.
+ *
+ * <p> В отличие от AsyncTask, пул не разделяется с остальным кодом процесса, а ожидающие задачи
+ * выбираются по приоритету: иконки видимых элементов и загрузка списка не ждут предварительной загрузки.
+ * Приоритет потока Linux выставляется по приоритету выполняемой задачи.
+ */
+public class PriorityTaskExecutor implements TaskExecutor {
+
+    // одна задача загрузки списка и две задачи загрузки иконок одновременно
+    private static final int DEFAULT_THREAD_COUNT = 3;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+
+    private final ThreadPoolExecutor mExecutor;
+    private final Executor mMainThreadExecutor;
+    // mSequence - порядковый номер задачи, задачи одного приоритета выполняются по очереди
+    private final AtomicLong mSequence = new AtomicLong();
+
+    public PriorityTaskExecutor() {
+        this(DEFAULT_THREAD_COUNT, new MainThreadExecutor());
+    }
+
+    /**
+     * @param threadCount        количество фоновых потоков.
+     * @param mainThreadExecutor исполнитель задач главного потока.
+     */
+    PriorityTaskExecutor(int threadCount, @NonNull Executor mainThreadExecutor) {
+        mMainThreadExecutor = mainThreadExecutor;
+        mExecutor = new ThreadPoolExecutor(threadCount, threadCount,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new PriorityBlockingQueue<Runnable>(), new TaskThreadFactory());
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    @Override
+    public void executeInBackground(@NonNull Runnable task, @NonNull Priority priority) {
+        mExecutor.execute(new PrioritizedTask(task, priority, mSequence.getAndIncrement()));
+    }
+
+    @Override
+    public void executeOnMainThread(@NonNull Runnable task) {
+        mMainThreadExecutor.execute(task);
+    }
+
+    /**
+     * Установка приоритета потока перед выполнением задачи.
+     */
+    void applyThreadPriority(@NonNull Priority priority) {
+        Process.setThreadPriority(priority == Priority.VISIBLE
+                ? Process.THREAD_PRIORITY_DEFAULT : Process.THREAD_PRIORITY_BACKGROUND);
+    }
+
+    /**
+     * Задача очереди: сравнивается по приоритету, затем по порядку добавления.
+     */
+    private class PrioritizedTask implements Runnable, Comparable<PrioritizedTask> {
+
+        private final Runnable mTask;
+        private final Priority mPriority;
+        private final long mSequence;
+
+        PrioritizedTask(@NonNull Runnable task, @NonNull Priority priority, long sequence) {
+            mTask = task;
+            mPriority = priority;
+            mSequence = sequence;
+        }
+
+        @Override
+        public void run() {
+            applyThreadPriority(mPriority);
+            mTask.run();
+        }
+
+        @Override
+        public int compareTo(@NonNull PrioritizedTask o) {
+            int compare = mPriority.compareTo(o.mPriority);
+            return compare != 0 ? compare : Long.compare(mSequence, o.mSequence);
+        }
+    }
+
+    /**
+     * Выполнение задач в главном потоке через его очередь сообщений.
+     */
+    private static class MainThreadExecutor implements Executor {
+
+        private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+        @Override
+        public void execute(@NonNull Runnable runnable) {
+            mMainHandler.post(runnable);
+        }
+    }
+
+    /**
+     * Фабрика фоновых потоков с понятными именами.
+     */
+    private static class TaskThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger mThreadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "Task #" + mThreadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+package ru.sergeykozhukhov.installedpackages.data.executor;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Исполнитель, выполняющий все задачи сразу в вызывающем потоке.
+ *
+ * <p> Асинхронный код с таким исполнителем выполняется детерминированно и без главного потока Android,
+ * поэтому он используется в тестах и бенчмарках.
+ */
+public class SynchronousTaskExecutor implements TaskExecutor {
+
+    @Override
+    public void executeInBackground(@NonNull Runnable task, @NonNull Priority priority) {
+        task.run();
+    }
+
+    @Override
+    public void executeOnMainThread(@NonNull Runnable task) {
+        task.run();
+    }
+}
@@ -0,0 +1,39 @@
+package ru.sergeykozhukhov.installedpackages.data.executor;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Исполнитель задач репозитория: фоновые задачи с приоритетами и передача результатов в главный поток.
+ *
+ * <p> В приложении используется {@link PriorityTaskExecutor}, в тестах и бенчмарках -
+ * {@link SynchronousTaskExecutor}, выполняющий все задачи сразу в вызывающем потоке.
+ */
+public interface TaskExecutor {
+
+    /**
+     * Приоритет фоновой задачи. Задачи с более высоким приоритетом начинаются раньше,
+     * задачи с одинаковым приоритетом - в порядке добавления.
+     *
+     * VISIBLE - работа, результат которой пользователь ждет на экране: загрузка списка, иконки видимых элементов
+     * BACKGROUND - работа впрок: предварительная загрузка иконок
+     */
+    enum Priority {
+        VISIBLE,
+        BACKGROUND
+    }
+
+    /**
+     * Выполнение задачи в фоновом потоке.
+     *
+     * @param task     задача.
+     * @param priority {@link Priority} приоритет задачи.
+     */
+    void executeInBackground(@NonNull Runnable task, @NonNull Priority priority);
+
+    /**
+     * Выполнение задачи в главном потоке. Задачи выполняются в порядке добавления.
+     *
+     * @param task задача.
+     */
+    void executeOnMainThread(@NonNull Runnable task);
+}
@@ -0,0 +1,245 @@
+package ru.sergeykozhukhov.installedpackages.data.filter;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import ru.sergeykozhukhov.installedpackages.data.model.IInstalledPackageModel;
+import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackageModel;
+import ru.sergeykozhukhov.installedpackages.data.model.MetadataColumn;
+import ru.sergeykozhukhov.installedpackages.data.model.PackageMetadataModel;
+
+/**
+ * Составной фильтр приложений: условия по признакам приложения, установщику и размеру.
+ *
+ * <p> Фильтр неизменяем, условия задаются методами {@code with...}, каждый из которых возвращает новый фильтр.
+ * Условия по признакам сводятся к двум маскам битов - обязательных и запрещенных признаков, поэтому проверка
+ * модели - это сравнение масок, строки установщика и диапазона размера, а {@link #apply(List, Map)} проходит список один раз.
+ *
+ * <p> Установщик не входит в модель приложения: его получение - отдельный запрос к PackageManager для каждого
+ * пакета, поэтому он загружается как дополнительные данные {@link MetadataColumn#INSTALLER} и только
+ * при заданном условии по установщику, см. {@link #getMetadataColumns()}. Приложения, для которых
+ * дополнительные данные еще не загружены, условие не проходят, как неизмеренные приложения - условие по размеру.
+ */
+public class FilterSpec {
+
+    /**
+     * Фильтр без условий, пропускающий все приложения.
+     */
+    public static final FilterSpec ALL = new FilterSpec(0, 0, null, false, 0, Long.MAX_VALUE);
+
+    /**
+     * Установщик приложений без известного установщика, например установленных через adb или из файла apk.
+     */
+    public static final String INSTALLER_UNKNOWN = "";
+
+    // биты признаков приложения в масках
+    private static final int FLAG_SYSTEM = 1;
+    private static final int FLAG_ENABLED = 1 << 1;
+    private static final int FLAG_UPDATED_SYSTEM = 1 << 2;
+
+    // mRequiredFlags и mForbiddenFlags - признаки, которые должны быть у приложения и которых не должно быть
+    private final int mRequiredFlags;
+    private final int mForbiddenFlags;
+    // mInstallerPackageName - установщик приложения, {@code null} - любой
+    private final String mInstallerPackageName;
+    // mIsSizeFiltered - задан диапазон размера [mMinAppSize, mMaxAppSize], неизмеренные приложения его не проходят
+    private final boolean mIsSizeFiltered;
+    private final long mMinAppSize;
+    private final long mMaxAppSize;
+
+    private FilterSpec(int requiredFlags, int forbiddenFlags, @Nullable String installerPackageName,
+                       boolean isSizeFiltered, long minAppSize, long maxAppSize) {
+        mRequiredFlags = requiredFlags;
+        mForbiddenFlags = forbiddenFlags;
+        mInstallerPackageName = installerPackageName;
+        mIsSizeFiltered = isSizeFiltered;
+        mMinAppSize = minAppSize;
+        mMaxAppSize = maxAppSize;
+    }
+
+    /**
+     * @param include {@code true}, если системные приложения отображаются.
+     */
+    @NonNull
+    public FilterSpec withSystemApps(boolean include) {
+        return new FilterSpec(mRequiredFlags, setFlag(mForbiddenFlags, FLAG_SYSTEM, !include),
+                mInstallerPackageName, mIsSizeFiltered, mMinAppSize, mMaxAppSize);
+    }
+
+    /**
+     * @param include {@code true}, если пользовательские приложения отображаются.
+     */
+    @NonNull
+    public FilterSpec withUserApps(boolean include) {
+        return new FilterSpec(setFlag(mRequiredFlags, FLAG_SYSTEM, !include), mForbiddenFlags,
+                mInstallerPackageName, mIsSizeFiltered, mMinAppSize, mMaxAppSize);
+    }
+
+    /**
+     * @param only {@code true}, если отображаются только системные приложения, обновленные поверх образа системы.
+     */
+    @NonNull
+    public FilterSpec withOnlyUpdatedSystemApps(boolean only) {
+        return new FilterSpec(setFlag(mRequiredFlags, FLAG_UPDATED_SYSTEM, only), mForbiddenFlags,
+                mInstallerPackageName, mIsSizeFiltered, mMinAppSize, mMaxAppSize);
+    }
+
+    /**
+     * @param only {@code true}, если отображаются только отключенные приложения.
+     */
+    @NonNull
+    public FilterSpec withOnlyDisabledApps(boolean only) {
+        return new FilterSpec(mRequiredFlags, setFlag(mForbiddenFlags, FLAG_ENABLED, only),
+                mInstallerPackageName, mIsSizeFiltered, mMinAppSize, mMaxAppSize);
+    }
+
+    /**
+     * @param installerPackageName имя пакета установщика, {@link #INSTALLER_UNKNOWN} - приложения без установщика,
+     *                             {@code null} - любой установщик.
+     */
+    @NonNull
+    public FilterSpec withInstaller(@Nullable String installerPackageName) {
+        return new FilterSpec(mRequiredFlags, mForbiddenFlags,
+                installerPackageName, mIsSizeFiltered, mMinAppSize, mMaxAppSize);
+    }
+
+    /**
+     * Отображение только приложений с размером в диапазоне. Приложения с еще не измеренным размером не отображаются.
+     *
+     * @param minAppSize минимальный размер в байтах, включительно.
+     * @param maxAppSize максимальный размер в байтах, включительно.
+     */
+    @NonNull
+    public FilterSpec withAppSizeRange(long minAppSize, long maxAppSize) {
+        if (minAppSize < 0 || minAppSize > maxAppSize)
+            throw new IllegalArgumentException("Invalid size range [" + minAppSize + ", " + maxAppSize + "]");
+        return new FilterSpec(mRequiredFlags, mForbiddenFlags, mInstallerPackageName, true, minAppSize, maxAppSize);
+    }
+
+    /**
+     * Отмена условия по размеру приложения.
+     */
+    @NonNull
+    public FilterSpec withoutAppSizeRange() {
+        return new FilterSpec(mRequiredFlags, mForbiddenFlags, mInstallerPackageName, false, 0, Long.MAX_VALUE);
+    }
+
+    /**
+     * @return столбцы дополнительных данных, необходимые для проверки условий фильтра; пустой набор,
+     * если условия проверяются только по модели приложения.
+     */
+    @NonNull
+    public Set<MetadataColumn> getMetadataColumns() {
+        if (mInstallerPackageName == null)
+            return Collections.emptySet();
+        return EnumSet.of(MetadataColumn.INSTALLER);
+    }
+
+    /**
+     * @return {@code true}, если фильтр пропускает все приложения.
+     */
+    public boolean isAll() {
+        return equals(ALL);
+    }
+
+    /**
+     * Проверка приложения.
+     *
+     * @param metadata дополнительные данные приложения из {@link #getMetadataColumns()}, {@code null} - не загружены.
+     * @return {@code true}, если приложение проходит все условия фильтра.
+     */
+    public boolean matches(@NonNull IInstalledPackageModel model, @Nullable PackageMetadataModel metadata) {
+        int flags = (model.getIsAppSystem() ? FLAG_SYSTEM : 0)
+                | (model.getIsAppEnabled() ? FLAG_ENABLED : 0)
+                | (model.getIsUpdatedSystemApp() ? FLAG_UPDATED_SYSTEM : 0);
+        if ((flags & mRequiredFlags) != mRequiredFlags || (flags & mForbiddenFlags) != 0)
+            return false;
+
+        if (mInstallerPackageName != null) {
+            // данные другой версии пакета устарели
+            if (metadata == null || metadata.getLastUpdateTime() != model.getLastUpdateTime()
+                    || !metadata.hasColumn(MetadataColumn.INSTALLER))
+                return false;
+            String installerPackageName = metadata.getInstallerPackageName();
+            if (!mInstallerPackageName.equals(installerPackageName != null ? installerPackageName : INSTALLER_UNKNOWN))
+                return false;
+        }
+
+        if (mIsSizeFiltered) {
+            long appSize = model.getAppSize();
+            return appSize != InstalledPackageModel.APP_SIZE_UNKNOWN && appSize >= mMinAppSize && appSize <= mMaxAppSize;
+        }
+        return true;
+    }
+
+    /**
+     * Фильтрация списка без дополнительных данных, см. {@link #apply(List, Map)}.
+     */
+    @NonNull
+    public <T extends IInstalledPackageModel> List<T> apply(@NonNull List<T> models) {
+        return apply(models, Collections.<String, PackageMetadataModel>emptyMap());
+    }
+
+    /**
+     * Фильтрация списка за один проход с сохранением порядка.
+     *
+     * @param models   список моделей, не изменяется.
+     * @param metadata дополнительные данные из {@link #getMetadataColumns()} по имени пакета.
+     * @return приложения, прошедшие фильтр; для фильтра без условий - исходный список.
+     */
+    @NonNull
+    public <T extends IInstalledPackageModel> List<T> apply(@NonNull List<T> models,
+                                                            @NonNull Map<String, PackageMetadataModel> metadata) {
+        if (isAll())
+            return models;
+
+        List<T> result = new ArrayList<>();
+        for (T model : models) {
+            if (matches(model, metadata.get(model.getAppPackageName())))
+                result.add(model);
+        }
+        return result;
+    }
+
+    private static int setFlag(int flags, int flag, boolean value) {
+        return value ? flags | flag : flags & ~flag;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        FilterSpec that = (FilterSpec) o;
+        return mRequiredFlags == that.mRequiredFlags &&
+                mForbiddenFlags == that.mForbiddenFlags &&
+                mIsSizeFiltered == that.mIsSizeFiltered &&
+                mMinAppSize == that.mMinAppSize &&
+                mMaxAppSize == that.mMaxAppSize &&
+                Objects.equals(mInstallerPackageName, that.mInstallerPackageName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(mRequiredFlags, mForbiddenFlags, mInstallerPackageName, mIsSizeFiltered, mMinAppSize, mMaxAppSize);
+    }
+
+    @Override
+    public String toString() {
+        return "FilterSpec{" +
+                "mRequiredFlags=" + mRequiredFlags +
+                ", mForbiddenFlags=" + mForbiddenFlags +
+                ", mInstallerPackageName='" + mInstallerPackageName + '\'' +
+                ", mIsSizeFiltered=" + mIsSizeFiltered +
+                ", mMinAppSize=" + mMinAppSize +
+                ", mMaxAppSize=" + mMaxAppSize +
+                '}';
+    }
+}
@@ -0,0 +1,38 @@
+package ru.sergeykozhukhov.installedpackages.data.metrics;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Выключенные метрики, см. {@link Metrics#DISABLED}.
+ */
+class DisabledMetrics implements Metrics {
+
+    @Override
+    public boolean isEnabled() {
+        return false;
+    }
+
+    @Override
+    public long startTimer() {
+        return 0;
+    }
+
+    @Override
+    public long stopTimer(@NonNull Stage stage, long startTime) {
+        return 0;
+    }
+
+    @Override
+    public void increment(@NonNull Counter counter) {
+    }
+
+    @NonNull
+    @Override
+    public MetricsSnapshot getSnapshot() {
+        return MetricsSnapshot.EMPTY;
+    }
+
+    @Override
+    public void reset() {
+    }
+}
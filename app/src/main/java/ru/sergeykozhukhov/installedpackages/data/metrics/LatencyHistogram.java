@@ -0,0 +1,73 @@
+package ru.sergeykozhukhov.installedpackages.data.metrics;
+
+import androidx.annotation.NonNull;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Гистограмма длительностей одного этапа с интервалами, растущими вдвое.
+ *
+ * <p> Интервал 0 - меньше 1 мкс, интервал i - от 2^(i-1) до 2^i мкс. Запись не блокирует потоки:
+ * счетчики атомарные, поэтому этап может замеряться одновременно в нескольких потоках загрузчика.
+ */
+class LatencyHistogram {
+
+    // 2^(BUCKET_COUNT - 1) мкс - больше получаса, более длинные значения попадают в последний интервал
+    static final int BUCKET_COUNT = 32;
+
+    private final AtomicLongArray mBuckets = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong mCount = new AtomicLong();
+    private final AtomicLong mTotalNanos = new AtomicLong();
+    private final AtomicLong mMaxNanos = new AtomicLong();
+
+    void record(long nanos) {
+        if (nanos < 0)
+            nanos = 0;
+        mBuckets.incrementAndGet(getBucket(nanos));
+        mCount.incrementAndGet();
+        mTotalNanos.addAndGet(nanos);
+
+        long max = mMaxNanos.get();
+        while (nanos > max && !mMaxNanos.compareAndSet(max, nanos)) {
+            max = mMaxNanos.get();
+        }
+    }
+
+    @NonNull
+    MetricsSnapshot.StageStats snapshot() {
+        long[] buckets = new long[BUCKET_COUNT];
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = mBuckets.get(i);
+        }
+        return new MetricsSnapshot.StageStats(mCount.get(), mTotalNanos.get(), mMaxNanos.get(), buckets);
+    }
+
+    void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            mBuckets.set(i, 0);
+        }
+        mCount.set(0);
+        mTotalNanos.set(0);
+        mMaxNanos.set(0);
+    }
+
+    /**
+     * Номер интервала для длительности.
+     */
+    static int getBucket(long nanos) {
+        long micros = nanos / 1000;
+        if (micros == 0)
+            return 0;
+        // количество значащих битов: для [2^(i-1), 2^i) это i
+        int bucket = 64 - Long.numberOfLeadingZeros(micros);
+        return Math.min(bucket, BUCKET_COUNT - 1);
+    }
+
+    /**
+     * Верхняя граница интервала в наносекундах.
+     */
+    static long getBucketUpperBoundNanos(int bucket) {
+        return (1L << bucket) * 1000;
+    }
+}
@@ -0,0 +1,114 @@
+package ru.sergeykozhukhov.installedpackages.data.metrics;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Метрики загрузки данных: время этапов и счетчики медленных путей и обращений к системным сервисам.
+ *
+ * <p> Выключенные метрики ({@link #DISABLED}) не вызывают даже {@link System#nanoTime()}: замер этапа
+ * сводится к двум пустым вызовам, поэтому инструментирование можно не убирать из кода.
+ *
+ * <p> Типичный замер этапа:
+ * <pre>
+ * long startTime = mMetrics.startTimer();
+ * ...
+ * mMetrics.stopTimer(Metrics.Stage.SORT, startTime);
+ * </pre>
+ */
+public interface Metrics {
+
+    /**
+     * Выключенные метрики: ничего не замеряют и возвращают пустой снимок.
+     */
+    Metrics DISABLED = new DisabledMetrics();
+
+    /**
+     * Этапы загрузки и отображения данных, время которых замеряется.
+     *
+     * LOAD - загрузка списка приложений целиком, от запроса пакетов до готовых моделей
+     * QUERY_PACKAGES - запрос приложений у PackageManager (queryIntentActivities)
+     * BUILD_MODEL - построение модели одного приложения
+     * RESOLVE_LABEL - получение названия приложения из его ресурсов
+     * SAVE_SNAPSHOT - запись снимка на диск
+     * LOAD_ICON - получение иконки, отсутствующей в памяти
+     * MEASURE_SIZE - измерение размера одного приложения
+     * PROCESS_CHANGES - обработка изменившихся пакетов
+     * SORT - получение отсортированного списка
+     * SEARCH - поиск по загруженным данным
+     * FILTER - фильтрация загруженных данных
+     * APPLY_CHANGES - применение изменений к отображаемым данным
+     * LOAD_METADATA - запрос дополнительных данных о приложениях, отсутствующих в кэше
+     */
+    enum Stage {
+        LOAD,
+        QUERY_PACKAGES,
+        BUILD_MODEL,
+        RESOLVE_LABEL,
+        SAVE_SNAPSHOT,
+        LOAD_ICON,
+        MEASURE_SIZE,
+        PROCESS_CHANGES,
+        SORT,
+        SEARCH,
+        FILTER,
+        APPLY_CHANGES,
+        LOAD_METADATA
+    }
+
+    /**
+     * Счетчики.
+     *
+     * BINDER_CALLS - обращения к PackageManager и другим системным сервисам
+     * LABEL_RESOLVED - пакеты, название которых не взято из снимка, а получено из ресурсов
+     * ICON_RASTERIZED - иконки, которых не было ни в памяти, ни на диске
+     * SIZE_MEASURED - пакеты, размер которых не взят из кэша, а измерен
+     * SLOW_PACKAGES - пакеты, модель которых строилась дольше {@link #SLOW_PACKAGE_NANOS}
+     */
+    enum Counter {
+        BINDER_CALLS,
+        LABEL_RESOLVED,
+        ICON_RASTERIZED,
+        SIZE_MEASURED,
+        SLOW_PACKAGES
+    }
+
+    // время построения модели, после которого пакет считается медленным (один кадр при 60 Гц)
+    long SLOW_PACKAGE_NANOS = 16000000L;
+
+    /**
+     * @return {@code true}, если метрики собираются.
+     */
+    boolean isEnabled();
+
+    /**
+     * Начало замера этапа.
+     *
+     * @return время начала для {@link #stopTimer(Stage, long)}; 0, если метрики выключены.
+     */
+    long startTimer();
+
+    /**
+     * Окончание замера этапа.
+     *
+     * @param stage     этап.
+     * @param startTime значение, полученное из {@link #startTimer()}.
+     * @return длительность этапа в наносекундах; 0, если метрики выключены.
+     */
+    long stopTimer(@NonNull Stage stage, long startTime);
+
+    /**
+     * Увеличение счетчика на единицу.
+     */
+    void increment(@NonNull Counter counter);
+
+    /**
+     * Получение текущих значений метрик.
+     */
+    @NonNull
+    MetricsSnapshot getSnapshot();
+
+    /**
+     * Сброс всех собранных значений.
+     */
+    void reset();
+}
@@ -0,0 +1,178 @@
+package ru.sergeykozhukhov.installedpackages.data.metrics;
+
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Неизменяемый снимок метрик: статистика этапов и значения счетчиков на момент получения.
+ */
+public class MetricsSnapshot {
+
+    static final MetricsSnapshot EMPTY = new MetricsSnapshot(
+            Collections.<Metrics.Stage, StageStats>emptyMap(), Collections.<Metrics.Counter, Long>emptyMap());
+
+    private static final StageStats EMPTY_STAGE = new StageStats(0, 0, 0, new long[LatencyHistogram.BUCKET_COUNT]);
+
+    private final Map<Metrics.Stage, StageStats> mStages;
+    private final Map<Metrics.Counter, Long> mCounters;
+
+    MetricsSnapshot(@NonNull Map<Metrics.Stage, StageStats> stages, @NonNull Map<Metrics.Counter, Long> counters) {
+        mStages = stages;
+        mCounters = counters;
+    }
+
+    /**
+     * Статистика этапа; для незамерявшегося этапа все значения нулевые.
+     */
+    @NonNull
+    public StageStats getStageStats(@NonNull Metrics.Stage stage) {
+        StageStats stageStats = mStages.get(stage);
+        return stageStats != null ? stageStats : EMPTY_STAGE;
+    }
+
+    /**
+     * Значение счетчика.
+     */
+    public long getCounter(@NonNull Metrics.Counter counter) {
+        Long value = mCounters.get(counter);
+        return value != null ? value : 0;
+    }
+
+    /**
+     * Вывод снимка в logcat, по строке на этап и счетчик.
+     *
+     * @param tag тег сообщений.
+     */
+    public void dumpToLog(@NonNull String tag) {
+        for (String line : toString().split("\n")) {
+            Log.i(tag, line);
+        }
+    }
+
+    /**
+     * Запись снимка в текстовый файл. Метод выполняет ввод-вывод и не должен вызываться в главном потоке.
+     *
+     * @param file файл, существующее содержимое заменяется.
+     */
+    public void writeTo(@NonNull File file) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), Charset.forName("UTF-8"));
+        try {
+            writeTo(writer);
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Запись снимка в текстовом виде.
+     */
+    public void writeTo(@NonNull Writer writer) throws IOException {
+        writer.write(toString());
+    }
+
+    @NonNull
+    @Override
+    public String toString() {
+        StringBuilder builder = new StringBuilder();
+        for (Metrics.Stage stage : Metrics.Stage.values()) {
+            StageStats stageStats = getStageStats(stage);
+            if (stageStats.getCount() == 0)
+                continue;
+            builder.append(String.format(Locale.ROOT,
+                    "%s: count=%d total=%.1fms mean=%.3fms p50<=%.3fms p90<=%.3fms p99<=%.3fms max=%.3fms%n",
+                    stage, stageStats.getCount(), toMillis(stageStats.getTotalNanos()),
+                    toMillis(stageStats.getMeanNanos()), toMillis(stageStats.getPercentileNanos(50)),
+                    toMillis(stageStats.getPercentileNanos(90)), toMillis(stageStats.getPercentileNanos(99)),
+                    toMillis(stageStats.getMaxNanos())));
+        }
+        for (Metrics.Counter counter : Metrics.Counter.values()) {
+            builder.append(counter).append(": ").append(getCounter(counter)).append('\n');
+        }
+        return builder.toString();
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1000000.0;
+    }
+
+    @NonNull
+    static MetricsSnapshot create(@NonNull Map<Metrics.Stage, LatencyHistogram> histograms,
+                                  @NonNull Map<Metrics.Counter, Long> counters) {
+        Map<Metrics.Stage, StageStats> stages = new EnumMap<>(Metrics.Stage.class);
+        for (Map.Entry<Metrics.Stage, LatencyHistogram> entry : histograms.entrySet()) {
+            stages.put(entry.getKey(), entry.getValue().snapshot());
+        }
+        return new MetricsSnapshot(stages, counters);
+    }
+
+    /**
+     * Статистика одного этапа.
+     */
+    public static class StageStats {
+
+        private final long mCount;
+        private final long mTotalNanos;
+        private final long mMaxNanos;
+        private final long[] mBuckets;
+
+        StageStats(long count, long totalNanos, long maxNanos, @NonNull long[] buckets) {
+            mCount = count;
+            mTotalNanos = totalNanos;
+            mMaxNanos = maxNanos;
+            mBuckets = buckets;
+        }
+
+        public long getCount() {
+            return mCount;
+        }
+
+        public long getTotalNanos() {
+            return mTotalNanos;
+        }
+
+        public long getMaxNanos() {
+            return mMaxNanos;
+        }
+
+        public long getMeanNanos() {
+            return mCount != 0 ? mTotalNanos / mCount : 0;
+        }
+
+        /**
+         * Оценка процентиля сверху: граница интервала гистограммы, в который попадает процентиль,
+         * но не больше максимального значения.
+         *
+         * @param percentile процентиль от 0 до 100.
+         * @return длительность в наносекундах; 0, если замеров не было.
+         */
+        public long getPercentileNanos(double percentile) {
+            long total = 0;
+            for (long bucket : mBuckets) {
+                total += bucket;
+            }
+            if (total == 0)
+                return 0;
+
+            long rank = (long) Math.ceil(total * percentile / 100);
+            long accumulated = 0;
+            for (int i = 0; i < mBuckets.length; i++) {
+                accumulated += mBuckets[i];
+                if (accumulated >= rank && accumulated > 0)
+                    return Math.min(LatencyHistogram.getBucketUpperBoundNanos(i), mMaxNanos);
+            }
+            return mMaxNanos;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package ru.sergeykozhukhov.installedpackages.data.metrics;
+
+import androidx.annotation.NonNull;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Включенные метрики. Запись потокобезопасна и не блокирует потоки,
+ * поэтому этапы замеряются и в главном потоке, и в потоках загрузчика.
+ */
+public class RecordingMetrics implements Metrics {
+
+    // карты заполняются в конструкторе и далее не изменяются, изменяются только значения
+    private final Map<Stage, LatencyHistogram> mHistograms = new EnumMap<>(Stage.class);
+    private final Map<Counter, AtomicLong> mCounters = new EnumMap<>(Counter.class);
+
+    public RecordingMetrics() {
+        for (Stage stage : Stage.values()) {
+            mHistograms.put(stage, new LatencyHistogram());
+        }
+        for (Counter counter : Counter.values()) {
+            mCounters.put(counter, new AtomicLong());
+        }
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return true;
+    }
+
+    @Override
+    public long startTimer() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public long stopTimer(@NonNull Stage stage, long startTime) {
+        long elapsed = System.nanoTime() - startTime;
+        mHistograms.get(stage).record(elapsed);
+        return elapsed;
+    }
+
+    @Override
+    public void increment(@NonNull Counter counter) {
+        mCounters.get(counter).incrementAndGet();
+    }
+
+    @NonNull
+    @Override
+    public MetricsSnapshot getSnapshot() {
+        Map<Counter, Long> counters = new EnumMap<>(Counter.class);
+        for (Map.Entry<Counter, AtomicLong> entry : mCounters.entrySet()) {
+            counters.put(entry.getKey(), entry.getValue().get());
+        }
+        return MetricsSnapshot.create(mHistograms, counters);
+    }
+
+    @Override
+    public void reset() {
+        for (LatencyHistogram histogram : mHistograms.values()) {
+            histogram.reset();
+        }
+        for (AtomicLong counter : mCounters.values()) {
+            counter.set(0);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+package ru.sergeykozhukhov.installedpackages.data.model;
+
+import androidx.annotation.NonNull;
+
+/**
+ * Интерфейс, описывающий данные о приложении, доступные только для чтения.
+ *
+ * <p> Реализуется моделью {@link InstalledPackageModel} и строкой хранилища по столбцам
+ * {@link ru.sergeykozhukhov.installedpackages.data.store.PackageColumnStore.Row}, поэтому код,
+ * которому нужны только данные приложения, не требует создания модели для каждой строки.
+ */
+public interface IInstalledPackageModel {
+
+    @NonNull
+    String getAppName();
+
+    @NonNull
+    String getAppPackageName();
+
+    boolean getIsAppSystem();
+
+    /**
+     * Приложение не отключено пользователем или системой.
+     */
+    boolean getIsAppEnabled();
+
+    /**
+     * Системное приложение обновлено поверх версии из образа системы.
+     */
+    boolean getIsUpdatedSystemApp();
+
+    /**
+     * Время последнего обновления пакета (0 - неизвестно).
+     */
+    long getLastUpdateTime();
+
+    /**
+     * Размер приложения в байтах ({@link InstalledPackageModel#APP_SIZE_UNKNOWN} - не измерен).
+     */
+    long getAppSize();
+}
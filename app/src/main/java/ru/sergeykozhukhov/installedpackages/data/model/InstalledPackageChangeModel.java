@@ -0,0 +1,85 @@
+package ru.sergeykozhukhov.installedpackages.data.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Objects;
+
+/**
+ * Модель изменения одного установленного приложения.
+ */
+public class InstalledPackageChangeModel {
+
+    /**
+     * Вид изменения
+     *
+     * ADDED - приложение установлено
+     * UPDATED - приложение обновлено или изменено
+     * REMOVED - приложение удалено
+     */
+    public enum Type {
+        ADDED,
+        UPDATED,
+        REMOVED
+    }
+
+    private final Type mType;
+
+    private final String mAppPackageName;
+
+    private final InstalledPackageModel mInstalledPackageModel;
+
+    /**
+     * Конструктор модели изменения.
+     *
+     * @param type                  вид изменения.
+     * @param appPackageName        имя пакета.
+     * @param installedPackageModel актуальная модель приложения ({@code null} для удаленного приложения).
+     */
+    public InstalledPackageChangeModel(@NonNull Type type,
+                                       @NonNull String appPackageName,
+                                       @Nullable InstalledPackageModel installedPackageModel) {
+        mType = type;
+        mAppPackageName = appPackageName;
+        mInstalledPackageModel = installedPackageModel;
+    }
+
+    @NonNull
+    public Type getType() {
+        return mType;
+    }
+
+    @NonNull
+    public String getAppPackageName() {
+        return mAppPackageName;
+    }
+
+    @Nullable
+    public InstalledPackageModel getInstalledPackageModel() {
+        return mInstalledPackageModel;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        InstalledPackageChangeModel that = (InstalledPackageChangeModel) o;
+        return mType == that.mType &&
+                Objects.equals(mAppPackageName, that.mAppPackageName) &&
+                Objects.equals(mInstalledPackageModel, that.mInstalledPackageModel);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(mType, mAppPackageName, mInstalledPackageModel);
+    }
+
+    @Override
+    public String toString() {
+        return "InstalledPackageChangeModel{" +
+                "mType=" + mType +
+                ", mAppPackageName='" + mAppPackageName + '\'' +
+                ", mInstalledPackageModel=" + mInstalledPackageModel +
+                '}';
+    }
+}
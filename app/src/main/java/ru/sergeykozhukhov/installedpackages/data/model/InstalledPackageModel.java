@@ -1,70 +1,214 @@
 package ru.sergeykozhukhov.installedpackages.data.model;
 
-import android.graphics.drawable.Drawable;
-
 import androidx.annotation.NonNull;
 
+import java.text.CollationKey;
+import java.text.Collator;
 import java.util.Comparator;
+import java.util.Locale;
 import java.util.Objects;
 
 /**
  * Модель, для отображения данных о приложении.
  */
-public class InstalledPackageModel {
+public class InstalledPackageModel implements IInstalledPackageModel {
+
+    // размер приложения еще не измерен
+    public static final long APP_SIZE_UNKNOWN = -1;
+
+    // Collator не потокобезопасен, а модели строятся одновременно в нескольких потоках загрузчика;
+    // Collator потока пересоздается при смене локали, см. {@link #getCollator()}
+    private static final ThreadLocal<LocaleCollator> COLLATOR = new ThreadLocal<>();
 
     private String mAppName;
 
+    // mAppNameSortKey - ключ сортировки названия по правилам текущей локали, вычисляется один раз при создании модели
+    private CollationKey mAppNameSortKey;
+
     private String mAppPackageName;
 
-    private Drawable mAppIcon;
+    // mAppIconKey - ключ иконки приложения, сама иконка загружается только при отображении элемента
+    private String mAppIconKey;
 
     private boolean mIsAppSystem;
 
+    // mIsAppEnabled - приложение не отключено пользователем или системой
+    private boolean mIsAppEnabled;
+
+    // mIsUpdatedSystemApp - системное приложение, обновленное поверх версии из образа системы
+    private boolean mIsUpdatedSystemApp;
+
+    private long mLastUpdateTime;
+
+    // mAppSize - размер приложения в байтах, вычисляется отдельно от остальных данных
+    private long mAppSize;
+
     /**
      * Конструктор модели.
      *
      * @param appName        название приложения.
      * @param appPackageName имя пакета.
-     * @param appIcon        иконка.
+     * @param appIconKey     ключ иконки.
      * @param isAppSystem    идентицикация системеного приложения (true - системное)
      */
     public InstalledPackageModel(@NonNull String appName,
                                  @NonNull String appPackageName,
-                                 @NonNull Drawable appIcon,
+                                 @NonNull String appIconKey,
                                  boolean isAppSystem) {
+        this(appName, appPackageName, appIconKey, isAppSystem, 0);
+    }
+
+    /**
+     * Конструктор модели.
+     *
+     * @param appName        название приложения.
+     * @param appPackageName имя пакета.
+     * @param appIconKey     ключ иконки.
+     * @param isAppSystem    идентицикация системеного приложения (true - системное)
+     * @param lastUpdateTime время последнего обновления пакета (0 - неизвестно)
+     */
+    public InstalledPackageModel(@NonNull String appName,
+                                 @NonNull String appPackageName,
+                                 @NonNull String appIconKey,
+                                 boolean isAppSystem,
+                                 long lastUpdateTime) {
+        this(appName, appPackageName, appIconKey, isAppSystem, lastUpdateTime, APP_SIZE_UNKNOWN);
+    }
+
+    /**
+     * Конструктор модели.
+     *
+     * @param appName        название приложения.
+     * @param appPackageName имя пакета.
+     * @param appIconKey     ключ иконки.
+     * @param isAppSystem    идентицикация системеного приложения (true - системное)
+     * @param lastUpdateTime время последнего обновления пакета (0 - неизвестно)
+     * @param appSize        размер приложения в байтах ({@link #APP_SIZE_UNKNOWN} - не измерен)
+     */
+    public InstalledPackageModel(@NonNull String appName,
+                                 @NonNull String appPackageName,
+                                 @NonNull String appIconKey,
+                                 boolean isAppSystem,
+                                 long lastUpdateTime,
+                                 long appSize) {
+        this(appName, appPackageName, appIconKey, isAppSystem, true, false, lastUpdateTime, appSize);
+    }
+
+    /**
+     * Конструктор модели.
+     *
+     * @param appName            название приложения.
+     * @param appPackageName     имя пакета.
+     * @param appIconKey         ключ иконки.
+     * @param isAppSystem        идентицикация системеного приложения (true - системное)
+     * @param isAppEnabled       приложение включено (false - отключено)
+     * @param isUpdatedSystemApp системное приложение обновлено поверх версии из образа системы
+     * @param lastUpdateTime     время последнего обновления пакета (0 - неизвестно)
+     * @param appSize            размер приложения в байтах ({@link #APP_SIZE_UNKNOWN} - не измерен)
+     */
+    public InstalledPackageModel(@NonNull String appName,
+                                 @NonNull String appPackageName,
+                                 @NonNull String appIconKey,
+                                 boolean isAppSystem,
+                                 boolean isAppEnabled,
+                                 boolean isUpdatedSystemApp,
+                                 long lastUpdateTime,
+                                 long appSize) {
+        this(appName, getCollator().getCollationKey(appName), appPackageName, appIconKey, isAppSystem,
+                isAppEnabled, isUpdatedSystemApp, lastUpdateTime, appSize);
+    }
+
+    private InstalledPackageModel(@NonNull String appName,
+                                  @NonNull CollationKey appNameSortKey,
+                                  @NonNull String appPackageName,
+                                  @NonNull String appIconKey,
+                                  boolean isAppSystem,
+                                  boolean isAppEnabled,
+                                  boolean isUpdatedSystemApp,
+                                  long lastUpdateTime,
+                                  long appSize) {
         mAppName = appName;
+        mAppNameSortKey = appNameSortKey;
         mAppPackageName = appPackageName;
-        mAppIcon = appIcon;
+        mAppIconKey = appIconKey;
         mIsAppSystem = isAppSystem;
+        mIsAppEnabled = isAppEnabled;
+        mIsUpdatedSystemApp = isUpdatedSystemApp;
+        mLastUpdateTime = lastUpdateTime;
+        mAppSize = appSize;
     }
 
+    @Override
     @NonNull
     public String getAppName() {
         return mAppName;
     }
 
+    @Override
     @NonNull
     public String getAppPackageName() {
         return mAppPackageName;
     }
 
     @NonNull
-    public Drawable getAppIcon() {
-        return mAppIcon;
+    public String getAppIconKey() {
+        return mAppIconKey;
     }
 
+    @Override
     @NonNull
     public boolean getIsAppSystem() {
         return mIsAppSystem;
     }
 
+    @Override
+    public boolean getIsAppEnabled() {
+        return mIsAppEnabled;
+    }
+
+    @Override
+    public boolean getIsUpdatedSystemApp() {
+        return mIsUpdatedSystemApp;
+    }
+
+    @Override
+    public long getLastUpdateTime() {
+        return mLastUpdateTime;
+    }
+
+    @Override
+    public long getAppSize() {
+        return mAppSize;
+    }
+
     /**
-     * Сравнение моделей по имени приложения
+     * Ключ сортировки названия приложения по правилам текущей локали.
+     */
+    @NonNull
+    public CollationKey getAppNameSortKey() {
+        return mAppNameSortKey;
+    }
+
+    /**
+     * Создание копии модели с измеренным размером приложения.
+     *
+     * @param appSize размер приложения в байтах
+     * @return новая модель
+     */
+    @NonNull
+    public InstalledPackageModel withAppSize(long appSize) {
+        return new InstalledPackageModel(mAppName, mAppNameSortKey, mAppPackageName, mAppIconKey,
+                mIsAppSystem, mIsAppEnabled, mIsUpdatedSystemApp, mLastUpdateTime, appSize);
+    }
+
+    /**
+     * Сравнение моделей по имени приложения с учетом правил текущей локали (регистр, алфавиты).
+     * Сравниваются заранее вычисленные ключи, поэтому Collator при сортировке не вызывается.
      */
     public static Comparator<InstalledPackageModel> BY_APP_NAME = new Comparator<InstalledPackageModel>() {
         @Override
         public int compare(InstalledPackageModel o1, InstalledPackageModel o2) {
-            return o1.mAppName.compareTo(o2.mAppName);
+            return o1.mAppNameSortKey.compareTo(o2.mAppNameSortKey);
         }
     };
 
@@ -78,21 +222,60 @@ public class InstalledPackageModel {
         }
     };
 
+    /**
+     * Сравнение моделей по принадлежности к системным: сначала системные
+     */
+    public static Comparator<InstalledPackageModel> BY_SYSTEM_FIRST = new Comparator<InstalledPackageModel>() {
+        @Override
+        public int compare(InstalledPackageModel o1, InstalledPackageModel o2) {
+            return Boolean.compare(o2.mIsAppSystem, o1.mIsAppSystem);
+        }
+    };
+
+    /**
+     * Сравнение моделей по размеру приложения: сначала большие, неизмеренные в конце
+     */
+    public static Comparator<InstalledPackageModel> BY_APP_SIZE = new Comparator<InstalledPackageModel>() {
+        @Override
+        public int compare(InstalledPackageModel o1, InstalledPackageModel o2) {
+            return Long.compare(o2.mAppSize, o1.mAppSize);
+        }
+    };
+
+    /**
+     * Получение Collator текущего потока для текущей локали.
+     */
+    @NonNull
+    private static Collator getCollator() {
+        Locale locale = Locale.getDefault();
+        LocaleCollator localeCollator = COLLATOR.get();
+        if (localeCollator == null || !localeCollator.mLocale.equals(locale)) {
+            localeCollator = new LocaleCollator(locale);
+            COLLATOR.set(localeCollator);
+        }
+        return localeCollator.mCollator;
+    }
+
     @Override
     public boolean equals(Object o) {
         if (this == o) return true;
         if (o == null || getClass() != o.getClass()) return false;
         InstalledPackageModel that = (InstalledPackageModel) o;
         return mIsAppSystem == that.mIsAppSystem &&
+                mIsAppEnabled == that.mIsAppEnabled &&
+                mIsUpdatedSystemApp == that.mIsUpdatedSystemApp &&
+                mLastUpdateTime == that.mLastUpdateTime &&
+                mAppSize == that.mAppSize &&
                 Objects.equals(mAppName, that.mAppName) &&
                 Objects.equals(mAppPackageName, that.mAppPackageName) &&
-                Objects.equals(mAppIcon, that.mAppIcon);
+                Objects.equals(mAppIconKey, that.mAppIconKey);
     }
 
 
     @Override
     public int hashCode() {
-        return Objects.hash(mAppName, mAppPackageName, mAppIcon, mIsAppSystem);
+        return Objects.hash(mAppName, mAppPackageName, mAppIconKey, mIsAppSystem, mIsAppEnabled, mIsUpdatedSystemApp,
+                mLastUpdateTime, mAppSize);
     }
 
     @Override
@@ -100,8 +283,26 @@ public class InstalledPackageModel {
         return "InstalledPackageModel{" +
                 "mAppName='" + mAppName + '\'' +
                 ", mAppPackageName='" + mAppPackageName + '\'' +
-                ", mAppIcon=" + mAppIcon +
+                ", mAppIconKey='" + mAppIconKey + '\'' +
                 ", mIsAppSystem=" + mIsAppSystem +
+                ", mIsAppEnabled=" + mIsAppEnabled +
+                ", mIsUpdatedSystemApp=" + mIsUpdatedSystemApp +
+                ", mLastUpdateTime=" + mLastUpdateTime +
+                ", mAppSize=" + mAppSize +
                 '}';
     }
-}
\ No newline at end of file
+
+    /**
+     * Collator вместе с локалью, для которой он создан.
+     */
+    private static class LocaleCollator {
+
+        private final Locale mLocale;
+        private final Collator mCollator;
+
+        LocaleCollator(@NonNull Locale locale) {
+            mLocale = locale;
+            mCollator = Collator.getInstance(locale);
+        }
+    }
+}
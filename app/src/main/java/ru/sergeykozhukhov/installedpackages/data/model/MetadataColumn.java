@@ -0,0 +1,19 @@
+package ru.sergeykozhukhov.installedpackages.data.model;
+
+
+/**
+ * Модель столбцов дополнительных данных о приложении, загружаемых по запросу
+ *
+ * VERSION - название и код версии
+ * INSTALL_TIME - время первой установки
+ * TARGET_SDK - целевая версия SDK
+ * PERMISSIONS - количество запрашиваемых разрешений, требует запроса списка разрешений пакета
+ * INSTALLER - имя пакета установщика, требует отдельного запроса для каждого пакета
+ */
+public enum MetadataColumn {
+    VERSION,
+    INSTALL_TIME,
+    TARGET_SDK,
+    PERMISSIONS,
+    INSTALLER
+}
@@ -0,0 +1,197 @@
+package ru.sergeykozhukhov.installedpackages.data.model;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Collection;
+import java.util.Objects;
+
+/**
+ * Модель дополнительных данных о приложении.
+ *
+ * <p> Данные загружаются по столбцам {@link MetadataColumn}: значения незагруженных столбцов не определены,
+ * наличие столбца проверяется {@link #hasColumn(MetadataColumn)}. Модель относится к версии пакета
+ * {@link #getLastUpdateTime()} и для другой версии устаревает.
+ */
+public class PackageMetadataModel {
+
+    // значение не загружено
+    public static final int UNKNOWN = -1;
+
+    // mColumns - загруженные столбцы, по биту на столбец
+    private final int mColumns;
+
+    private final String mAppPackageName;
+    private final long mLastUpdateTime;
+
+    private final String mVersionName;
+    private final long mVersionCode;
+    private final long mFirstInstallTime;
+    private final int mTargetSdkVersion;
+    private final int mRequestedPermissionCount;
+    // mInstallerPackageName - имя пакета установщика, {@code null} если установщик неизвестен
+    private final String mInstallerPackageName;
+
+    /**
+     * Конструктор модели.
+     *
+     * @param appPackageName           имя пакета.
+     * @param lastUpdateTime           версия пакета, к которой относятся данные,
+     *                                 как {@link InstalledPackageModel#getLastUpdateTime()}.
+     * @param columns                  загруженные столбцы.
+     * @param versionName              название версии, может отсутствовать в пакете.
+     * @param versionCode              код версии.
+     * @param firstInstallTime         время первой установки.
+     * @param targetSdkVersion         целевая версия SDK.
+     * @param requestedPermissionCount количество запрашиваемых разрешений.
+     * @param installerPackageName     имя пакета установщика ({@code null} - неизвестен).
+     */
+    public PackageMetadataModel(@NonNull String appPackageName,
+                                long lastUpdateTime,
+                                @NonNull Collection<MetadataColumn> columns,
+                                @Nullable String versionName,
+                                long versionCode,
+                                long firstInstallTime,
+                                int targetSdkVersion,
+                                int requestedPermissionCount,
+                                @Nullable String installerPackageName) {
+        this(appPackageName, lastUpdateTime, toMask(columns), versionName, versionCode,
+                firstInstallTime, targetSdkVersion, requestedPermissionCount, installerPackageName);
+    }
+
+    private PackageMetadataModel(@NonNull String appPackageName, long lastUpdateTime, int columns,
+                                 @Nullable String versionName, long versionCode, long firstInstallTime,
+                                 int targetSdkVersion, int requestedPermissionCount,
+                                 @Nullable String installerPackageName) {
+        mAppPackageName = appPackageName;
+        mLastUpdateTime = lastUpdateTime;
+        mColumns = columns;
+        mVersionName = hasColumn(columns, MetadataColumn.VERSION) ? versionName : null;
+        mVersionCode = hasColumn(columns, MetadataColumn.VERSION) ? versionCode : UNKNOWN;
+        mFirstInstallTime = hasColumn(columns, MetadataColumn.INSTALL_TIME) ? firstInstallTime : UNKNOWN;
+        mTargetSdkVersion = hasColumn(columns, MetadataColumn.TARGET_SDK) ? targetSdkVersion : UNKNOWN;
+        mRequestedPermissionCount = hasColumn(columns, MetadataColumn.PERMISSIONS) ? requestedPermissionCount : UNKNOWN;
+        mInstallerPackageName = hasColumn(columns, MetadataColumn.INSTALLER) ? installerPackageName : null;
+    }
+
+    @NonNull
+    public String getAppPackageName() {
+        return mAppPackageName;
+    }
+
+    public long getLastUpdateTime() {
+        return mLastUpdateTime;
+    }
+
+    @Nullable
+    public String getVersionName() {
+        return mVersionName;
+    }
+
+    public long getVersionCode() {
+        return mVersionCode;
+    }
+
+    public long getFirstInstallTime() {
+        return mFirstInstallTime;
+    }
+
+    public int getTargetSdkVersion() {
+        return mTargetSdkVersion;
+    }
+
+    public int getRequestedPermissionCount() {
+        return mRequestedPermissionCount;
+    }
+
+    @Nullable
+    public String getInstallerPackageName() {
+        return mInstallerPackageName;
+    }
+
+    /**
+     * @return {@code true}, если столбец загружен.
+     */
+    public boolean hasColumn(@NonNull MetadataColumn column) {
+        return hasColumn(mColumns, column);
+    }
+
+    /**
+     * @return {@code true}, если загружены все столбцы.
+     */
+    public boolean hasColumns(@NonNull Collection<MetadataColumn> columns) {
+        int mask = toMask(columns);
+        return (mColumns & mask) == mask;
+    }
+
+    /**
+     * Объединение с данными той же версии пакета, загруженными позже: значения столбцов,
+     * загруженных в {@code other}, берутся из него, остальные - из этой модели.
+     *
+     * @param other данные, загруженные позже.
+     * @return объединенная модель; {@code other}, если он относится к другой версии пакета.
+     */
+    @NonNull
+    public PackageMetadataModel merge(@NonNull PackageMetadataModel other) {
+        if (!mAppPackageName.equals(other.mAppPackageName) || mLastUpdateTime != other.mLastUpdateTime)
+            return other;
+
+        boolean isVersionOther = other.hasColumn(MetadataColumn.VERSION);
+        return new PackageMetadataModel(mAppPackageName, mLastUpdateTime, mColumns | other.mColumns,
+                isVersionOther ? other.mVersionName : mVersionName,
+                isVersionOther ? other.mVersionCode : mVersionCode,
+                other.hasColumn(MetadataColumn.INSTALL_TIME) ? other.mFirstInstallTime : mFirstInstallTime,
+                other.hasColumn(MetadataColumn.TARGET_SDK) ? other.mTargetSdkVersion : mTargetSdkVersion,
+                other.hasColumn(MetadataColumn.PERMISSIONS) ? other.mRequestedPermissionCount : mRequestedPermissionCount,
+                other.hasColumn(MetadataColumn.INSTALLER) ? other.mInstallerPackageName : mInstallerPackageName);
+    }
+
+    private static boolean hasColumn(int columns, @NonNull MetadataColumn column) {
+        return (columns & (1 << column.ordinal())) != 0;
+    }
+
+    private static int toMask(@NonNull Collection<MetadataColumn> columns) {
+        int mask = 0;
+        for (MetadataColumn column : columns) {
+            mask |= 1 << column.ordinal();
+        }
+        return mask;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        PackageMetadataModel that = (PackageMetadataModel) o;
+        return mColumns == that.mColumns &&
+                mLastUpdateTime == that.mLastUpdateTime &&
+                mVersionCode == that.mVersionCode &&
+                mFirstInstallTime == that.mFirstInstallTime &&
+                mTargetSdkVersion == that.mTargetSdkVersion &&
+                mRequestedPermissionCount == that.mRequestedPermissionCount &&
+                mAppPackageName.equals(that.mAppPackageName) &&
+                Objects.equals(mVersionName, that.mVersionName) &&
+                Objects.equals(mInstallerPackageName, that.mInstallerPackageName);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(mColumns, mAppPackageName, mLastUpdateTime, mVersionName, mVersionCode,
+                mFirstInstallTime, mTargetSdkVersion, mRequestedPermissionCount, mInstallerPackageName);
+    }
+
+    @Override
+    public String toString() {
+        return "PackageMetadataModel{" +
+                "mAppPackageName='" + mAppPackageName + '\'' +
+                ", mLastUpdateTime=" + mLastUpdateTime +
+                ", mColumns=" + mColumns +
+                ", mVersionName='" + mVersionName + '\'' +
+                ", mVersionCode=" + mVersionCode +
+                ", mFirstInstallTime=" + mFirstInstallTime +
+                ", mTargetSdkVersion=" + mTargetSdkVersion +
+                ", mRequestedPermissionCount=" + mRequestedPermissionCount +
+                ", mInstallerPackageName='" + mInstallerPackageName + '\'' +
+                '}';
+    }
+}
@@ -0,0 +1,13 @@
+package ru.sergeykozhukhov.installedpackages.data.model;
+
+
+/**
+ * Модель возможных режимов получения списка установленных приложений
+ *
+ * LAUNCHER - приложения, у которых есть activity в средстве запуска приложений
+ * FULL_INVENTORY - все установленные пакеты, включая службы, библиотеки и пакеты без activity
+ */
+public enum ScanMode {
+    LAUNCHER,
+    FULL_INVENTORY
+}
@@ -7,9 +7,13 @@ package ru.sergeykozhukhov.installedpackages.data.model;
  * NONE - отсутствие сортировки
  * BY_APP_NAME - сортировка по имени приложения
  * BY_APP_PACKAGE_NAME - сортировка по имени пакета
+ * BY_APP_SIZE - сортировка по размеру приложения
+ * BY_SYSTEM_THEN_APP_NAME - сначала системные приложения, затем по имени приложения и имени пакета
  */
 public enum SortOption{
     NONE,
     BY_APP_NAME,
-    BY_APP_PACKAGE_NAME
+    BY_APP_PACKAGE_NAME,
+    BY_APP_SIZE,
+    BY_SYSTEM_THEN_APP_NAME
 }
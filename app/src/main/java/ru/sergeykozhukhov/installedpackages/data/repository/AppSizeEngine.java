@@ -0,0 +1,277 @@
+package ru.sergeykozhukhov.installedpackages.data.repository;
+
+import android.app.usage.StorageStats;
+import android.app.usage.StorageStatsManager;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.Process;
+import android.os.storage.StorageManager;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+import androidx.annotation.WorkerThread;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ru.sergeykozhukhov.installedpackages.data.metrics.Metrics;
+import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackageModel;
+
+/**
+ * Вычисление размера приложений.
+ *
+ * <p> На API 26+ размер запрашивается у {@link StorageStatsManager} (apk, данные и кэш приложения).
+ * Для чужих пакетов это требует доступа к статистике использования; без него, как и на API 21–25,
+ * размер определяется по apk файлам пакета.
+ *
+ * <p> Размеры вычисляются в собственном ограниченном пуле потоков, независимо от загрузки остальных данных,
+ * и кэшируются по версии пакета, поэтому неизменившиеся приложения повторно не измеряются.
+ */
+class AppSizeEngine {
+
+    private static final String TAG = "AppSizeEngine";
+
+    private static final int THREAD_COUNT = 2;
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    // количество измеренных размеров, передаваемых слушателю за один раз
+    private static final int PUBLISH_BATCH_SIZE = 16;
+
+    private final StorageStatsManager mStorageStatsManager;
+    private final ThreadPoolExecutor mExecutor;
+    private final Metrics mMetrics;
+    // mSizeCache - измеренные размеры по имени пакета вместе с версией пакета, для которой они измерены
+    private final Map<String, CachedSize> mSizeCache = new ConcurrentHashMap<>();
+    // mIsStatsDenied - доступ к статистике использования не выдан, StorageStatsManager больше не запрашивается
+    private volatile boolean mIsStatsDenied;
+
+    AppSizeEngine(@NonNull Context context, @NonNull Metrics metrics) {
+        mMetrics = metrics;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            mStorageStatsManager = (StorageStatsManager) context.getSystemService(Context.STORAGE_STATS_SERVICE);
+        } else {
+            mStorageStatsManager = null;
+        }
+        mExecutor = new ThreadPoolExecutor(THREAD_COUNT, THREAD_COUNT,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new SizeThreadFactory());
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Получение размера приложения из кэша.
+     *
+     * @param packageName    имя пакета.
+     * @param lastUpdateTime версия пакета (время последнего обновления).
+     * @return размер в байтах или {@link InstalledPackageModel#APP_SIZE_UNKNOWN}, если для этой версии он не измерялся.
+     */
+    long getCachedSize(@NonNull String packageName, long lastUpdateTime) {
+        CachedSize cachedSize = mSizeCache.get(packageName);
+        if (cachedSize == null || lastUpdateTime == 0 || cachedSize.mLastUpdateTime != lastUpdateTime)
+            return InstalledPackageModel.APP_SIZE_UNKNOWN;
+        return cachedSize.mSize;
+    }
+
+    /**
+     * Добавление в кэш размера, измеренного ранее, например сохраненного в снимке.
+     */
+    void putCachedSize(@NonNull String packageName, long lastUpdateTime, long size) {
+        if (lastUpdateTime != 0 && size != InstalledPackageModel.APP_SIZE_UNKNOWN)
+            mSizeCache.put(packageName, new CachedSize(lastUpdateTime, size));
+    }
+
+    /**
+     * Асинхронное измерение размеров приложений, отсутствующих в кэше.
+     * Если измерять нечего, слушатель не вызывается.
+     *
+     * @param applicationInfoList приложения, размер которых необходимо получить.
+     * @param listener            {@link OnSizesMeasuredListener} слушатель, вызываемый в потоке вычисления размеров.
+     */
+    void measure(@NonNull List<ApplicationInfo> applicationInfoList, @NonNull OnSizesMeasuredListener listener) {
+        List<ApplicationInfo> notCached = new ArrayList<>();
+        for (ApplicationInfo applicationInfo : applicationInfoList) {
+            long lastUpdateTime = PackageInstalledRepository.getLastUpdateTime(applicationInfo);
+            if (getCachedSize(applicationInfo.packageName, lastUpdateTime) == InstalledPackageModel.APP_SIZE_UNKNOWN)
+                notCached.add(applicationInfo);
+        }
+        if (notCached.isEmpty())
+            return;
+
+        MeasureRun run = new MeasureRun(notCached.size(), listener);
+        for (ApplicationInfo applicationInfo : notCached) {
+            mExecutor.execute(new MeasureTask(applicationInfo, run));
+        }
+    }
+
+    /**
+     * Измерение размера одного приложения.
+     */
+    @WorkerThread
+    private long measureSize(@NonNull ApplicationInfo applicationInfo) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O && mStorageStatsManager != null && !mIsStatsDenied) {
+            try {
+                mMetrics.increment(Metrics.Counter.BINDER_CALLS);
+                return queryStorageStats(applicationInfo);
+            } catch (SecurityException e) {
+                // доступ к статистике использования не выдан, дальше используется размер apk файлов
+                mIsStatsDenied = true;
+            } catch (PackageManager.NameNotFoundException e) {
+                return InstalledPackageModel.APP_SIZE_UNKNOWN; // пакет удален
+            } catch (IOException e) {
+                Log.w(TAG, "Unable to query storage stats for " + applicationInfo.packageName, e);
+            }
+        }
+        return getApkSize(applicationInfo);
+    }
+
+    @RequiresApi(Build.VERSION_CODES.O)
+    private long queryStorageStats(@NonNull ApplicationInfo applicationInfo)
+            throws PackageManager.NameNotFoundException, IOException {
+        StorageStats storageStats = mStorageStatsManager.queryStatsForPackage(
+                applicationInfo.storageUuid != null ? applicationInfo.storageUuid : StorageManager.UUID_DEFAULT,
+                applicationInfo.packageName, Process.myUserHandle());
+        return storageStats.getAppBytes() + storageStats.getDataBytes() + storageStats.getCacheBytes();
+    }
+
+    /**
+     * Размер apk файлов пакета, включая split apk.
+     */
+    private long getApkSize(@NonNull ApplicationInfo applicationInfo) {
+        if (applicationInfo.sourceDir == null)
+            return InstalledPackageModel.APP_SIZE_UNKNOWN;
+
+        long size = new File(applicationInfo.sourceDir).length();
+        if (applicationInfo.splitSourceDirs != null) {
+            for (String splitSourceDir : applicationInfo.splitSourceDirs) {
+                size += new File(splitSourceDir).length();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Задача измерения размера одного приложения.
+     */
+    private class MeasureTask implements Runnable {
+
+        private final ApplicationInfo mApplicationInfo;
+        private final MeasureRun mRun;
+
+        MeasureTask(@NonNull ApplicationInfo applicationInfo, @NonNull MeasureRun run) {
+            mApplicationInfo = applicationInfo;
+            mRun = run;
+        }
+
+        @Override
+        public void run() {
+            long lastUpdateTime = PackageInstalledRepository.getLastUpdateTime(mApplicationInfo);
+            long size = getCachedSize(mApplicationInfo.packageName, lastUpdateTime);
+            if (size == InstalledPackageModel.APP_SIZE_UNKNOWN) {
+                long startTime = mMetrics.startTimer();
+                size = measureSize(mApplicationInfo);
+                mMetrics.stopTimer(Metrics.Stage.MEASURE_SIZE, startTime);
+                mMetrics.increment(Metrics.Counter.SIZE_MEASURED);
+                putCachedSize(mApplicationInfo.packageName, lastUpdateTime, size);
+            }
+            mRun.onMeasured(mApplicationInfo.packageName, size);
+        }
+    }
+
+    /**
+     * Один запуск измерения: собирает результаты и передает их слушателю порциями,
+     * чтобы не перерисовывать список после каждого пакета.
+     */
+    private static class MeasureRun {
+
+        private final OnSizesMeasuredListener mListener;
+        private int mRemaining;
+        private Map<String, Long> mPending = new HashMap<>();
+
+        MeasureRun(int count, @NonNull OnSizesMeasuredListener listener) {
+            mRemaining = count;
+            mListener = listener;
+        }
+
+        void onMeasured(@NonNull String packageName, long size) {
+            Map<String, Long> batch = null;
+            boolean isFinished;
+            synchronized (this) {
+                mRemaining--;
+                isFinished = mRemaining == 0;
+                if (size != InstalledPackageModel.APP_SIZE_UNKNOWN)
+                    mPending.put(packageName, size);
+                if (!mPending.isEmpty() && (isFinished || mPending.size() >= PUBLISH_BATCH_SIZE)) {
+                    batch = mPending;
+                    mPending = new HashMap<>();
+                }
+                // слушатель вызывается под блокировкой, поэтому порции не обгоняют друг друга
+                if (batch != null)
+                    mListener.onSizesMeasured(batch);
+                if (isFinished)
+                    mListener.onFinish();
+            }
+        }
+    }
+
+    private static class CachedSize {
+
+        private final long mLastUpdateTime;
+        private final long mSize;
+
+        CachedSize(long lastUpdateTime, long size) {
+            mLastUpdateTime = lastUpdateTime;
+            mSize = size;
+        }
+    }
+
+    /**
+     * Фабрика потоков вычисления размеров с понятными именами и пониженным приоритетом.
+     */
+    private static class SizeThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger mThreadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(@NonNull final Runnable runnable) {
+            Thread thread = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                    runnable.run();
+                }
+            }, "AppSize #" + mThreadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Интерфейс слушателя измеренных размеров.
+     */
+    interface OnSizesMeasuredListener {
+
+        /**
+         * Метод, вызываемый в потоке вычисления размеров при готовности очередной порции размеров.
+         *
+         * @param sizes размеры в байтах по имени пакета.
+         */
+        void onSizesMeasured(@NonNull Map<String, Long> sizes);
+
+        /**
+         * Метод, вызываемый после измерения всех запрошенных приложений.
+         */
+        void onFinish();
+    }
+}
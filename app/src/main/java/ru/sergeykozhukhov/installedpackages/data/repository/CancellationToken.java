@@ -0,0 +1,21 @@
+package ru.sergeykozhukhov.installedpackages.data.repository;
+
+/**
+ * Признак отмены длительной операции. Операция проверяет его между шагами
+ * и прекращает работу, не дожидаясь окончания обработки всех элементов.
+ */
+public class CancellationToken {
+
+    private volatile boolean mIsCancelled;
+
+    /**
+     * Отмена операции. Уже начатый шаг завершается, следующие не выполняются.
+     */
+    public void cancel() {
+        mIsCancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return mIsCancelled;
+    }
+}
@@ -0,0 +1,126 @@
+package ru.sergeykozhukhov.installedpackages.data.repository;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.content.pm.ChangedPackages;
+import android.content.pm.PackageManager;
+import android.net.Uri;
+import android.os.Build;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import ru.sergeykozhukhov.installedpackages.data.metrics.Metrics;
+
+/**
+ * Отслеживание изменений установленных приложений.
+ *
+ * <p> Пока отслеживание включено, изменения приходят широковещательными сообщениями PACKAGE_ADDED/REMOVED/REPLACED/CHANGED.
+ * Изменения, произошедшие пока отслеживание было выключено, на Android 8.0+ запрашиваются
+ * через {@link PackageManager#getChangedPackages(int)} при повторном включении.
+ */
+class PackageChangeTracker {
+
+    private final Context mContext;
+    private final PackageManager mPackageManager;
+    private final Metrics mMetrics;
+    // mListener - слушатель изменений, задается при включении отслеживания
+    private OnPackageChangedListener mListener;
+
+    // mSequenceNumber - номер последовательности изменений PackageManager, до которого изменения уже учтены
+    private int mSequenceNumber = -1;
+    private boolean mIsStarted;
+
+    private final BroadcastReceiver mPackageReceiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            Uri data = intent.getData();
+            if (data == null)
+                return;
+
+            // при обновлении приложения приходят REMOVED и ADDED с флагом EXTRA_REPLACING, а затем REPLACED,
+            // поэтому достаточно обработать только последнее сообщение
+            boolean isReplacing = intent.getBooleanExtra(Intent.EXTRA_REPLACING, false);
+            String action = intent.getAction();
+            if (isReplacing && (Intent.ACTION_PACKAGE_ADDED.equals(action) || Intent.ACTION_PACKAGE_REMOVED.equals(action)))
+                return;
+
+            mListener.onPackagesChanged(Collections.singletonList(data.getSchemeSpecificPart()));
+        }
+    };
+
+    PackageChangeTracker(@NonNull Context context, @NonNull Metrics metrics) {
+        mContext = context;
+        mPackageManager = context.getPackageManager();
+        mMetrics = metrics;
+    }
+
+    /**
+     * Включение отслеживания. Сообщает об изменениях, пропущенных с момента выключения.
+     *
+     * @param listener слушатель изменений пакетов.
+     */
+    void start(@NonNull OnPackageChangedListener listener) {
+        mListener = listener;
+        if (mIsStarted)
+            return;
+        mIsStarted = true;
+
+        IntentFilter intentFilter = new IntentFilter();
+        intentFilter.addAction(Intent.ACTION_PACKAGE_ADDED);
+        intentFilter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+        intentFilter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+        intentFilter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+        intentFilter.addDataScheme("package");
+        mContext.registerReceiver(mPackageReceiver, intentFilter);
+
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            pollChangedPackages();
+        }
+    }
+
+    /**
+     * Выключение отслеживания.
+     */
+    void stop() {
+        if (!mIsStarted)
+            return;
+        mIsStarted = false;
+        mContext.unregisterReceiver(mPackageReceiver);
+    }
+
+    /**
+     * Запрос изменений, произошедших с последнего учтенного номера последовательности.
+     * При первом вызове только запоминается текущий номер.
+     */
+    private void pollChangedPackages() {
+        int sequenceNumber = Math.max(mSequenceNumber, 0);
+        ChangedPackages changedPackages = mPackageManager.getChangedPackages(sequenceNumber);
+        mMetrics.increment(Metrics.Counter.BINDER_CALLS);
+        if (changedPackages == null)
+            return;
+
+        boolean isFirstPoll = mSequenceNumber < 0;
+        mSequenceNumber = changedPackages.getSequenceNumber();
+        if (!isFirstPoll && !changedPackages.getPackageNames().isEmpty())
+            mListener.onPackagesChanged(new ArrayList<>(changedPackages.getPackageNames()));
+    }
+
+    /**
+     * Интерфейс слушателя изменений пакетов.
+     */
+    interface OnPackageChangedListener {
+
+        /**
+         * Метод, вызываемый в главном потоке при изменении пакетов.
+         *
+         * @param packageNames имена изменившихся пакетов (установленных, обновленных или удаленных).
+         */
+        void onPackagesChanged(@NonNull List<String> packageNames);
+    }
+}
@@ -6,20 +6,49 @@ import android.content.pm.ActivityInfo;
 import android.content.pm.ApplicationInfo;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
-import android.graphics.drawable.Drawable;
-import android.os.AsyncTask;
+import android.content.res.Resources;
+import android.util.Log;
 
+import androidx.annotation.MainThread;
 import androidx.annotation.NonNull;
-import androidx.core.content.ContextCompat;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+import androidx.annotation.WorkerThread;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import ru.sergeykozhukhov.installedpackages.R;
+import ru.sergeykozhukhov.installedpackages.data.cache.IconCache;
+import ru.sergeykozhukhov.installedpackages.data.cache.IconLoader;
+import ru.sergeykozhukhov.installedpackages.data.cache.PackageSnapshotCache;
+import ru.sergeykozhukhov.installedpackages.data.executor.PriorityTaskExecutor;
+import ru.sergeykozhukhov.installedpackages.data.executor.TaskExecutor;
+import ru.sergeykozhukhov.installedpackages.data.metrics.Metrics;
+import ru.sergeykozhukhov.installedpackages.data.metrics.MetricsSnapshot;
+import ru.sergeykozhukhov.installedpackages.data.model.IInstalledPackageModel;
+import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackageChangeModel;
 import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackageModel;
 import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackedSortOptionModel;
+import ru.sergeykozhukhov.installedpackages.data.model.MetadataColumn;
+import ru.sergeykozhukhov.installedpackages.data.model.PackageMetadataModel;
+import ru.sergeykozhukhov.installedpackages.data.model.ScanMode;
 import ru.sergeykozhukhov.installedpackages.data.model.SortOption;
+import ru.sergeykozhukhov.installedpackages.data.sort.SortEngine;
+import ru.sergeykozhukhov.installedpackages.data.sort.SortSpec;
+import ru.sergeykozhukhov.installedpackages.data.store.PackageColumnStore;
 
 /**
  * Репозиторий - провайдер данных об установленных приложениях.
@@ -43,6 +72,56 @@ public class PackageInstalledRepository {
     // PackageManager - менеджер пакетов,
     // отвечающий за установку, обновление, удаление приложений, и хранящий информацию о них
     private final PackageManager mPackageManager;
+    // mPackageLoader - загрузчик, обрабатывающий пакеты параллельно
+    private final ParallelPackageLoader<ApplicationInfo> mPackageLoader;
+    // mSnapshotCache - снимок списка приложений на диске, доступный сразу после запуска
+    private final PackageSnapshotCache mSnapshotCache;
+    // mSnapshotStore - данные последнего снимка, загружаются с диска при первом обращении;
+    // опубликованное хранилище не изменяется, изменения вносятся в копию
+    // mSnapshotLocale - локаль названий приложений в снимке, снимок другой локали отбрасывается
+    private PackageColumnStore mSnapshotStore;
+    private boolean mIsSnapshotSystem;
+    private ScanMode mSnapshotScanMode = ScanMode.LAUNCHER;
+    private String mSnapshotLocale;
+    // mSnapshotGeneration - номер опубликованного снимка, увеличивается при каждой публикации
+    // mWrittenSnapshotGeneration - номер снимка, записанного на диск последним
+    private long mSnapshotGeneration;
+    private long mWrittenSnapshotGeneration;
+    // mSnapshotReadLock - снимок читается с диска один раз, без блокировки самого снимка
+    // mSnapshotWriteLock - записи снимка на диск выполняются по очереди
+    private final Object mSnapshotReadLock = new Object();
+    private final Object mSnapshotWriteLock = new Object();
+    // mInventoryScanner - получение всех установленных пакетов в режиме {@link ScanMode#FULL_INVENTORY}
+    private final PackageInventoryScanner mInventoryScanner;
+    // mScanMode - режим получения списка приложений для следующих загрузок
+    private volatile ScanMode mScanMode = ScanMode.LAUNCHER;
+    // mIconLoader - загрузчик иконок из кэша в памяти и на диске
+    private final IconLoader mIconLoader;
+    // mAppSizeEngine - вычисление размеров приложений в отдельном пуле потоков
+    private final AppSizeEngine mAppSizeEngine;
+    // mMetadataEngine - дополнительные данные о приложениях, загружаемые по запросу
+    private final PackageMetadataEngine mMetadataEngine;
+    // mChangeTracker - отслеживание установки, обновления и удаления приложений
+    // mPackageChangedListener - обработка изменившихся пакетов в потоке mChangeExecutor
+    private final PackageChangeTracker mChangeTracker;
+    private final PackageChangeTracker.OnPackageChangedListener mPackageChangedListener;
+    // mChangeExecutor - поток обработки изменений, изменения обрабатываются по очереди
+    private final ThreadPoolExecutor mChangeExecutor;
+    // mTaskExecutor - фоновые задачи загрузки и иконок, передача результатов в главный поток
+    private final TaskExecutor mTaskExecutor;
+    private OnPackagesChangedListener mOnPackagesChangedListener;
+    // mCurrentLoadingTask - выполняющаяся загрузка, используется только в главном потоке
+    private LoadingTask mCurrentLoadingTask;
+    // mMetrics - время этапов загрузки и счетчики обращений к PackageManager
+    private final Metrics mMetrics;
+
+    private static final String TAG = "PackageInstalledRepo";
+    private static final String SNAPSHOT_FILE_NAME = "installed_packages.snapshot";
+    private static final String METRICS_FILE_NAME = "load_metrics.txt";
+    private static final String ICON_CACHE_DIRECTORY = "icons";
+    // доля максимального размера кучи, отводимая под иконки в памяти
+    private static final int ICON_MEMORY_CACHE_DIVIDER = 16;
+    private static final long CHANGE_EXECUTOR_KEEP_ALIVE_SECONDS = 30;
 
     /**
      * Конструктор провайдера данных для установленных приложений.
@@ -50,20 +129,230 @@ public class PackageInstalledRepository {
      * @param context {@link Context} контекст для получения зависимости {@link PackageManager}.
      */
     public PackageInstalledRepository(@NonNull Context context) {
+        this(context, Metrics.DISABLED);
+    }
+
+    /**
+     * Конструктор провайдера данных с замером этапов загрузки.
+     *
+     * @param context {@link Context} контекст для получения зависимости {@link PackageManager}.
+     * @param metrics {@link Metrics} метрики загрузки, {@link Metrics#DISABLED} если замер не нужен.
+     */
+    public PackageInstalledRepository(@NonNull Context context, @NonNull Metrics metrics) {
+        this(context, metrics, new PriorityTaskExecutor());
+    }
+
+    /**
+     * Конструктор провайдера данных с заданным исполнителем задач.
+     *
+     * @param context      {@link Context} контекст для получения зависимости {@link PackageManager}.
+     * @param metrics      {@link Metrics} метрики загрузки, {@link Metrics#DISABLED} если замер не нужен.
+     * @param taskExecutor {@link TaskExecutor} исполнитель фоновых задач и задач главного потока.
+     */
+    public PackageInstalledRepository(@NonNull Context context, @NonNull Metrics metrics,
+                                      @NonNull TaskExecutor taskExecutor) {
+        this(context, metrics, taskExecutor, createIconLoader(context, metrics, taskExecutor),
+                new AppSizeEngine(context, metrics), new PackageChangeTracker(context, metrics));
+    }
+
+    /**
+     * Конструктор провайдера данных с заданными загрузчиком иконок, вычислением размеров и отслеживанием изменений.
+     * Позволяет проверить загрузку в тестах без ресурсов, служб и широковещательных сообщений Android.
+     */
+    @VisibleForTesting
+    PackageInstalledRepository(@NonNull Context context, @NonNull Metrics metrics,
+                               @NonNull TaskExecutor taskExecutor, @NonNull IconLoader iconLoader,
+                               @NonNull AppSizeEngine appSizeEngine, @NonNull PackageChangeTracker changeTracker) {
         mContext = context;
+        mMetrics = metrics;
+        mTaskExecutor = taskExecutor;
         mPackageManager = context.getPackageManager(); // получение экземпляра PackageManager
+        mPackageLoader = new ParallelPackageLoader<>();
+        mInventoryScanner = new PackageInventoryScanner(mPackageManager, metrics);
+        mSnapshotCache = new PackageSnapshotCache(new File(context.getCacheDir(), SNAPSHOT_FILE_NAME));
+        mIconLoader = iconLoader;
+        mAppSizeEngine = appSizeEngine;
+        mMetadataEngine = new PackageMetadataEngine(mPackageManager, metrics);
+
+        mChangeExecutor = new ThreadPoolExecutor(1, 1,
+                CHANGE_EXECUTOR_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>());
+        mChangeExecutor.allowCoreThreadTimeOut(true);
+        mChangeTracker = changeTracker;
+        mPackageChangedListener = new PackageChangeTracker.OnPackageChangedListener() {
+            @Override
+            public void onPackagesChanged(@NonNull final List<String> packageNames) {
+                mChangeExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        long startTime = mMetrics.startTimer();
+                        processChangedPackages(packageNames);
+                        mMetrics.stopTimer(Metrics.Stage.PROCESS_CHANGES, startTime);
+                    }
+                });
+            }
+        };
+    }
+
+    /**
+     * Создание загрузчика иконок: иконки хранятся в том размере, в котором отображаются в элементе списка.
+     */
+    @NonNull
+    private static IconLoader createIconLoader(@NonNull Context context, @NonNull Metrics metrics,
+                                               @NonNull TaskExecutor taskExecutor) {
+        Resources resources = context.getResources();
+        int iconSize = resources.getDimensionPixelSize(R.dimen.icon_size)
+                - 2 * resources.getDimensionPixelSize(R.dimen.padding_xsmall);
+        return new IconLoader(new IconCache(context.getPackageManager(), resources,
+                new File(context.getCacheDir(), ICON_CACHE_DIRECTORY), iconSize,
+                (int) (Runtime.getRuntime().maxMemory() / ICON_MEMORY_CACHE_DIVIDER), metrics), taskExecutor);
+    }
+
+    /**
+     * Получение загрузчика иконок. Модели содержат только ключ иконки,
+     * сама иконка загружается при отображении элемента списка.
+     *
+     * @return {@link IconLoader} загрузчик иконок
+     */
+    @NonNull
+    public IconLoader getIconLoader() {
+        return mIconLoader;
+    }
+
+    /**
+     * Получение метрик загрузки, в том числе для замеров в presenter.
+     *
+     * @return {@link Metrics} метрики, переданные в конструктор
+     */
+    @NonNull
+    public Metrics getMetrics() {
+        return mMetrics;
+    }
+
+    /**
+     * Вывод собранных метрик в logcat и в файл {@value #METRICS_FILE_NAME} в директории кэша.
+     * Запись выполняется в фоновом потоке. Если метрики выключены, ничего не происходит.
+     */
+    public void dumpMetrics() {
+        if (!mMetrics.isEnabled())
+            return;
+        final MetricsSnapshot snapshot = mMetrics.getSnapshot();
+        mChangeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                snapshot.dumpToLog(TAG);
+                try {
+                    snapshot.writeTo(new File(mContext.getCacheDir(), METRICS_FILE_NAME));
+                } catch (IOException e) {
+                    Log.w(TAG, "Unable to write metrics", e);
+                }
+            }
+        });
+    }
+
+    /**
+     * Выбор режима получения списка приложений. Режим применяется к следующим загрузкам;
+     * снимок, сохраненный в другом режиме, не отображается.
+     *
+     * @param scanMode {@link ScanMode} режим получения списка приложений.
+     */
+    public void setScanMode(@NonNull ScanMode scanMode) {
+        mScanMode = scanMode;
     }
 
     /**
      * Метод для асинхронной загрузки данных об установленных в системе приложениях.
      *
      * @param isSystem                {@code true} если необходимо показывать системные приложения, {@code false} иначе.
+     * @param sortOption              {@link SortOption} вариант сортировки, в порядке которого обрабатываются пакеты.
      * @param onLoadingFinishListener {@link OnProgressUpdateListener} слушатель выполнения шага загрузки.
      * @param onLoadingFinishListener {@link OnLoadingFinishListener} слушатель окончания загрузки.
      */
-    public void loadDataAsync(boolean isSystem, @NonNull OnProgressUpdateListener onProgressUpdateListener, @NonNull OnLoadingFinishListener onLoadingFinishListener) {
-        LoadingPackagesAsyncTask loadingPackagesAsyncTask = new LoadingPackagesAsyncTask(onProgressUpdateListener, onLoadingFinishListener);
-        loadingPackagesAsyncTask.execute(isSystem);
+    public void loadDataAsync(boolean isSystem, @Nullable SortOption sortOption, @NonNull OnProgressUpdateListener onProgressUpdateListener, @NonNull OnLoadingFinishListener onLoadingFinishListener) {
+        scheduleLoading(isSystem, sortOption, onProgressUpdateListener, null, onLoadingFinishListener);
+    }
+
+    /**
+     * Метод для асинхронной загрузки данных с передачей готовых моделей порциями по мере их построения.
+     * Порции передаются в порядке варианта сортировки, поэтому первыми готовы приложения, отображаемые вверху списка.
+     *
+     * @param isSystem                {@code true} если необходимо показывать системные приложения, {@code false} иначе.
+     * @param sortOption              {@link SortOption} вариант сортировки, в порядке которого обрабатываются пакеты.
+     * @param onBatchLoadedListener   {@link OnBatchLoadedListener} слушатель готовых порций данных.
+     * @param onLoadingFinishListener {@link OnLoadingFinishListener} слушатель окончания загрузки.
+     */
+    public void loadDataStreaming(boolean isSystem, @Nullable SortOption sortOption, @NonNull OnBatchLoadedListener onBatchLoadedListener, @NonNull OnLoadingFinishListener onLoadingFinishListener) {
+        scheduleLoading(isSystem, sortOption, null, onBatchLoadedListener, onLoadingFinishListener);
+    }
+
+    /**
+     * Отмена выполняющейся загрузки. Слушатели отмененной загрузки не вызываются.
+     */
+    @MainThread
+    public void cancelLoading() {
+        if (mCurrentLoadingTask != null) {
+            mCurrentLoadingTask.cancelLoading();
+            mCurrentLoadingTask = null;
+        }
+    }
+
+    /**
+     * Асинхронная загрузка дополнительных данных о приложениях. Данные запрашиваются у PackageManager
+     * только для приложений, которых нет в кэше для их текущей версии, одним запросом на все приложения.
+     *
+     * @param packageModels            приложения, данные которых необходимы, например отображаемые.
+     * @param columns                  необходимые столбцы данных.
+     * @param onMetadataLoadedListener {@link OnMetadataLoadedListener} слушатель, вызываемый в главном потоке.
+     */
+    @MainThread
+    public void loadMetadataAsync(@NonNull List<InstalledPackageModel> packageModels,
+                                  @NonNull Set<MetadataColumn> columns,
+                                  @NonNull final OnMetadataLoadedListener onMetadataLoadedListener) {
+        final Map<String, Long> packageVersions = new HashMap<>(packageModels.size());
+        for (InstalledPackageModel model : packageModels) {
+            packageVersions.put(model.getAppPackageName(), model.getLastUpdateTime());
+        }
+        final Set<MetadataColumn> requestedColumns = EnumSet.noneOf(MetadataColumn.class);
+        requestedColumns.addAll(columns);
+
+        mTaskExecutor.executeInBackground(new Runnable() {
+            @Override
+            public void run() {
+                final Map<String, PackageMetadataModel> metadata = mMetadataEngine.load(packageVersions, requestedColumns);
+                mTaskExecutor.executeOnMainThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        onMetadataLoadedListener.onMetadataLoaded(metadata);
+                    }
+                });
+            }
+        }, TaskExecutor.Priority.VISIBLE);
+    }
+
+    /**
+     * Планирование загрузки. Одновременно выполняется не более одной загрузки:
+     * повторный запрос с теми же параметрами присоединяется к уже идущей загрузке,
+     * а запрос с другими параметрами отменяет ее. Слушатели прежнего запроса больше не вызываются,
+     * поэтому результат получает только последний запрос.
+     */
+    @MainThread
+    private void scheduleLoading(boolean isSystem,
+                                 @Nullable SortOption sortOption,
+                                 @Nullable OnProgressUpdateListener onProgressUpdateListener,
+                                 @Nullable OnBatchLoadedListener onBatchLoadedListener,
+                                 @NonNull OnLoadingFinishListener onLoadingFinishListener) {
+        ScanMode scanMode = mScanMode;
+        if (mCurrentLoadingTask != null && mCurrentLoadingTask.canServe(isSystem, scanMode, sortOption)) {
+            mCurrentLoadingTask.setListeners(onProgressUpdateListener, onBatchLoadedListener, onLoadingFinishListener);
+            return;
+        }
+
+        if (mCurrentLoadingTask != null)
+            mCurrentLoadingTask.cancelLoading();
+
+        LoadingTask loadingTask = new LoadingTask(isSystem, scanMode, sortOption);
+        mCurrentLoadingTask = loadingTask;
+        loadingTask.setListeners(onProgressUpdateListener, onBatchLoadedListener, onLoadingFinishListener);
+        mTaskExecutor.executeInBackground(loadingTask, TaskExecutor.Priority.VISIBLE);
     }
 
     /**
@@ -72,22 +361,91 @@ public class PackageInstalledRepository {
      * @param isSystem {@code true} если необходимо показывать системные приложения, {@code false} иначе.
      */
     public List<InstalledPackageModel> getData(boolean isSystem) {
-        List<InstalledPackageModel> installedPackageModels = new ArrayList<>();
-
-        List<String> installedPackages = getInstalledPackages(isSystem);
+        long startTime = mMetrics.startTimer();
+        ScanMode scanMode = mScanMode;
+        List<ApplicationInfo> installedPackages = getInstalledPackages(isSystem, scanMode, null);
+        List<InstalledPackageModel> installedPackageModels = mPackageLoader.load(
+                installedPackages, createModelFactory(isSystem, getSnapshotStore()), null);
+        mMetrics.stopTimer(Metrics.Stage.LOAD, startTime);
+        saveSnapshot(isSystem, scanMode, installedPackageModels);
+        measureAppSizes(installedPackages);
+        return installedPackageModels;
+    }
 
-        for (String packageName : installedPackages) {
-            getAppSize(packageName);
+    /**
+     * Асинхронное получение данных об установленных приложениях из снимка, сохраненного при последней загрузке.
+     * При первом обращении снимок читается с диска, поэтому чтение выполняется в фоновом потоке.
+     *
+     * @param isSystem                 {@code true} если необходимо показывать системные приложения, {@code false} иначе.
+     * @param onSnapshotLoadedListener {@link OnSnapshotLoadedListener} слушатель, вызываемый в главном потоке.
+     */
+    @MainThread
+    public void loadSnapshotAsync(final boolean isSystem, @NonNull final OnSnapshotLoadedListener onSnapshotLoadedListener) {
+        mTaskExecutor.executeInBackground(new Runnable() {
+            @Override
+            public void run() {
+                final List<InstalledPackageModel> snapshot = getSnapshot(isSystem);
+                mTaskExecutor.executeOnMainThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        onSnapshotLoadedListener.onSnapshotLoaded(snapshot);
+                    }
+                });
+            }
+        }, TaskExecutor.Priority.VISIBLE);
+    }
 
-            InstalledPackageModel installedPackageModel = new InstalledPackageModel(
-                    getAppName(packageName), packageName, getAppIcon(packageName),
-                    isSystem && isSystemPackage(packageName));
+    /**
+     * Получение данных об установленных приложениях из снимка, сохраненного при последней загрузке.
+     * Обращения к PackageManager не производится, но при первом обращении снимок читается с диска.
+     *
+     * @param isSystem {@code true} если необходимо показывать системные приложения, {@code false} иначе.
+     * @return список приложений или {@code null}, если подходящего снимка нет.
+     */
+    @WorkerThread
+    @Nullable
+    public List<InstalledPackageModel> getSnapshot(boolean isSystem) {
+        PackageColumnStore snapshotStore = getSnapshotStore();
+        boolean isSnapshotSystem;
+        ScanMode snapshotScanMode;
+        synchronized (this) {
+            isSnapshotSystem = mIsSnapshotSystem;
+            snapshotScanMode = mSnapshotScanMode;
+        }
+        // снимок без системных приложений не может заменить полный список,
+        // снимок другого режима содержит другой набор пакетов
+        if (snapshotStore.isEmpty() || (isSystem && !isSnapshotSystem) || snapshotScanMode != mScanMode)
+            return null;
 
-            installedPackageModels.add(installedPackageModel);
+        List<InstalledPackageModel> installedPackageModels = new ArrayList<>(snapshotStore.size());
+        for (int i = 0; i < snapshotStore.size(); i++) {
+            PackageColumnStore.Row row = snapshotStore.getRow(i);
+            if (!isSystem && row.getIsAppSystem())
+                continue;
+            installedPackageModels.add(createModel(row));
         }
         return installedPackageModels;
     }
 
+    /**
+     * Включение отслеживания изменений установленных приложений.
+     * Изменения сопоставляются с последними загруженными данными, и слушатель получает только отличия.
+     *
+     * @param onPackagesChangedListener {@link OnPackagesChangedListener} слушатель изменений.
+     */
+    public void startTrackingChanges(@NonNull OnPackagesChangedListener onPackagesChangedListener) {
+        mOnPackagesChangedListener = onPackagesChangedListener;
+        mChangeTracker.start(mPackageChangedListener);
+    }
+
+    /**
+     * Выключение отслеживания изменений установленных приложений.
+     */
+    public void stopTrackingChanges() {
+        mChangeTracker.stop();
+        mOnPackagesChangedListener = null;
+    }
+
     /**
      * Получение доступных вариантов сортировки данных о приложениях
      *
@@ -97,18 +455,55 @@ public class PackageInstalledRepository {
         return Arrays.asList(
                 new InstalledPackedSortOptionModel(null, mContext.getString(R.string.sort_option_none_description)),
                 new InstalledPackedSortOptionModel(SortOption.BY_APP_NAME, mContext.getString(R.string.sort_option_by_app_name_description)),
-                new InstalledPackedSortOptionModel(SortOption.BY_APP_PACKAGE_NAME, mContext.getString(R.string.sort_option_by_app_package_name_description))
+                new InstalledPackedSortOptionModel(SortOption.BY_APP_PACKAGE_NAME, mContext.getString(R.string.sort_option_by_app_package_name_description)),
+                new InstalledPackedSortOptionModel(SortOption.BY_APP_SIZE, mContext.getString(R.string.sort_option_by_app_size_description)),
+                new InstalledPackedSortOptionModel(SortOption.BY_SYSTEM_THEN_APP_NAME, mContext.getString(R.string.sort_option_by_system_then_app_name_description))
         );
     }
 
     /**
-     * Получение списка наименований установленных пакетов
+     * Получение списка информации об установленных приложениях
+     *
+     * @param isSystem          определяет, включать ли системные (true) пакеты в список
+     * @param scanMode          режим получения списка приложений
+     * @param cancellationToken признак отмены, может быть {@code null}
+     * @return список {@link ApplicationInfo} установленных пакетов без повторений
+     */
+    private List<ApplicationInfo> getInstalledPackages(final boolean isSystem, @NonNull ScanMode scanMode,
+                                                       @Nullable CancellationToken cancellationToken) {
+        if (scanMode != ScanMode.FULL_INVENTORY)
+            return getLauncherPackages(isSystem);
+
+        // известные пакеты нужны, только если список всех пакетов не укладывается в транзакцию binder
+        PackageInventoryScanner.KnownPackages knownPackages = new PackageInventoryScanner.KnownPackages() {
+            @NonNull
+            @Override
+            public List<ApplicationInfo> getLauncherPackages() {
+                return PackageInstalledRepository.this.getLauncherPackages(isSystem);
+            }
+
+            @NonNull
+            @Override
+            public Collection<String> getSnapshotPackageNames() {
+                PackageColumnStore snapshotStore = getSnapshotStore();
+                List<String> packageNames = new ArrayList<>(snapshotStore.size());
+                for (int i = 0; i < snapshotStore.size(); i++) {
+                    packageNames.add(snapshotStore.getRow(i).getAppPackageName());
+                }
+                return packageNames;
+            }
+        };
+        return mInventoryScanner.scan(isSystem, knownPackages, cancellationToken);
+    }
+
+    /**
+     * Получение списка приложений, у которых есть activity в средстве запуска приложений
      *
      * @param isSystem определяет, включать ли системные (true) пакеты в список
-     * @return список наименований установленных пакетов
+     * @return список {@link ApplicationInfo} установленных пакетов без повторений
      */
-    private List<String> getInstalledPackages(boolean isSystem) {
-        List<String> apkPackageName = new ArrayList<>();
+    private List<ApplicationInfo> getLauncherPackages(boolean isSystem) {
+        List<ApplicationInfo> applicationInfoList = new ArrayList<>();
 
         // ACTION_MAIN - входная точка приложения
         // CATEGORY_LAUNCHER - указывает на то, что значок данной активности следует поместить в средство запуска приложений системы
@@ -117,159 +512,712 @@ public class PackageInstalledRepository {
 
         // queryIntentActivities возвращает все activities, использующие подобный intent
         // соритируеться в порядке от самого предпочтительного для выполнения данного intent к наимению предпочтительного
-        // возможная проблема: возвращение "дубликатов".
-        // Допустимо использоваться getInstalledApplication. В таком случае будут возвращены и системные службы,
-        // которые могут не иметь activity
+        // приложение с несколькими activity возвращается несколько раз, повторения отбрасываются при обходе.
+        // Системные службы и пакеты без activity возвращаются только в режиме ScanMode.FULL_INVENTORY
+        long startTime = mMetrics.startTimer();
         List<ResolveInfo> resolveInfoList = mPackageManager.queryIntentActivities(intent, 0);
+        mMetrics.stopTimer(Metrics.Stage.QUERY_PACKAGES, startTime);
+        mMetrics.increment(Metrics.Counter.BINDER_CALLS);
 
+        // ResolveInfo уже содержит ApplicationInfo пакета, поэтому дальнейшие обращения
+        // к PackageManager по имени пакета не нужны
+        PackageNameSet packageNames = new PackageNameSet(resolveInfoList.size());
         for (ResolveInfo resolveInfo : resolveInfoList) {
-            if (isSystem || !isSystemPackage(resolveInfo)) {
-                ActivityInfo activityInfo = resolveInfo.activityInfo;
-                apkPackageName.add(activityInfo.applicationInfo.packageName);
+            ActivityInfo activityInfo = resolveInfo.activityInfo;
+            if (!packageNames.add(activityInfo.packageName))
+                continue;
+            if (isSystem || !isSystemPackage(activityInfo.applicationInfo)) {
+                applicationInfoList.add(activityInfo.applicationInfo);
             }
         }
 
-        return apkPackageName;
+        return applicationInfoList;
     }
 
     /**
-     * Получение наименования приложения
+     * Упорядочивание пакетов в порядке их отображения, чтобы дорогая обработка - получение названий
+     * из ресурсов приложений и измерение размеров - начиналась с приложений, которые видны на экране первыми.
      *
-     * @param packageName  - наименование пакета
-     * @return наименование приложения
+     * <p> Порядок определяется по предварительным моделям, построенным без обращений к PackageManager
+     * и к файлам пакетов: данные берутся из снимка, а для новых пакетов название берется из метки,
+     * уже имеющейся в {@link ApplicationInfo}, или заменяется именем пакета. Поэтому порядок новых
+     * и изменившихся пакетов приблизительный, точный порядок определяется сортировкой загруженных данных.
+     *
+     * @param installedPackages приложения в порядке, возвращенном PackageManager
+     * @param isSystem          включены ли в данные системные приложения
+     * @param sortOption        вариант сортировки, {@code null} если порядок не меняется
+     * @param snapshotStore     данные последнего снимка
+     * @return индексы приложений в порядке отображения или {@code null}, если порядок не меняется
      */
-    private String getAppName(@NonNull String packageName) {
-        String appName = "";
-        ApplicationInfo applicationInfo;
-
-        try {
-            // получение всей информации о пакете
-            // второй аргумент - флаг фильтрации. В данном случае никакой фильтрации не производится
-            applicationInfo = mPackageManager.getApplicationInfo(packageName, 0);
-            // получение имени приложения по applicationInfo
-            appName = (String) mPackageManager.getApplicationLabel(applicationInfo);
-        } catch (PackageManager.NameNotFoundException e) {
-            e.printStackTrace();
+    @Nullable
+    private int[] getDisplayOrder(@NonNull List<ApplicationInfo> installedPackages, boolean isSystem,
+                                  @Nullable SortOption sortOption,
+                                  @NonNull PackageColumnStore snapshotStore) {
+        SortSpec sortSpec = SortSpec.forOption(sortOption);
+        if (sortSpec == null || installedPackages.size() < 2)
+            return null;
+
+        List<InstalledPackageModel> skeletonModels = new ArrayList<>(installedPackages.size());
+        for (ApplicationInfo applicationInfo : installedPackages) {
+            skeletonModels.add(createSkeletonModel(applicationInfo, isSystem, snapshotStore));
         }
-        return appName;
+        return SortEngine.sortedOrder(skeletonModels, sortSpec);
     }
 
     /**
-     * Получение изображения пакета
+     * Упорядочивание приложений в порядке отображения.
      *
-     * @param packageName - наименование пакета
-     * @return изображение, ассоциируемое с данным пакетом или стандартное изображения, в случае отсутвия пакетного
+     * @param installedPackages приложения в порядке, возвращенном PackageManager
+     * @param displayOrder      индексы приложений в порядке отображения
+     * @return приложения в порядке отображения
      */
-    private Drawable getAppIcon(@NonNull String packageName) {
-        // Drawable - базовый класс для всех классов работы с графикой.
-        // Представляет собой общую абстракцию для рисуемого объекта на Canvas
-        Drawable drawable;
-        try {
-            drawable = mPackageManager.getApplicationIcon(packageName); // извлечение изображения по имени пакета
+    @NonNull
+    private static List<ApplicationInfo> orderForDisplay(@NonNull List<ApplicationInfo> installedPackages,
+                                                         @NonNull int[] displayOrder) {
+        List<ApplicationInfo> orderedPackages = new ArrayList<>(displayOrder.length);
+        for (int index : displayOrder) {
+            orderedPackages.add(installedPackages.get(index));
         }
-        catch (PackageManager.NameNotFoundException e) // в случае ошибки производиться загрузка изображения с id "R.mipmap.ic_launcher"
-        {
-            e.printStackTrace();
-            // ContextCompat - класс из support library, обеспечивающий доступ к функциям Context.
-            // getDrawable - получение изображение по id ресурса
-            drawable = ContextCompat.getDrawable(mContext, R.mipmap.ic_launcher);
+        return orderedPackages;
+    }
+
+    /**
+     * Восстановление порядка PackageManager для моделей, загруженных в порядке отображения:
+     * без сортировки список отображается в том порядке, в котором его вернул PackageManager.
+     *
+     * @param installedPackageModels модели в порядке отображения
+     * @param displayOrder           индексы приложений в порядке отображения
+     * @return модели в порядке, возвращенном PackageManager
+     */
+    @NonNull
+    private static List<InstalledPackageModel> restoreOrder(@NonNull List<InstalledPackageModel> installedPackageModels,
+                                                            @NonNull int[] displayOrder) {
+        InstalledPackageModel[] models = new InstalledPackageModel[displayOrder.length];
+        for (int i = 0; i < displayOrder.length; i++) {
+            models[displayOrder[i]] = installedPackageModels.get(i);
         }
+        return new ArrayList<>(Arrays.asList(models));
+    }
+
+    /**
+     * Построение предварительной модели приложения, используемой только для определения порядка обработки.
+     */
+    @NonNull
+    private InstalledPackageModel createSkeletonModel(@NonNull ApplicationInfo applicationInfo, boolean isSystem,
+                                                      @NonNull PackageColumnStore snapshotStore) {
+        int row = snapshotStore.indexOf(applicationInfo.packageName);
+        if (row >= 0)
+            return createModel(snapshotStore.getRow(row));
+
+        String appName = applicationInfo.nonLocalizedLabel != null
+                ? applicationInfo.nonLocalizedLabel.toString() : applicationInfo.packageName;
+        return new InstalledPackageModel(appName, applicationInfo.packageName,
+                IconCache.createKey(applicationInfo.packageName, 0),
+                isSystem && isSystemPackage(applicationInfo), 0, InstalledPackageModel.APP_SIZE_UNKNOWN);
+    }
+
+    /**
+     * Получение информации о приложении, если у него есть activity, отображаемая в средстве запуска приложений.
+     *
+     * @param packageName имя пакета
+     * @return {@link ApplicationInfo} приложения или {@code null}, если приложение удалено или не имеет такой activity
+     */
+    @Nullable
+    private ApplicationInfo getLauncherApplicationInfo(@NonNull String packageName) {
+        Intent intent = new Intent(Intent.ACTION_MAIN, null);
+        intent.addCategory(Intent.CATEGORY_LAUNCHER);
+        intent.setPackage(packageName);
 
-        return drawable;
+        List<ResolveInfo> resolveInfoList = mPackageManager.queryIntentActivities(intent, 0);
+        mMetrics.increment(Metrics.Counter.BINDER_CALLS);
+        return resolveInfoList.isEmpty() ? null : resolveInfoList.get(0).activityInfo.applicationInfo;
     }
 
-    //данный метод не очень просто реализовать. здесь он нужен только для того, чтобы увеличить время загрузки и понаслаждаться работой презентера
-    //по переключению видов.
-    private int getAppSize(@NonNull String packageName) {
-        try {
-            Thread.sleep(50);
-        } catch (InterruptedException e) {
-            e.printStackTrace();
+    /**
+     * Обработка изменившихся пакетов: сравнение с последними загруженными данными,
+     * обновление снимка и передача отличий слушателю.
+     * Пересчитываются только изменившиеся пакеты, иконки удаленных пакетов удаляются из кэша.
+     *
+     * <p> Пока изменения вычисляются, снимок может заменить загрузка или измерение размеров,
+     * поэтому изменения вносятся в последний опубликованный снимок под его блокировкой.
+     *
+     * @param packageNames имена изменившихся пакетов
+     */
+    private void processChangedPackages(@NonNull List<String> packageNames) {
+        PackageColumnStore snapshotStore = getSnapshotStore();
+        boolean isSystem;
+        ScanMode scanMode;
+        String snapshotLocale;
+        synchronized (this) {
+            isSystem = mIsSnapshotSystem;
+            scanMode = mSnapshotScanMode;
+            snapshotLocale = mSnapshotLocale;
+        }
+        if (snapshotStore.isEmpty())
+            return; // данные еще не загружались, сравнивать не с чем
+
+        ParallelPackageLoader.ModelFactory<ApplicationInfo> modelFactory = createModelFactory(isSystem, snapshotStore);
+        List<InstalledPackageChangeModel> changes = new ArrayList<>();
+        List<ApplicationInfo> changedPackages = new ArrayList<>();
+
+        for (String packageName : packageNames) {
+            ApplicationInfo applicationInfo = scanMode == ScanMode.FULL_INVENTORY
+                    ? mInventoryScanner.getApplicationInfo(packageName) : getLauncherApplicationInfo(packageName);
+            boolean isShown = applicationInfo != null && (isSystem || !isSystemPackage(applicationInfo));
+            boolean wasShown = snapshotStore.contains(packageName);
+
+            if (!isShown) {
+                mMetadataEngine.remove(packageName);
+                if (wasShown) {
+                    mIconLoader.removeIcons(packageName);
+                    changes.add(new InstalledPackageChangeModel(
+                            InstalledPackageChangeModel.Type.REMOVED, packageName, null));
+                }
+                continue;
+            }
+
+            InstalledPackageModel model = modelFactory.create(applicationInfo);
+            changedPackages.add(applicationInfo);
+            changes.add(new InstalledPackageChangeModel(
+                    wasShown ? InstalledPackageChangeModel.Type.UPDATED : InstalledPackageChangeModel.Type.ADDED,
+                    packageName, model));
         }
 
-        return 0;
+        if (changes.isEmpty())
+            return;
+
+        synchronized (this) {
+            // снимок заменила загрузка с другими параметрами, которая уже получила текущий список,
+            // или снимок сброшен после смены локали и загружается заново
+            if (mIsSnapshotSystem != isSystem || mSnapshotScanMode != scanMode
+                    || !snapshotLocale.equals(mSnapshotLocale) || mSnapshotStore.isEmpty())
+                return;
+
+            PackageColumnStore updatedStore = mSnapshotStore.copy();
+            for (InstalledPackageChangeModel change : changes) {
+                if (change.getType() == InstalledPackageChangeModel.Type.REMOVED) {
+                    updatedStore.remove(change.getAppPackageName());
+                } else {
+                    updatedStore.put(change.getInstalledPackageModel());
+                }
+            }
+            publishSnapshot(isSystem, scanMode, updatedStore);
+        }
+        writeSnapshot();
+        postChanges(changes);
+        measureAppSizes(changedPackages);
     }
 
     /**
-     * Определение, относится ли данный пакет к системным
+     * Запуск вычисления размеров приложений. Измеренные размеры сохраняются в снимок
+     * и передаются слушателю изменений как обновления приложений.
      *
-     * @param resolveInfo - информация о пакете, полученная с помощью intent
-     * @return true - если системное, false - в противном случае
+     * @param applicationInfoList приложения, размер которых необходимо получить
      */
-    private boolean isSystemPackage(@NonNull ResolveInfo resolveInfo) {
-        // FLAG_SYSTEM - флаг, определяющий, что приложение системное
-        return ((resolveInfo.activityInfo.applicationInfo.flags & ApplicationInfo.FLAG_SYSTEM) != 0);
+    private void measureAppSizes(@NonNull List<ApplicationInfo> applicationInfoList) {
+        mAppSizeEngine.measure(applicationInfoList, new AppSizeEngine.OnSizesMeasuredListener() {
+            @Override
+            public void onSizesMeasured(@NonNull final Map<String, Long> sizes) {
+                // обработка вместе с изменениями пакетов в одном потоке, чтобы не потерять обновления снимка
+                mChangeExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        processMeasuredSizes(sizes.keySet());
+                    }
+                });
+            }
+
+            @Override
+            public void onFinish() {
+                mChangeExecutor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        writeSnapshot();
+                    }
+                });
+            }
+        });
     }
 
     /**
-     * Определение, относится ли данный пакет к системным
+     * Обновление записей снимка измеренными размерами и передача обновленных приложений слушателю.
+     * Снимок на диск записывается после измерения всех приложений.
      *
-     * @param packageName - наименование пакета
-     * @return true - если системное, false - в противном случае
+     * <p> Копия снимка изменяется и публикуется под той же блокировкой, под которой снимок заменяет загрузка,
+     * поэтому размеры вносятся в последний снимок и не заменяют более новый снимок прежним.
+     * Под блокировкой выполняются только обращения к кэшу размеров в памяти.
+     *
+     * @param packageNames имена пакетов, размер которых измерен
      */
-    private boolean isSystemPackage(@NonNull String packageName){
-        try {
-            ApplicationInfo applicationInfo = mPackageManager.getApplicationInfo(
-                        packageName, 0);
-            return ((applicationInfo.flags & ApplicationInfo.FLAG_SYSTEM) != 0);
-        } catch (PackageManager.NameNotFoundException e) {
-            e.printStackTrace();
-             return false;
+    private void processMeasuredSizes(@NonNull Collection<String> packageNames) {
+        List<InstalledPackageChangeModel> changes = new ArrayList<>();
+        synchronized (this) {
+            if (mSnapshotStore == null)
+                return;
+
+            PackageColumnStore updatedStore = mSnapshotStore.copy();
+            for (String packageName : packageNames) {
+                int row = updatedStore.indexOf(packageName);
+                if (row < 0)
+                    continue;
+                PackageColumnStore.Row storeRow = updatedStore.getRow(row);
+                // размер берется для той версии пакета, которая записана в снимке
+                long appSize = mAppSizeEngine.getCachedSize(packageName, storeRow.getLastUpdateTime());
+                if (appSize == InstalledPackageModel.APP_SIZE_UNKNOWN || appSize == storeRow.getAppSize())
+                    continue;
+
+                updatedStore.setAppSize(row, appSize);
+                changes.add(new InstalledPackageChangeModel(
+                        InstalledPackageChangeModel.Type.UPDATED, packageName, createModel(storeRow)));
+            }
+
+            if (changes.isEmpty())
+                return;
+            mSnapshotStore = updatedStore;
+            mSnapshotGeneration++;
+        }
+        postChanges(changes);
+    }
+
+    /**
+     * Передача изменений слушателю в главном потоке.
+     */
+    private void postChanges(@NonNull final List<InstalledPackageChangeModel> changes) {
+        mTaskExecutor.executeOnMainThread(new Runnable() {
+            @Override
+            public void run() {
+                if (mOnPackagesChangedListener != null)
+                    mOnPackagesChangedListener.onPackagesChanged(changes);
+            }
+        });
+    }
+
+    /**
+     * Получение данных снимка. При первом обращении снимок читается с диска.
+     * Файл читается вне блокировки снимка, чтобы чтение не задерживало загрузку и обработку изменений,
+     * а прочитанный снимок публикуется под ней, только если его еще не заменила загрузка.
+     * Названия приложений в снимке получены в локали, в которой он сохранен, поэтому после смены локали
+     * снимок сбрасывается и загружается заново, см. {@link #resetSnapshot()}.
+     *
+     * <p> Не вызывается под блокировкой снимка: чтение снимка с диска берет ее после {@link #mSnapshotReadLock}.
+     *
+     * @return данные снимка в порядке последней загрузки; хранилище не должно изменяться
+     */
+    @NonNull
+    private PackageColumnStore getSnapshotStore() {
+        String locale = Locale.getDefault().toLanguageTag();
+        synchronized (this) {
+            if (mSnapshotStore != null) {
+                if (!locale.equals(mSnapshotLocale))
+                    resetSnapshot();
+                return mSnapshotStore;
+            }
+        }
+
+        synchronized (mSnapshotReadLock) {
+            synchronized (this) {
+                if (mSnapshotStore != null)
+                    return mSnapshotStore; // снимок прочитан другим потоком
+            }
+
+            PackageSnapshotCache.Snapshot snapshot = mSnapshotCache.read();
+            synchronized (this) {
+                if (mSnapshotStore != null)
+                    return mSnapshotStore; // пока файл читался, снимок опубликовала загрузка
+
+                mSnapshotStore = new PackageColumnStore();
+                mSnapshotLocale = locale;
+                if (snapshot != null && locale.equals(snapshot.getLocale())) {
+                    mIsSnapshotSystem = snapshot.isSystem();
+                    mSnapshotScanMode = snapshot.getScanMode();
+                    mSnapshotStore = snapshot.getStore();
+                    for (int i = 0; i < mSnapshotStore.size(); i++) {
+                        PackageColumnStore.Row row = mSnapshotStore.getRow(i);
+                        // размеры из снимка не измеряются повторно, пока пакет не обновится
+                        mAppSizeEngine.putCachedSize(row.getAppPackageName(), row.getLastUpdateTime(), row.getAppSize());
+                    }
+                }
+                return mSnapshotStore;
+            }
         }
     }
 
+    /**
+     * Сброс снимка после смены локали: публикуется пустой снимок, поэтому изменения пакетов, вычисленные
+     * по прежнему снимку, не вносятся в новый, и запускается повторная загрузка с прежними параметрами.
+     * Вызывается под блокировкой снимка.
+     */
+    private void resetSnapshot() {
+        final PackageColumnStore previousStore = mSnapshotStore;
+        final boolean isSystem = mIsSnapshotSystem;
+        final ScanMode scanMode = mSnapshotScanMode;
+        publishSnapshot(isSystem, scanMode, new PackageColumnStore());
+        if (previousStore.isEmpty())
+            return; // данные еще не загружались, обновлять нечего
 
+        final long generation = mSnapshotGeneration;
+        mChangeExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                reloadSnapshot(isSystem, scanMode, previousStore, generation);
+            }
+        });
+    }
 
     /**
-     * Класс для выполнения ассинхронной загрузки данных
+     * Повторная загрузка сброшенного снимка с названиями в новой локали.
+     * Слушатель изменений получает приложения, название или состав которых отличается от прежнего снимка,
+     * поэтому отображаемые данные обновляются без повторной загрузки в представлении.
+     *
+     * @param isSystem      включены ли в данные системные приложения
+     * @param scanMode      режим, в котором получен список приложений
+     * @param previousStore данные снимка до сброса
+     * @param generation    номер сброшенного снимка; если снимок уже заменен, результат не публикуется
      */
-    private class LoadingPackagesAsyncTask extends AsyncTask<Boolean, Integer, List<InstalledPackageModel>> {
+    private void reloadSnapshot(boolean isSystem, @NonNull ScanMode scanMode,
+                                @NonNull PackageColumnStore previousStore, long generation) {
+        List<ApplicationInfo> installedPackages = getInstalledPackages(isSystem, scanMode, null);
+        List<InstalledPackageModel> installedPackageModels = mPackageLoader.load(
+                installedPackages, createModelFactory(isSystem, new PackageColumnStore()), null);
 
-        private final OnProgressUpdateListener mOnProgressUpdateListener;
-        private final OnLoadingFinishListener mOnLoadingFinishListener;
+        PackageColumnStore snapshotStore = new PackageColumnStore(installedPackageModels.size());
+        List<InstalledPackageChangeModel> changes = new ArrayList<>();
+        for (InstalledPackageModel model : installedPackageModels) {
+            snapshotStore.put(model);
+            int row = previousStore.indexOf(model.getAppPackageName());
+            if (row < 0) {
+                changes.add(new InstalledPackageChangeModel(
+                        InstalledPackageChangeModel.Type.ADDED, model.getAppPackageName(), model));
+            } else if (!previousStore.getRow(row).getAppName().equals(model.getAppName())) {
+                changes.add(new InstalledPackageChangeModel(
+                        InstalledPackageChangeModel.Type.UPDATED, model.getAppPackageName(), model));
+            }
+        }
+        for (int i = 0; i < previousStore.size(); i++) {
+            String packageName = previousStore.getRow(i).getAppPackageName();
+            if (!snapshotStore.contains(packageName))
+                changes.add(new InstalledPackageChangeModel(
+                        InstalledPackageChangeModel.Type.REMOVED, packageName, null));
+        }
 
-        LoadingPackagesAsyncTask(@NonNull OnProgressUpdateListener onProgressUpdateListener, @NonNull OnLoadingFinishListener onLoadingFinishListener) {
-            mOnProgressUpdateListener = onProgressUpdateListener;
-            mOnLoadingFinishListener = onLoadingFinishListener;
+        synchronized (this) {
+            // пока данные загружались, снимок заменила загрузка, которая уже получила новые названия
+            if (mSnapshotGeneration != generation)
+                return;
+            publishSnapshot(isSystem, scanMode, snapshotStore);
         }
+        writeSnapshot();
+        postChanges(changes);
+        measureAppSizes(installedPackages);
+    }
 
-        @Override
-        protected List<InstalledPackageModel> doInBackground(Boolean... booleans) {
+    /**
+     * Сохранение снимка загруженных данных на диск.
+     *
+     * @param isSystem               включены ли в данные системные приложения
+     * @param scanMode               режим, в котором получен список приложений
+     * @param installedPackageModels загруженные данные
+     */
+    private void saveSnapshot(boolean isSystem, @NonNull ScanMode scanMode,
+                              @NonNull List<InstalledPackageModel> installedPackageModels) {
+        PackageColumnStore snapshotStore = new PackageColumnStore(installedPackageModels.size());
+        for (InstalledPackageModel model : installedPackageModels) {
+            snapshotStore.put(model);
+        }
+        saveSnapshot(isSystem, scanMode, snapshotStore);
+    }
+
+    /**
+     * Публикация данных снимка и их сохранение на диск.
+     *
+     * @param isSystem      включены ли в данные системные приложения
+     * @param scanMode      режим, в котором получен список приложений
+     * @param snapshotStore данные снимка, после сохранения не изменяются
+     */
+    private void saveSnapshot(boolean isSystem, @NonNull ScanMode scanMode,
+                              @NonNull PackageColumnStore snapshotStore) {
+        synchronized (this) {
+            publishSnapshot(isSystem, scanMode, snapshotStore);
+        }
+        writeSnapshot();
+    }
+
+    /**
+     * Публикация данных снимка. Вызывается под блокировкой снимка.
+     */
+    private void publishSnapshot(boolean isSystem, @NonNull ScanMode scanMode,
+                                 @NonNull PackageColumnStore snapshotStore) {
+        mSnapshotStore = snapshotStore;
+        mIsSnapshotSystem = isSystem;
+        mSnapshotScanMode = scanMode;
+        mSnapshotLocale = Locale.getDefault().toLanguageTag();
+        mSnapshotGeneration++;
+    }
+
+    /**
+     * Запись последнего опубликованного снимка на диск.
+     *
+     * <p> Записи выполняются по очереди, и каждая записывает снимок, опубликованный последним,
+     * поэтому запись, начатая раньше, не заменяет на диске более новый снимок.
+     * Если последний снимок уже записан, запись пропускается.
+     */
+    private void writeSnapshot() {
+        synchronized (mSnapshotWriteLock) {
+            PackageSnapshotCache.Snapshot snapshot;
+            synchronized (this) {
+                if (mWrittenSnapshotGeneration == mSnapshotGeneration)
+                    return;
+                mWrittenSnapshotGeneration = mSnapshotGeneration;
+                snapshot = new PackageSnapshotCache.Snapshot(mIsSnapshotSystem, mSnapshotScanMode,
+                        mSnapshotLocale, mSnapshotStore);
+            }
 
-            List<InstalledPackageModel> installedPackageModels = new ArrayList<>();
+            long startTime = mMetrics.startTimer();
+            mSnapshotCache.write(snapshot);
+            mMetrics.stopTimer(Metrics.Stage.SAVE_SNAPSHOT, startTime);
+        }
+    }
 
-            List<String> installedPackages = getInstalledPackages(booleans[0]);
+    @NonNull
+    private InstalledPackageModel createModel(@NonNull IInstalledPackageModel row) {
+        return new InstalledPackageModel(
+                row.getAppName(), row.getAppPackageName(),
+                IconCache.createKey(row.getAppPackageName(), row.getLastUpdateTime()),
+                row.getIsAppSystem(), row.getIsAppEnabled(), row.getIsUpdatedSystemApp(),
+                row.getLastUpdateTime(), row.getAppSize());
+    }
 
-            int size = installedPackages.size();
+    /**
+     * Получение времени последнего обновления пакета.
+     * При обновлении приложения его apk файл заменяется, поэтому время изменения файла
+     * позволяет обнаружить обновление без отдельного запроса PackageInfo к PackageManager.
+     *
+     * @param applicationInfo - информация о приложении
+     * @return время последнего обновления пакета или 0, если его не удалось определить
+     */
+    static long getLastUpdateTime(@NonNull ApplicationInfo applicationInfo) {
+        if (applicationInfo.sourceDir == null)
+            return 0;
+        return new File(applicationInfo.sourceDir).lastModified();
+    }
 
-            int current = 0;
-            for (String packageName : installedPackages) {
-                getAppSize(packageName);
+    /**
+     * Получение наименования приложения
+     *
+     * @param applicationInfo - информация о приложении
+     * @return наименование приложения
+     */
+    private String getAppName(@NonNull ApplicationInfo applicationInfo) {
+        // метка загружается из ресурсов приложения по уже имеющемуся applicationInfo
+        long startTime = mMetrics.startTimer();
+        CharSequence appName = mPackageManager.getApplicationLabel(applicationInfo);
+        mMetrics.stopTimer(Metrics.Stage.RESOLVE_LABEL, startTime);
+        mMetrics.increment(Metrics.Counter.LABEL_RESOLVED);
+        return appName != null ? appName.toString() : "";
+    }
 
-                InstalledPackageModel installedPackageModel = new InstalledPackageModel(
-                        getAppName(packageName), packageName, getAppIcon(packageName),
-                        booleans[0] && isSystemPackage(packageName));
+    /**
+     * Создание фабрики, строящей модель приложения по информации о нем.
+     * Данные пакетов, не изменившихся с момента сохранения снимка, берутся из снимка.
+     *
+     * @param isSystem        {@code true} если необходимо показывать системные приложения, {@code false} иначе.
+     * @param snapshotStore   данные последнего снимка.
+     * @return фабрика моделей для {@link ParallelPackageLoader}
+     */
+    private ParallelPackageLoader.ModelFactory<ApplicationInfo> createModelFactory(
+            final boolean isSystem, @NonNull final PackageColumnStore snapshotStore) {
+        return new ParallelPackageLoader.ModelFactory<ApplicationInfo>() {
+            @NonNull
+            @Override
+            public InstalledPackageModel create(@NonNull ApplicationInfo applicationInfo) {
+                long startTime = mMetrics.startTimer();
+                long lastUpdateTime = getLastUpdateTime(applicationInfo);
 
-                installedPackageModels.add(installedPackageModel);
+                String appName;
+                int row = snapshotStore.indexOf(applicationInfo.packageName);
+                PackageColumnStore.Row storeRow = row >= 0 ? snapshotStore.getRow(row) : null;
+                if (storeRow != null && lastUpdateTime != 0 && storeRow.getLastUpdateTime() == lastUpdateTime) {
+                    appName = storeRow.getAppName(); // пакет не изменился, повторно данные не вычисляются
+                } else {
+                    appName = getAppName(applicationInfo);
+                }
 
-                Integer percent = current*100/size; // определение процентра загрузки данных
+                // размер известен только если уже измерялся для этой версии пакета, иначе он вычисляется после загрузки
+                InstalledPackageModel model = new InstalledPackageModel(
+                        appName, applicationInfo.packageName,
+                        IconCache.createKey(applicationInfo.packageName, lastUpdateTime),
+                        isSystem && isSystemPackage(applicationInfo), applicationInfo.enabled,
+                        (applicationInfo.flags & ApplicationInfo.FLAG_UPDATED_SYSTEM_APP) != 0, lastUpdateTime,
+                        mAppSizeEngine.getCachedSize(applicationInfo.packageName, lastUpdateTime));
 
-                publishProgress(percent);
-                current++;
+                if (mMetrics.stopTimer(Metrics.Stage.BUILD_MODEL, startTime) > Metrics.SLOW_PACKAGE_NANOS)
+                    mMetrics.increment(Metrics.Counter.SLOW_PACKAGES);
+                return model;
             }
+        };
+    }
 
-            return installedPackageModels;
+    /**
+     * Определение, относится ли данный пакет к системным
+     *
+     * @param applicationInfo - информация о приложении
+     * @return true - если системное, false - в противном случае
+     */
+    static boolean isSystemPackage(@NonNull ApplicationInfo applicationInfo) {
+        // FLAG_SYSTEM - флаг, определяющий, что приложение системное
+        return ((applicationInfo.flags & ApplicationInfo.FLAG_SYSTEM) != 0);
+    }
+
+
+
+    /**
+     * Задача асинхронной загрузки данных, выполняемая через {@link TaskExecutor}.
+     *
+     * <p> Слушатели задачи можно заменить во время загрузки: новые слушатели сразу получают
+     * текущий процент и уже готовые порции, а прежние больше не вызываются.
+     */
+    private class LoadingTask implements Runnable {
+
+        private final boolean mIsSystem;
+        private final ScanMode mScanMode;
+        // mSortOption - вариант сортировки, в порядке которого обрабатываются пакеты
+        private final SortOption mSortOption;
+        // mCancellationToken - отмена загрузки между пакетами, не дожидаясь обработки всех пакетов
+        private final CancellationToken mCancellationToken = new CancellationToken();
+
+        // слушатели и состояние ниже изменяются и читаются только в главном потоке
+        private OnProgressUpdateListener mOnProgressUpdateListener;
+        private OnBatchLoadedListener mOnBatchLoadedListener;
+        private OnLoadingFinishListener mOnLoadingFinishListener;
+        // mLastProgress и mPublishedModels - уже переданные данные, повторяемые для новых слушателей
+        private int mLastProgress = -1;
+        private final List<InstalledPackageModel> mPublishedModels = new ArrayList<>();
+        private boolean mIsFinished;
+
+        LoadingTask(boolean isSystem, @NonNull ScanMode scanMode, @Nullable SortOption sortOption) {
+            mIsSystem = isSystem;
+            mScanMode = scanMode;
+            mSortOption = sortOption;
         }
 
-        @Override
-        protected void onProgressUpdate(Integer... values) {
-            mOnProgressUpdateListener.onUpdate(values[0]);
+        /**
+         * Определение, может ли задача выполнить запрос вместо запуска новой загрузки.
+         * Порции передаются в порядке сортировки, поэтому запрос с другой сортировкой запускает новую загрузку.
+         */
+        @MainThread
+        boolean canServe(boolean isSystem, @NonNull ScanMode scanMode, @Nullable SortOption sortOption) {
+            return mIsSystem == isSystem && mScanMode == scanMode && mSortOption == sortOption
+                    && !mCancellationToken.isCancelled() && !mIsFinished;
+        }
+
+        /**
+         * Замена слушателей задачи с передачей новым слушателям уже готовых данных.
+         */
+        @MainThread
+        void setListeners(@Nullable OnProgressUpdateListener onProgressUpdateListener,
+                          @Nullable OnBatchLoadedListener onBatchLoadedListener,
+                          @NonNull OnLoadingFinishListener onLoadingFinishListener) {
+            mOnProgressUpdateListener = onProgressUpdateListener;
+            mOnBatchLoadedListener = onBatchLoadedListener;
+            mOnLoadingFinishListener = onLoadingFinishListener;
+
+            if (mOnProgressUpdateListener != null && mLastProgress >= 0)
+                mOnProgressUpdateListener.onUpdate(mLastProgress);
+            if (mOnBatchLoadedListener != null && !mPublishedModels.isEmpty())
+                mOnBatchLoadedListener.onBatchLoaded(new ArrayList<>(mPublishedModels));
+        }
+
+        /**
+         * Отмена загрузки. Результат отмененной загрузки слушателям не передается.
+         */
+        @MainThread
+        void cancelLoading() {
+            mCancellationToken.cancel();
         }
 
+        @WorkerThread
         @Override
-        protected void onPostExecute(List<InstalledPackageModel> installedPackageModels) {
-            super.onPostExecute(installedPackageModels);
+        public void run() {
+            long startTime = mMetrics.startTimer();
+            PackageColumnStore snapshotStore = getSnapshotStore();
+            // пакеты обрабатываются и передаются порциями в порядке отображения,
+            // размеры после загрузки измеряются в том же порядке
+            List<ApplicationInfo> managerPackages = getInstalledPackages(mIsSystem, mScanMode, mCancellationToken);
+            final int[] displayOrder = getDisplayOrder(managerPackages, mIsSystem, mSortOption, snapshotStore);
+            final List<ApplicationInfo> installedPackages = displayOrder != null
+                    ? orderForDisplay(managerPackages, displayOrder) : managerPackages;
+
+            ParallelPackageLoader.OnProgressListener progressListener = new ParallelPackageLoader.OnProgressListener() {
+                @Override
+                public void onProgress(final int percent) {
+                    mTaskExecutor.executeOnMainThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            onProgressUpdate(percent);
+                        }
+                    });
+                }
+            };
+
+            // порции передаются в главный поток через ту же очередь, что и результат,
+            // поэтому они гарантированно приходят раньше него
+            ParallelPackageLoader.OnBatchListener batchListener = new ParallelPackageLoader.OnBatchListener() {
+                @Override
+                public void onBatch(@NonNull final List<InstalledPackageModel> batch) {
+                    mTaskExecutor.executeOnMainThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            if (mCancellationToken.isCancelled())
+                                return;
+                            mPublishedModels.addAll(batch);
+                            if (mOnBatchLoadedListener != null)
+                                mOnBatchLoadedListener.onBatchLoaded(batch);
+                        }
+                    });
+                }
+            };
+
+            // пакеты обрабатываются параллельно, процент загрузки считается по количеству завершенных пакетов
+            List<InstalledPackageModel> loadedModels = mPackageLoader.load(installedPackages,
+                    createModelFactory(mIsSystem, snapshotStore), progressListener, batchListener, mCancellationToken);
+            // результат и снимок - в порядке PackageManager, отмененная загрузка возвращает пустой список
+            final List<InstalledPackageModel> installedPackageModels = displayOrder != null && !loadedModels.isEmpty()
+                    ? restoreOrder(loadedModels, displayOrder) : loadedModels;
+            // незавершенная загрузка не должна заменить снимок
+            if (!mCancellationToken.isCancelled()) {
+                mMetrics.stopTimer(Metrics.Stage.LOAD, startTime);
+                saveSnapshot(mIsSystem, mScanMode, installedPackageModels);
+            }
+
+            mTaskExecutor.executeOnMainThread(new Runnable() {
+                @Override
+                public void run() {
+                    onFinish(installedPackageModels, installedPackages);
+                }
+            });
+        }
+
+        @MainThread
+        private void onProgressUpdate(int progress) {
+            if (mCancellationToken.isCancelled())
+                return;
+            mLastProgress = progress;
+            if (mOnProgressUpdateListener != null)
+                mOnProgressUpdateListener.onUpdate(progress);
+        }
+
+        @MainThread
+        private void onFinish(@NonNull List<InstalledPackageModel> installedPackageModels,
+                              @NonNull List<ApplicationInfo> installedPackages) {
+            mIsFinished = true;
+            if (mCurrentLoadingTask == this)
+                mCurrentLoadingTask = null;
+            if (mCancellationToken.isCancelled())
+                return;
+
             mOnLoadingFinishListener.onFinish(installedPackageModels);
+            // размеры измеряются после передачи списка, поэтому их обновления приходят к уже отображенным данным
+            measureAppSizes(installedPackages);
         }
     }
 
@@ -286,6 +1234,60 @@ public class PackageInstalledRepository {
         void onUpdate(int progress);
     }
 
+    /**
+     * Интерфейс слушателя готовых порций данных.
+     */
+    public interface OnBatchLoadedListener {
+
+        /**
+         * Метод, вызываемый в главном потоке при готовности очередной порции данных.
+         *
+         * @param packageModels {@link List} of {@link InstalledPackageModel} порция приложений,
+         *                      следующая непосредственно за ранее переданными.
+         */
+        void onBatchLoaded(@NonNull List<InstalledPackageModel> packageModels);
+    }
+
+    /**
+     * Интерфейс слушателя изменений установленных приложений.
+     */
+    public interface OnPackagesChangedListener {
+
+        /**
+         * Метод, вызываемый в главном потоке при изменении установленных приложений.
+         *
+         * @param changes {@link List} of {@link InstalledPackageChangeModel} отличия от последних загруженных данных.
+         */
+        void onPackagesChanged(@NonNull List<InstalledPackageChangeModel> changes);
+    }
+
+    /**
+     * Интерфейс слушателя данных снимка.
+     */
+    public interface OnSnapshotLoadedListener {
+
+        /**
+         * Метод, вызываемый в главном потоке после чтения снимка.
+         *
+         * @param packageModels {@link List} of {@link InstalledPackageModel} данные снимка или {@code null},
+         *                      если подходящего снимка нет.
+         */
+        void onSnapshotLoaded(@Nullable List<InstalledPackageModel> packageModels);
+    }
+
+    /**
+     * Интерфейс слушателя дополнительных данных о приложениях.
+     */
+    public interface OnMetadataLoadedListener {
+
+        /**
+         * Метод, вызываемый в главном потоке после загрузки дополнительных данных.
+         *
+         * @param metadata {@link PackageMetadataModel} данные по имени пакета, удаленных приложений в них нет.
+         */
+        void onMetadataLoaded(@NonNull Map<String, PackageMetadataModel> metadata);
+    }
+
     /**
      * Интерфейс слушателя окончания загрузки данных.
      */
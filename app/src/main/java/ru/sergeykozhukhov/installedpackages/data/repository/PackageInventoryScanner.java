@@ -0,0 +1,238 @@
+package ru.sergeykozhukhov.installedpackages.data.repository;
+
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.os.TransactionTooLargeException;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import ru.sergeykozhukhov.installedpackages.data.metrics.Metrics;
+
+/**
+ * Получение всех установленных пакетов, включая пакеты без activity в средстве запуска приложений:
+ * службы, библиотеки, провайдеры.
+ *
+ * <p> Список запрашивается у PackageManager одним вызовом с минимальным набором флагов: ответ передается
+ * по частям через ParceledListSlice, и небольшие записи укладываются в ограничение транзакции binder.
+ * Если на устройстве с большим количеством пакетов ответ все же превышает ограничение транзакции,
+ * список запрашивается через {@link PackageManager#getInstalledApplications(int)}: записи без обертки
+ * {@link PackageInfo} меньше. Если не проходит и этот запрос, пакеты собираются из уже известных -
+ * приложений средства запуска и пакетов последнего снимка - и из пакетов с теми же идентификаторами
+ * пользователя ({@link PackageManager#getPackagesForUid(int)}), так как общий идентификатор имеют,
+ * например, системные пакеты.
+ *
+ * <p> Повторяющиеся пакеты отбрасываются во время запроса, сохраняется первое вхождение.
+ */
+class PackageInventoryScanner {
+
+    // количество обращений к PackageManager по одному пакету или идентификатору между проверками отмены
+    static final int CANCELLATION_CHECK_INTERVAL = 64;
+
+    private final PackageManager mPackageManager;
+    private final Metrics mMetrics;
+
+    PackageInventoryScanner(@NonNull PackageManager packageManager, @NonNull Metrics metrics) {
+        mPackageManager = packageManager;
+        mMetrics = metrics;
+    }
+
+    /**
+     * Получение всех установленных пакетов.
+     *
+     * @param isSystem          {@code true} если необходимо включать системные пакеты, {@code false} иначе.
+     * @param knownPackages     {@link KnownPackages} пакеты, известные без запроса всех пакетов;
+     *                          запрашиваются, только если ответ со всеми пакетами превышает ограничение транзакции.
+     * @param cancellationToken {@link CancellationToken} признак отмены, может быть {@code null}.
+     * @return список {@link ApplicationInfo} пакетов без повторений или пустой список, если получение отменено.
+     */
+    @WorkerThread
+    @NonNull
+    List<ApplicationInfo> scan(boolean isSystem, @NonNull KnownPackages knownPackages,
+                               @Nullable CancellationToken cancellationToken) {
+        try {
+            return scanInstalledPackages(isSystem);
+        } catch (RuntimeException e) {
+            // остальные ошибки PackageManager меньший ответ не исправит
+            if (!isTransactionTooLarge(e))
+                throw e;
+        }
+        try {
+            return scanInstalledApplications(isSystem);
+        } catch (RuntimeException e) {
+            if (!isTransactionTooLarge(e))
+                throw e;
+        }
+        return scanKnownPackages(isSystem, knownPackages, cancellationToken);
+    }
+
+    /**
+     * Получение информации об одном пакете.
+     *
+     * @param packageName имя пакета.
+     * @return {@link ApplicationInfo} пакета или {@code null}, если пакет удален.
+     */
+    @WorkerThread
+    @Nullable
+    ApplicationInfo getApplicationInfo(@NonNull String packageName) {
+        mMetrics.increment(Metrics.Counter.BINDER_CALLS);
+        try {
+            return mPackageManager.getApplicationInfo(packageName, getQueryFlags());
+        } catch (PackageManager.NameNotFoundException e) {
+            return null;
+        }
+    }
+
+    @NonNull
+    private List<ApplicationInfo> scanInstalledPackages(boolean isSystem) {
+        long startTime = mMetrics.startTimer();
+        List<PackageInfo> packageInfoList = mPackageManager.getInstalledPackages(getQueryFlags());
+        mMetrics.stopTimer(Metrics.Stage.QUERY_PACKAGES, startTime);
+        mMetrics.increment(Metrics.Counter.BINDER_CALLS);
+
+        List<ApplicationInfo> applicationInfoList = new ArrayList<>(packageInfoList.size());
+        PackageNameSet packageNames = new PackageNameSet(packageInfoList.size());
+        for (PackageInfo packageInfo : packageInfoList) {
+            ApplicationInfo applicationInfo = packageInfo.applicationInfo;
+            if (applicationInfo == null || !packageNames.add(packageInfo.packageName))
+                continue;
+            if (isSystem || !PackageInstalledRepository.isSystemPackage(applicationInfo))
+                applicationInfoList.add(applicationInfo);
+        }
+        return applicationInfoList;
+    }
+
+    @NonNull
+    private List<ApplicationInfo> scanInstalledApplications(boolean isSystem) {
+        long startTime = mMetrics.startTimer();
+        List<ApplicationInfo> installedApplications = mPackageManager.getInstalledApplications(getQueryFlags());
+        mMetrics.stopTimer(Metrics.Stage.QUERY_PACKAGES, startTime);
+        mMetrics.increment(Metrics.Counter.BINDER_CALLS);
+
+        List<ApplicationInfo> applicationInfoList = new ArrayList<>(installedApplications.size());
+        PackageNameSet packageNames = new PackageNameSet(installedApplications.size());
+        for (ApplicationInfo applicationInfo : installedApplications) {
+            if (!packageNames.add(applicationInfo.packageName))
+                continue;
+            if (isSystem || !PackageInstalledRepository.isSystemPackage(applicationInfo))
+                applicationInfoList.add(applicationInfo);
+        }
+        return applicationInfoList;
+    }
+
+    /**
+     * Получение пакетов из уже известных и из пакетов с их идентификаторами пользователя.
+     * Каждый ответ PackageManager содержит один пакет или имена пакетов одного идентификатора,
+     * поэтому укладывается в ограничение транзакции.
+     */
+    @NonNull
+    private List<ApplicationInfo> scanKnownPackages(boolean isSystem, @NonNull KnownPackages knownPackages,
+                                                    @Nullable CancellationToken cancellationToken) {
+        long startTime = mMetrics.startTimer();
+        List<ApplicationInfo> launcherPackages = knownPackages.getLauncherPackages();
+        Collection<String> snapshotPackageNames = knownPackages.getSnapshotPackageNames();
+        List<ApplicationInfo> applicationInfoList = new ArrayList<>();
+        PackageNameSet packageNames = new PackageNameSet(launcherPackages.size() + snapshotPackageNames.size());
+        Set<Integer> uids = new LinkedHashSet<>();
+
+        // приложения средства запуска получены вместе с ApplicationInfo
+        for (ApplicationInfo applicationInfo : launcherPackages) {
+            if (packageNames.add(applicationInfo.packageName))
+                addPackage(applicationInfo, isSystem, applicationInfoList, uids);
+        }
+
+        int calls = 0;
+        for (String packageName : snapshotPackageNames) {
+            if (!packageNames.add(packageName))
+                continue;
+            if (calls++ % CANCELLATION_CHECK_INTERVAL == 0 && isCancelled(cancellationToken))
+                return new ArrayList<>();
+            ApplicationInfo applicationInfo = getApplicationInfo(packageName);
+            if (applicationInfo != null)
+                addPackage(applicationInfo, isSystem, applicationInfoList, uids);
+        }
+
+        for (int uid : new ArrayList<>(uids)) {
+            if (calls++ % CANCELLATION_CHECK_INTERVAL == 0 && isCancelled(cancellationToken))
+                return new ArrayList<>();
+            String[] uidPackageNames = mPackageManager.getPackagesForUid(uid);
+            mMetrics.increment(Metrics.Counter.BINDER_CALLS);
+            if (uidPackageNames == null)
+                continue;
+            for (String packageName : uidPackageNames) {
+                if (!packageNames.add(packageName))
+                    continue;
+                ApplicationInfo applicationInfo = getApplicationInfo(packageName);
+                if (applicationInfo != null)
+                    addPackage(applicationInfo, isSystem, applicationInfoList, uids);
+            }
+        }
+        mMetrics.stopTimer(Metrics.Stage.QUERY_PACKAGES, startTime);
+        return applicationInfoList;
+    }
+
+    /**
+     * Добавление пакета, проходящего условие по системным пакетам, и запоминание его идентификатора пользователя.
+     */
+    private static void addPackage(@NonNull ApplicationInfo applicationInfo, boolean isSystem,
+                                   @NonNull List<ApplicationInfo> applicationInfoList, @NonNull Set<Integer> uids) {
+        if (!isSystem && PackageInstalledRepository.isSystemPackage(applicationInfo))
+            return;
+        applicationInfoList.add(applicationInfo);
+        uids.add(applicationInfo.uid);
+    }
+
+    private static boolean isCancelled(@Nullable CancellationToken cancellationToken) {
+        return cancellationToken != null && cancellationToken.isCancelled();
+    }
+
+    /**
+     * Проверка, что запрос не прошел из-за превышения размера транзакции binder.
+     * {@link TransactionTooLargeException} приходит обернутым в RuntimeException.
+     */
+    private static boolean isTransactionTooLarge(@NonNull Throwable throwable) {
+        for (Throwable cause = throwable; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TransactionTooLargeException)
+                return true;
+        }
+        return false;
+    }
+
+    /**
+     * Флаги запроса: включаются пакеты, отключенные до первого использования,
+     * которые PackageManager по умолчанию не возвращает.
+     */
+    @SuppressWarnings("deprecation")
+    static int getQueryFlags() {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.N)
+            return PackageManager.MATCH_DISABLED_UNTIL_USED_COMPONENTS;
+        return PackageManager.GET_DISABLED_UNTIL_USED_COMPONENTS;
+    }
+
+    /**
+     * Интерфейс источника пакетов, известных без запроса всех пакетов.
+     */
+    interface KnownPackages {
+
+        /**
+         * @return приложения средства запуска приложений.
+         */
+        @NonNull
+        List<ApplicationInfo> getLauncherPackages();
+
+        /**
+         * @return имена пакетов последнего снимка.
+         */
+        @NonNull
+        Collection<String> getSnapshotPackageNames();
+    }
+}
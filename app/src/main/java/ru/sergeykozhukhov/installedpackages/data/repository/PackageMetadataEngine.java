@@ -0,0 +1,219 @@
+package ru.sergeykozhukhov.installedpackages.data.repository;
+
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.Build;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ru.sergeykozhukhov.installedpackages.data.metrics.Metrics;
+import ru.sergeykozhukhov.installedpackages.data.model.MetadataColumn;
+import ru.sergeykozhukhov.installedpackages.data.model.PackageMetadataModel;
+
+/**
+ * Загрузка дополнительных данных о приложениях по столбцам.
+ *
+ * <p> Данные не загружаются вместе со списком приложений, а запрашиваются только для нужных пакетов и столбцов.
+ * Недостающие данные всех пакетов запроса получаются одним запросом {@link PackageInfo}; флаг
+ * {@link PackageManager#GET_PERMISSIONS}, увеличивающий ответ, добавляется только для столбца
+ * {@link MetadataColumn#PERMISSIONS}. Остальные столбцы приходят в любом {@link PackageInfo} и загружаются вместе,
+ * кроме {@link MetadataColumn#INSTALLER}: установщик запрашивается отдельным вызовом для каждого пакета,
+ * поэтому только для столбца установщика и только для запрошенных пакетов.
+ *
+ * <p> Загруженные данные кэшируются по версии пакета (времени последнего обновления): после обновления пакета
+ * его данные запрашиваются заново, а столбцы, загруженные разными запросами, объединяются.
+ * Версия определяется по полученному {@link PackageInfo}, а не по запросу, поэтому данные пакета,
+ * обновленного во время запроса, не попадают в кэш под прежней версией. Запрос всех пакетов дорог,
+ * поэтому в кэш попадают данные всех полученных пакетов, а не только запрошенных:
+ * следующие запросы, например при прокрутке списка, отвечаются из кэша.
+ */
+class PackageMetadataEngine {
+
+    private static final String TAG = "PackageMetadataEngine";
+
+    // количество пакетов, начиная с которого выгоднее один запрос всех пакетов, чем запросы по одному
+    static final int BATCH_QUERY_THRESHOLD = 8;
+
+    // столбцы, которые приходят в любом PackageInfo без дополнительных флагов
+    private static final Set<MetadataColumn> BASIC_COLUMNS =
+            EnumSet.of(MetadataColumn.VERSION, MetadataColumn.INSTALL_TIME, MetadataColumn.TARGET_SDK);
+
+    private final PackageManager mPackageManager;
+    private final Metrics mMetrics;
+    // mMetadataCache - загруженные данные по имени пакета, вместе с версией пакета
+    private final Map<String, PackageMetadataModel> mMetadataCache = new ConcurrentHashMap<>();
+
+    PackageMetadataEngine(@NonNull PackageManager packageManager, @NonNull Metrics metrics) {
+        mPackageManager = packageManager;
+        mMetrics = metrics;
+    }
+
+    /**
+     * Получение данных пакета из кэша.
+     *
+     * @param packageName    имя пакета.
+     * @param lastUpdateTime версия пакета (время последнего обновления).
+     * @param columns        необходимые столбцы.
+     * @return данные или {@code null}, если для этой версии загружены не все столбцы.
+     */
+    @Nullable
+    PackageMetadataModel getCached(@NonNull String packageName, long lastUpdateTime, @NonNull Set<MetadataColumn> columns) {
+        PackageMetadataModel metadata = mMetadataCache.get(packageName);
+        if (metadata == null || lastUpdateTime == 0 || metadata.getLastUpdateTime() != lastUpdateTime
+                || !metadata.hasColumns(columns))
+            return null;
+        return metadata;
+    }
+
+    /**
+     * Загрузка данных пакетов. Из PackageManager запрашиваются только пакеты, которых нет в кэше.
+     *
+     * @param packageVersions версии пакетов (время последнего обновления) по имени пакета.
+     * @param columns         необходимые столбцы.
+     * @return данные по имени пакета; удаленных пакетов в результате нет.
+     */
+    @WorkerThread
+    @NonNull
+    Map<String, PackageMetadataModel> load(@NonNull Map<String, Long> packageVersions, @NonNull Set<MetadataColumn> columns) {
+        Map<String, PackageMetadataModel> result = new HashMap<>(packageVersions.size());
+        List<String> notCached = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : packageVersions.entrySet()) {
+            PackageMetadataModel metadata = getCached(entry.getKey(), entry.getValue(), columns);
+            if (metadata != null)
+                result.put(entry.getKey(), metadata);
+            else
+                notCached.add(entry.getKey());
+        }
+        if (notCached.isEmpty())
+            return result;
+
+        long startTime = mMetrics.startTimer();
+        Set<MetadataColumn> loadedColumns = EnumSet.copyOf(BASIC_COLUMNS);
+        int flags = PackageInventoryScanner.getQueryFlags();
+        if (columns.contains(MetadataColumn.PERMISSIONS)) {
+            loadedColumns.add(MetadataColumn.PERMISSIONS);
+            flags |= PackageManager.GET_PERMISSIONS;
+        }
+        boolean isInstallerRequested = columns.contains(MetadataColumn.INSTALLER);
+        Set<MetadataColumn> installerColumns = EnumSet.copyOf(loadedColumns);
+        installerColumns.add(MetadataColumn.INSTALLER);
+
+        for (PackageInfo packageInfo : queryPackageInfo(notCached, flags)) {
+            // версия определяется так же, как для модели приложения, но по полученным данным
+            long lastUpdateTime = packageInfo.applicationInfo != null
+                    ? PackageInstalledRepository.getLastUpdateTime(packageInfo.applicationInfo) : 0;
+            Long requestedLastUpdateTime = packageVersions.get(packageInfo.packageName);
+            Set<MetadataColumn> packageColumns = loadedColumns;
+            String installerPackageName = null;
+            if (isInstallerRequested && requestedLastUpdateTime != null) {
+                // установщик запрашивается отдельно для каждого пакета, поэтому только для запрошенных пакетов
+                packageColumns = installerColumns;
+                installerPackageName = getInstallerPackageName(packageInfo.packageName);
+            }
+            if (lastUpdateTime == 0) {
+                // версия неизвестна: данные не кэшируются и относятся к запрошенной версии
+                if (requestedLastUpdateTime != null)
+                    result.put(packageInfo.packageName, createMetadata(packageInfo, requestedLastUpdateTime,
+                            packageColumns, installerPackageName));
+                continue;
+            }
+            PackageMetadataModel metadata = putCached(createMetadata(packageInfo, lastUpdateTime,
+                    packageColumns, installerPackageName));
+            if (requestedLastUpdateTime != null)
+                result.put(metadata.getAppPackageName(), metadata);
+        }
+        mMetrics.stopTimer(Metrics.Stage.LOAD_METADATA, startTime);
+        return result;
+    }
+
+    /**
+     * Удаление данных пакета из кэша.
+     */
+    void remove(@NonNull String packageName) {
+        mMetadataCache.remove(packageName);
+    }
+
+    /**
+     * Запрос {@link PackageInfo} пакетов: одним запросом всех пакетов или, для нескольких пакетов
+     * и если ответ не укладывается в транзакцию binder, по одному.
+     *
+     * @return при запросе всех пакетов - данные всех установленных пакетов, иначе - только запрошенных.
+     */
+    @NonNull
+    private List<PackageInfo> queryPackageInfo(@NonNull List<String> packageNames, int flags) {
+        if (packageNames.size() >= BATCH_QUERY_THRESHOLD) {
+            try {
+                mMetrics.increment(Metrics.Counter.BINDER_CALLS);
+                return mPackageManager.getInstalledPackages(flags);
+            } catch (RuntimeException e) {
+                // TransactionTooLargeException приходит обернутым в RuntimeException
+                Log.w(TAG, "Unable to query package info at once, querying one by one", e);
+            }
+        }
+
+        List<PackageInfo> packageInfoList = new ArrayList<>(packageNames.size());
+        for (String packageName : packageNames) {
+            mMetrics.increment(Metrics.Counter.BINDER_CALLS);
+            try {
+                packageInfoList.add(mPackageManager.getPackageInfo(packageName, flags));
+            } catch (PackageManager.NameNotFoundException e) {
+                // пакет удален, данных о нем нет
+            }
+        }
+        return packageInfoList;
+    }
+
+    /**
+     * Получение имени пакета установщика приложения.
+     *
+     * @param packageName имя пакета приложения
+     * @return имя пакета установщика или {@code null}, если установщик неизвестен или пакет удален
+     */
+    @Nullable
+    private String getInstallerPackageName(@NonNull String packageName) {
+        mMetrics.increment(Metrics.Counter.BINDER_CALLS);
+        try {
+            return mPackageManager.getInstallerPackageName(packageName);
+        } catch (IllegalArgumentException e) {
+            return null; // пакет удален
+        }
+    }
+
+    /**
+     * Добавление загруженных данных в кэш с объединением столбцов той же версии пакета.
+     */
+    @NonNull
+    private PackageMetadataModel putCached(@NonNull PackageMetadataModel metadata) {
+        PackageMetadataModel cached = mMetadataCache.get(metadata.getAppPackageName());
+        PackageMetadataModel merged = cached != null ? cached.merge(metadata) : metadata;
+        mMetadataCache.put(merged.getAppPackageName(), merged);
+        return merged;
+    }
+
+    @NonNull
+    @SuppressWarnings("deprecation")
+    private static PackageMetadataModel createMetadata(@NonNull PackageInfo packageInfo, long lastUpdateTime,
+                                                       @NonNull Set<MetadataColumn> columns,
+                                                       @Nullable String installerPackageName) {
+        long versionCode = Build.VERSION.SDK_INT >= Build.VERSION_CODES.P
+                ? packageInfo.getLongVersionCode() : packageInfo.versionCode;
+        int targetSdkVersion = packageInfo.applicationInfo != null
+                ? packageInfo.applicationInfo.targetSdkVersion : PackageMetadataModel.UNKNOWN;
+        int requestedPermissionCount = packageInfo.requestedPermissions != null
+                ? packageInfo.requestedPermissions.length : 0;
+        return new PackageMetadataModel(packageInfo.packageName, lastUpdateTime, columns,
+                packageInfo.versionName, versionCode, packageInfo.firstInstallTime,
+                targetSdkVersion, requestedPermissionCount, installerPackageName);
+    }
+}
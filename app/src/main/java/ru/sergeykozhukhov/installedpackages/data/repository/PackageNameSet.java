@@ -0,0 +1,41 @@
+package ru.sergeykozhukhov.installedpackages.data.repository;
+
+import androidx.annotation.NonNull;
+
+import ru.sergeykozhukhov.installedpackages.data.store.StringPool;
+
+/**
+ * Множество имен пакетов для отбрасывания повторений при получении списка приложений.
+ *
+ * <p> Имена хранятся в {@link StringPool}: в отличие от {@link java.util.HashSet}, на каждое имя
+ * не создается отдельный объект записи. Удаление не поддерживается - при обходе списка оно не нужно.
+ *
+ * <p> Порядок первого появления сохраняет список, в который добавляются пакеты, прошедшие {@link #add(String)}.
+ */
+final class PackageNameSet {
+
+    private final StringPool mNames;
+    private int mSize;
+
+    /**
+     * @param expectedSize ожидаемое количество имен, при котором таблица не расширяется.
+     */
+    PackageNameSet(int expectedSize) {
+        mNames = new StringPool(expectedSize);
+    }
+
+    /**
+     * Добавление имени пакета.
+     *
+     * @param packageName имя пакета.
+     * @return {@code true}, если имя встретилось впервые.
+     */
+    boolean add(@NonNull String packageName) {
+        // уже добавленное имя получает прежний номер, меньший количества имен
+        if (mNames.intern(packageName) < mSize)
+            return false;
+
+        mSize++;
+        return true;
+    }
+}
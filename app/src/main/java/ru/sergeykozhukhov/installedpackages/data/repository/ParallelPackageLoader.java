@@ -0,0 +1,287 @@
+package ru.sergeykozhukhov.installedpackages.data.repository;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackageModel;
+
+/**
+ * Загрузчик моделей приложений, распределяющий обработку пакетов по ограниченному пулу потоков.
+ *
+ * <p> Результаты собираются в исходном порядке элементов, независимо от того, в каком порядке завершилась их обработка.
+ *
+ * @param <T> тип исходного элемента, по которому строится модель приложения.
+ */
+public class ParallelPackageLoader<T> {
+
+    // время простоя, после которого потоки пула завершаются
+    private static final long KEEP_ALIVE_SECONDS = 30;
+    // минимальный размер порции моделей, передаваемой слушателю после первой порции
+    private static final int BATCH_SIZE = 16;
+
+    // mExecutor - пул потоков, размер которого соответствует количеству ядер процессора
+    private final ThreadPoolExecutor mExecutor;
+    private final int mThreadCount;
+
+    /**
+     * Конструктор загрузчика с пулом, размер которого равен количеству доступных ядер процессора.
+     */
+    public ParallelPackageLoader() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Конструктор загрузчика.
+     *
+     * @param threadCount максимальное количество потоков, обрабатывающих пакеты одновременно.
+     */
+    public ParallelPackageLoader(int threadCount) {
+        mThreadCount = Math.max(1, threadCount);
+        mExecutor = new ThreadPoolExecutor(mThreadCount, mThreadCount,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<Runnable>(), new LoaderThreadFactory());
+        mExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Построение моделей приложений для всех элементов списка.
+     * Метод блокирует вызывающий поток до окончания обработки всех элементов.
+     *
+     * @param items            исходные элементы (в порядке, в котором должны быть возвращены модели).
+     * @param modelFactory     {@link ModelFactory} фабрика, строящая модель по одному элементу.
+     * @param progressListener {@link OnProgressListener} слушатель хода загрузки, может быть {@code null}.
+     * @return список моделей в порядке исходных элементов.
+     */
+    @NonNull
+    public List<InstalledPackageModel> load(@NonNull List<T> items,
+                                            @NonNull ModelFactory<T> modelFactory,
+                                            @Nullable OnProgressListener progressListener) {
+        return load(items, modelFactory, progressListener, null);
+    }
+
+    /**
+     * Построение моделей приложений для всех элементов списка с передачей готовых моделей порциями.
+     * Метод блокирует вызывающий поток до окончания обработки всех элементов.
+     *
+     * <p> Порции передаются в исходном порядке элементов: очередная порция содержит модели,
+     * следующие непосредственно за уже переданными.
+     *
+     * @param items            исходные элементы (в порядке, в котором должны быть возвращены модели).
+     * @param modelFactory     {@link ModelFactory} фабрика, строящая модель по одному элементу.
+     * @param progressListener {@link OnProgressListener} слушатель хода загрузки, может быть {@code null}.
+     * @param batchListener    {@link OnBatchListener} слушатель готовых порций моделей, может быть {@code null}.
+     * @return список моделей в порядке исходных элементов.
+     */
+    @NonNull
+    public List<InstalledPackageModel> load(@NonNull List<T> items,
+                                            @NonNull ModelFactory<T> modelFactory,
+                                            @Nullable OnProgressListener progressListener,
+                                            @Nullable OnBatchListener batchListener) {
+        return load(items, modelFactory, progressListener, batchListener, null);
+    }
+
+    /**
+     * Построение моделей приложений с возможностью отмены.
+     * Отмена проверяется между элементами: уже начатые элементы достраиваются, новые не начинаются.
+     *
+     * @param items             исходные элементы (в порядке, в котором должны быть возвращены модели).
+     * @param modelFactory      {@link ModelFactory} фабрика, строящая модель по одному элементу.
+     * @param progressListener  {@link OnProgressListener} слушатель хода загрузки, может быть {@code null}.
+     * @param batchListener     {@link OnBatchListener} слушатель готовых порций моделей, может быть {@code null}.
+     * @param cancellationToken {@link CancellationToken} признак отмены, может быть {@code null}.
+     * @return список моделей в порядке исходных элементов или пустой список, если загрузка отменена.
+     */
+    @NonNull
+    public List<InstalledPackageModel> load(@NonNull final List<T> items,
+                                            @NonNull final ModelFactory<T> modelFactory,
+                                            @Nullable final OnProgressListener progressListener,
+                                            @Nullable final OnBatchListener batchListener,
+                                            @Nullable final CancellationToken cancellationToken) {
+        final int size = items.size();
+        if (size == 0)
+            return new ArrayList<>();
+
+        final InstalledPackageModel[] results = new InstalledPackageModel[size];
+        final AtomicInteger nextIndex = new AtomicInteger(); // индекс следующего необработанного элемента
+        final ProgressCounter progressCounter = new ProgressCounter(results, progressListener, batchListener);
+        final RuntimeException[] failure = new RuntimeException[1];
+
+        int workerCount = Math.min(mThreadCount, size);
+        final CountDownLatch latch = new CountDownLatch(workerCount);
+
+        // каждый поток забирает следующий элемент, пока они не закончатся,
+        // поэтому медленный пакет не задерживает обработку остальных
+        Runnable worker = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    int index;
+                    while (!isCancelled(cancellationToken) && (index = nextIndex.getAndIncrement()) < size) {
+                        results[index] = modelFactory.create(items.get(index));
+                        progressCounter.onItemLoaded(index);
+                    }
+                } catch (RuntimeException e) {
+                    synchronized (failure) {
+                        failure[0] = e;
+                    }
+                    nextIndex.set(size); // остальные потоки прекращают обработку
+                } finally {
+                    latch.countDown();
+                }
+            }
+        };
+
+        for (int i = 0; i < workerCount; i++) {
+            mExecutor.execute(worker);
+        }
+
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            nextIndex.set(size);
+            Thread.currentThread().interrupt();
+            return new ArrayList<>();
+        }
+
+        synchronized (failure) {
+            if (failure[0] != null)
+                throw failure[0];
+        }
+
+        if (isCancelled(cancellationToken))
+            return new ArrayList<>();
+
+        return new ArrayList<>(Arrays.asList(results));
+    }
+
+    private static boolean isCancelled(@Nullable CancellationToken cancellationToken) {
+        return cancellationToken != null && cancellationToken.isCancelled();
+    }
+
+    /**
+     * Счетчик обработанных элементов, сообщающий слушателю только о возрастающих значениях процента загрузки
+     * и передающий готовые модели порциями в исходном порядке.
+     */
+    private static class ProgressCounter {
+
+        private final InstalledPackageModel[] mResults;
+        private final boolean[] mLoadedFlags;
+        private final OnProgressListener mProgressListener;
+        private final OnBatchListener mBatchListener;
+
+        private int mLoaded;
+        private int mLastPercent = -1;
+        // mPublishedCount - количество моделей, уже переданных слушателю порций
+        private int mPublishedCount;
+        // mReadyCount - длина непрерывной последовательности готовых моделей с начала списка
+        private int mReadyCount;
+
+        ProgressCounter(@NonNull InstalledPackageModel[] results,
+                        @Nullable OnProgressListener progressListener,
+                        @Nullable OnBatchListener batchListener) {
+            mResults = results;
+            mLoadedFlags = new boolean[results.length];
+            mProgressListener = progressListener;
+            mBatchListener = batchListener;
+        }
+
+        // синхронизация гарантирует, что слушатели получают проценты в возрастающем порядке и порции без пропусков,
+        // даже если элементы завершаются в разных потоках
+        synchronized void onItemLoaded(int index) {
+            int total = mResults.length;
+            mLoaded++;
+            int percent = mLoaded * 100 / total;
+            if (percent > mLastPercent) {
+                mLastPercent = percent;
+                if (mProgressListener != null)
+                    mProgressListener.onProgress(percent);
+            }
+
+            if (mBatchListener == null)
+                return;
+
+            mLoadedFlags[index] = true;
+            while (mReadyCount < total && mLoadedFlags[mReadyCount]) {
+                mReadyCount++;
+            }
+
+            // первая порция передается сразу, чтобы первые строки появились как можно раньше
+            int pending = mReadyCount - mPublishedCount;
+            if (pending > 0 && (mPublishedCount == 0 || pending >= BATCH_SIZE || mReadyCount == total)) {
+                List<InstalledPackageModel> batch = new ArrayList<>(
+                        Arrays.asList(mResults).subList(mPublishedCount, mReadyCount));
+                mPublishedCount = mReadyCount;
+                mBatchListener.onBatch(batch);
+            }
+        }
+    }
+
+    /**
+     * Фабрика потоков загрузчика, выдающая им понятные имена.
+     */
+    private static class LoaderThreadFactory implements ThreadFactory {
+
+        private final AtomicInteger mThreadNumber = new AtomicInteger(1);
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            Thread thread = new Thread(runnable, "PackageLoader #" + mThreadNumber.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * Интерфейс фабрики, строящей модель приложения по исходному элементу.
+     *
+     * @param <T> тип исходного элемента.
+     */
+    public interface ModelFactory<T> {
+
+        /**
+         * Построение модели. Вызывается одновременно из нескольких потоков.
+         *
+         * @param item исходный элемент.
+         * @return модель приложения.
+         */
+        @NonNull
+        InstalledPackageModel create(@NonNull T item);
+    }
+
+    /**
+     * Интерфейс слушателя хода загрузки.
+     */
+    public interface OnProgressListener {
+
+        /**
+         * Метод, вызываемый при увеличении процента обработанных элементов.
+         *
+         * @param percent процент обработанных элементов, в пределах [0, 100]
+         */
+        void onProgress(int percent);
+    }
+
+    /**
+     * Интерфейс слушателя готовых порций моделей.
+     */
+    public interface OnBatchListener {
+
+        /**
+         * Метод, вызываемый при готовности очередной порции моделей.
+         * Вызывается из потока загрузчика.
+         *
+         * @param batch порция моделей, следующая непосредственно за ранее переданными.
+         */
+        void onBatch(@NonNull List<InstalledPackageModel> batch);
+    }
+}
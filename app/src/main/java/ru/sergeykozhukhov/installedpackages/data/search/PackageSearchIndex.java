@@ -0,0 +1,179 @@
+package ru.sergeykozhukhov.installedpackages.data.search;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackageModel;
+
+/**
+ * Индекс поиска подстроки в названии приложения и имени пакета.
+ *
+ * <p> Индекс строится один раз по списку моделей: для каждой подстроки длиной от 1 до {@link #MAX_GRAM_LENGTH}
+ * хранится возрастающий список номеров моделей, в которых она встречается (n-граммы).
+ * Короткий запрос отвечается одним списком, длинный - пересечением списков его триграмм
+ * с проверкой только оставшихся кандидатов. Полный перебор списка при поиске не выполняется.
+ *
+ * <p> Результат возвращается в порядке исходного списка, поэтому сортировка сохраняется.
+ */
+public class PackageSearchIndex {
+
+    // максимальная длина индексируемой подстроки
+    private static final int MAX_GRAM_LENGTH = 3;
+    // разделитель названия и имени пакета, не встречающийся в запросе
+    private static final char FIELD_SEPARATOR = '\n';
+
+    private final InstalledPackageModel[] mModels;
+    // mTexts - нормализованные название и имя пакета каждой модели, для проверки кандидатов
+    private final String[] mTexts;
+    // mPostings - номера моделей, содержащих подстроку, по возрастанию
+    private final Map<String, int[]> mPostings;
+
+    /**
+     * Построение индекса.
+     *
+     * @param models список моделей в порядке, в котором должны возвращаться результаты поиска.
+     */
+    public PackageSearchIndex(@NonNull List<InstalledPackageModel> models) {
+        mModels = models.toArray(new InstalledPackageModel[0]);
+        mTexts = new String[mModels.length];
+
+        Map<String, PostingBuilder> builders = new HashMap<>();
+        for (int i = 0; i < mModels.length; i++) {
+            String text = normalize(mModels[i].getAppName()) + FIELD_SEPARATOR + normalize(mModels[i].getAppPackageName());
+            mTexts[i] = text;
+
+            for (int start = 0; start < text.length(); start++) {
+                int maxEnd = Math.min(text.length(), start + MAX_GRAM_LENGTH);
+                for (int end = start + 1; end <= maxEnd; end++) {
+                    if (text.charAt(end - 1) == FIELD_SEPARATOR)
+                        break;
+                    String gram = text.substring(start, end);
+                    PostingBuilder builder = builders.get(gram);
+                    if (builder == null) {
+                        builder = new PostingBuilder();
+                        builders.put(gram, builder);
+                    }
+                    builder.add(i);
+                }
+            }
+        }
+
+        mPostings = new HashMap<>(builders.size() * 4 / 3 + 1);
+        for (Map.Entry<String, PostingBuilder> entry : builders.entrySet()) {
+            mPostings.put(entry.getKey(), entry.getValue().build());
+        }
+    }
+
+    /**
+     * Поиск моделей, название или имя пакета которых содержит запрос (без учета регистра).
+     *
+     * @param query строка запроса.
+     * @return найденные модели в порядке исходного списка; для пустого запроса - все модели.
+     */
+    @NonNull
+    public List<InstalledPackageModel> search(@NonNull String query) {
+        String normalizedQuery = normalize(query.trim());
+        if (normalizedQuery.isEmpty())
+            return new ArrayList<>(Arrays.asList(mModels));
+
+        // запрос не длиннее n-граммы отвечается списком без проверки
+        if (normalizedQuery.length() <= MAX_GRAM_LENGTH)
+            return toModels(mPostings.get(normalizedQuery), null);
+
+        int gramCount = normalizedQuery.length() - MAX_GRAM_LENGTH + 1;
+        int[][] postings = new int[gramCount][];
+        for (int i = 0; i < gramCount; i++) {
+            postings[i] = mPostings.get(normalizedQuery.substring(i, i + MAX_GRAM_LENGTH));
+            if (postings[i] == null)
+                return new ArrayList<>();
+        }
+
+        // пересечение начинается с самого короткого списка, чтобы промежуточные результаты были минимальными
+        Arrays.sort(postings, new Comparator<int[]>() {
+            @Override
+            public int compare(int[] o1, int[] o2) {
+                return o1.length - o2.length;
+            }
+        });
+        int[] candidates = postings[0];
+        for (int i = 1; i < postings.length && candidates.length > 0; i++) {
+            candidates = intersect(candidates, postings[i]);
+        }
+
+        // наличие всех триграмм не гарантирует наличия подстроки целиком
+        return toModels(candidates, normalizedQuery);
+    }
+
+    /**
+     * Количество проиндексированных моделей.
+     */
+    public int size() {
+        return mModels.length;
+    }
+
+    @NonNull
+    private List<InstalledPackageModel> toModels(int[] indexes, String verifiedQuery) {
+        List<InstalledPackageModel> result = new ArrayList<>();
+        if (indexes == null)
+            return result;
+        for (int index : indexes) {
+            if (verifiedQuery == null || mTexts[index].contains(verifiedQuery))
+                result.add(mModels[index]);
+        }
+        return result;
+    }
+
+    @NonNull
+    private static int[] intersect(@NonNull int[] first, @NonNull int[] second) {
+        int[] result = new int[Math.min(first.length, second.length)];
+        int size = 0;
+        int i = 0;
+        int j = 0;
+        while (i < first.length && j < second.length) {
+            if (first[i] < second[j]) {
+                i++;
+            } else if (first[i] > second[j]) {
+                j++;
+            } else {
+                result[size++] = first[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(result, size);
+    }
+
+    @NonNull
+    private static String normalize(@NonNull String text) {
+        return text.toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Растущий список номеров моделей без повторов подряд идущих номеров.
+     */
+    private static class PostingBuilder {
+
+        private int[] mValues = new int[4];
+        private int mSize;
+
+        void add(int value) {
+            // модели добавляются по порядку, поэтому повтор может быть только последним элементом
+            if (mSize > 0 && mValues[mSize - 1] == value)
+                return;
+            if (mSize == mValues.length)
+                mValues = Arrays.copyOf(mValues, mSize * 2);
+            mValues[mSize++] = value;
+        }
+
+        int[] build() {
+            return Arrays.copyOf(mValues, mSize);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package ru.sergeykozhukhov.installedpackages.data.sort;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.VisibleForTesting;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackageModel;
+import ru.sergeykozhukhov.installedpackages.data.model.SortOption;
+
+/**
+ * Загруженные данные вместе с отсортированными представлениями для каждого варианта сортировки.
+ *
+ * <p> Модели хранятся в порядке загрузки, он же порядок без сортировки. Для каждого варианта сортировки
+ * хранится массив номеров моделей в отсортированном порядке. Массив строится {@link SortEngine} при первом обращении
+ * к варианту и затем поддерживается при изменениях вставкой с бинарным поиском,
+ * поэтому переключение сортировки не требует повторной сортировки и загрузки.
+ *
+ * <p> Равные по ключу модели упорядочены по порядку загрузки, как при устойчивой сортировке.
+ *
+ * <p> Модель приложения находится по имени пакета без перебора. Места удаленных моделей освобождаются
+ * сжатием, когда их становится больше, чем моделей, поэтому индекс не растет при установке и удалении приложений.
+ */
+public class PackageSortIndex {
+
+    // сжатие выполняется, когда удаленных моделей больше, чем оставшихся, но не для маленьких индексов
+    private static final int MIN_COMPACT_SLOTS = 16;
+
+    // mModels - модели по номеру в порядке загрузки, удаленные модели заменяются на null до сжатия
+    // mSlotsByPackageName - номер модели по имени пакета
+    private List<InstalledPackageModel> mModels;
+    private final Map<String, Integer> mSlotsByPackageName;
+    private int mSize;
+    // mIndexes - отсортированные массивы номеров моделей по варианту сортировки
+    private final Map<SortOption, SortedSlots> mIndexes = new EnumMap<>(SortOption.class);
+
+    /**
+     * @param models модели в порядке загрузки; из моделей одного пакета сохраняется первая.
+     */
+    public PackageSortIndex(@NonNull List<InstalledPackageModel> models) {
+        mModels = new ArrayList<>(models.size());
+        mSlotsByPackageName = new HashMap<>(models.size() * 2);
+        for (InstalledPackageModel model : models) {
+            if (mSlotsByPackageName.containsKey(model.getAppPackageName()))
+                continue;
+            mSlotsByPackageName.put(model.getAppPackageName(), mModels.size());
+            mModels.add(model);
+        }
+        mSize = mModels.size();
+    }
+
+    /**
+     * Количество моделей.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * Получение моделей в порядке варианта сортировки. Сортировка выполняется только при первом обращении к варианту.
+     *
+     * @param sortOption вариант сортировки, {@code null} - порядок загрузки.
+     * @return новый список моделей.
+     */
+    @NonNull
+    public List<InstalledPackageModel> get(@Nullable SortOption sortOption) {
+        List<InstalledPackageModel> result = new ArrayList<>(mSize);
+        SortedSlots sortedSlots = getSortedSlots(sortOption);
+        if (sortedSlots == null) {
+            for (InstalledPackageModel model : mModels) {
+                if (model != null)
+                    result.add(model);
+            }
+            return result;
+        }
+
+        for (int i = 0; i < sortedSlots.mSize; i++) {
+            result.add(mModels.get(sortedSlots.mSlots[i]));
+        }
+        return result;
+    }
+
+    /**
+     * Добавление или замена модели приложения. Замененная модель сохраняет свое место в порядке загрузки,
+     * новая добавляется в его конец. Отсортированные представления обновляются вставкой с бинарным поиском.
+     *
+     * @param model модель приложения.
+     */
+    public void put(@NonNull InstalledPackageModel model) {
+        Integer slot = mSlotsByPackageName.get(model.getAppPackageName());
+        if (slot == null) {
+            slot = mModels.size();
+            mModels.add(model);
+            mSlotsByPackageName.put(model.getAppPackageName(), slot);
+        } else {
+            // позиция модели в представлениях зависит от модели, поэтому она удаляется до замены
+            for (SortedSlots sortedSlots : mIndexes.values()) {
+                sortedSlots.remove(slot);
+            }
+            mModels.set(slot, model);
+            mSize--;
+        }
+        mSize++;
+
+        for (SortedSlots sortedSlots : mIndexes.values()) {
+            sortedSlots.insert(slot);
+        }
+    }
+
+    /**
+     * Удаление модели приложения.
+     *
+     * @param packageName имя пакета.
+     * @return {@code true}, если модель пакета была в индексе.
+     */
+    public boolean remove(@NonNull String packageName) {
+        Integer slot = mSlotsByPackageName.remove(packageName);
+        if (slot == null)
+            return false;
+
+        for (SortedSlots sortedSlots : mIndexes.values()) {
+            sortedSlots.remove(slot);
+        }
+        mModels.set(slot, null);
+        mSize--;
+        if (mModels.size() >= MIN_COMPACT_SLOTS && mModels.size() - mSize > mSize)
+            compact();
+        return true;
+    }
+
+    /**
+     * Сжатие: удаленные места убираются, номера моделей сдвигаются с сохранением порядка загрузки.
+     * Так как порядок номеров не меняется, отсортированные массивы остаются отсортированными после замены номеров.
+     */
+    private void compact() {
+        int[] newSlots = new int[mModels.size()];
+        List<InstalledPackageModel> models = new ArrayList<>(mSize);
+        for (int slot = 0; slot < mModels.size(); slot++) {
+            InstalledPackageModel model = mModels.get(slot);
+            if (model == null)
+                continue;
+            newSlots[slot] = models.size();
+            mSlotsByPackageName.put(model.getAppPackageName(), models.size());
+            models.add(model);
+        }
+        mModels = models;
+        for (SortedSlots sortedSlots : mIndexes.values()) {
+            sortedSlots.renumber(newSlots);
+        }
+    }
+
+    /**
+     * Количество мест для моделей, включая места удаленных моделей до сжатия.
+     */
+    @VisibleForTesting
+    int getSlotCount() {
+        return mModels.size();
+    }
+
+    @Nullable
+    private SortedSlots getSortedSlots(@Nullable SortOption sortOption) {
+        SortSpec sortSpec = SortSpec.forOption(sortOption);
+        if (sortSpec == null)
+            return null;
+
+        SortedSlots sortedSlots = mIndexes.get(sortOption);
+        if (sortedSlots == null) {
+            sortedSlots = new SortedSlots(sortSpec);
+            mIndexes.put(sortOption, sortedSlots);
+        }
+        return sortedSlots;
+    }
+
+    /**
+     * Отсортированный массив номеров моделей для одного варианта сортировки.
+     */
+    private class SortedSlots {
+
+        private final Comparator<InstalledPackageModel> mComparator;
+        private int[] mSlots;
+        private int mSize;
+
+        SortedSlots(@NonNull SortSpec sortSpec) {
+            mComparator = sortSpec.getComparator();
+
+            int[] slots = new int[PackageSortIndex.this.mSize];
+            List<InstalledPackageModel> models = new ArrayList<>(PackageSortIndex.this.mSize);
+            for (int slot = 0; slot < mModels.size(); slot++) {
+                if (mModels.get(slot) != null) {
+                    slots[models.size()] = slot;
+                    models.add(mModels.get(slot));
+                }
+            }
+            // сортировка устойчивая, поэтому равные модели остаются в порядке загрузки
+            int[] order = SortEngine.sortedOrder(models, sortSpec);
+
+            mSlots = new int[Math.max(order.length, 1)];
+            for (int i = 0; i < order.length; i++) {
+                mSlots[i] = slots[order[i]];
+            }
+            mSize = order.length;
+        }
+
+        void insert(int slot) {
+            int position = search(slot);
+            if (position >= 0)
+                return; // уже в массиве
+            position = -position - 1;
+
+            if (mSize == mSlots.length)
+                mSlots = Arrays.copyOf(mSlots, mSize * 2);
+            System.arraycopy(mSlots, position, mSlots, position + 1, mSize - position);
+            mSlots[position] = slot;
+            mSize++;
+        }
+
+        void renumber(@NonNull int[] newSlots) {
+            for (int i = 0; i < mSize; i++) {
+                mSlots[i] = newSlots[mSlots[i]];
+            }
+        }
+
+        void remove(int slot) {
+            int position = search(slot);
+            if (position < 0)
+                return;
+            System.arraycopy(mSlots, position + 1, mSlots, position, mSize - position - 1);
+            mSize--;
+        }
+
+        /**
+         * Бинарный поиск позиции номера модели: сравнение по ключу сортировки, при равенстве - по порядку загрузки.
+         * Модель с номером {@code slot} должна находиться в mModels.
+         *
+         * @return позиция, если номер найден, иначе (-(точка вставки) - 1)
+         */
+        private int search(int slot) {
+            InstalledPackageModel model = mModels.get(slot);
+            int low = 0;
+            int high = mSize - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int middleSlot = mSlots[middle];
+                int compare = mComparator.compare(mModels.get(middleSlot), model);
+                if (compare == 0)
+                    compare = Integer.compare(middleSlot, slot);
+
+                if (compare < 0) {
+                    low = middle + 1;
+                } else if (compare > 0) {
+                    high = middle - 1;
+                } else {
+                    return middle;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+}
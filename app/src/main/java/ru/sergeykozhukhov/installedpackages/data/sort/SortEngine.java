@@ -0,0 +1,290 @@
+package ru.sergeykozhukhov.installedpackages.data.sort;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackageModel;
+
+/**
+ * Сортировка списков моделей по составной сортировке {@link SortSpec}.
+ *
+ * <p> Перед сортировкой ключи всех моделей извлекаются в массивы: флаг и размер - в long, название -
+ * в байты ключа сортировки локали, имя пакета - в строку. Сравнение идет по массивам, без обращения
+ * к моделям и Collator. Сортируется массив номеров моделей устойчивой сортировкой слиянием,
+ * начиная с {@link #PARALLEL_THRESHOLD} элементов половины сортируются параллельно.
+ * Результат - перестановка, которая затем применяется к списку.
+ */
+public final class SortEngine {
+
+    // минимальный размер части, половины которой сортируются параллельно
+    static final int PARALLEL_THRESHOLD = 4096;
+    // части не больше этого размера сортируются вставками
+    private static final int INSERTION_SORT_THRESHOLD = 32;
+
+    private static ForkJoinPool sPool;
+
+    private SortEngine() {
+    }
+
+    /**
+     * Сортировка списка на месте.
+     *
+     * @param models   список моделей.
+     * @param sortSpec составная сортировка.
+     */
+    public static void sort(@NonNull List<InstalledPackageModel> models, @NonNull SortSpec sortSpec) {
+        int[] order = sortedOrder(models, sortSpec);
+        List<InstalledPackageModel> source = new ArrayList<>(models);
+        for (int i = 0; i < order.length; i++) {
+            models.set(i, source.get(order[i]));
+        }
+    }
+
+    /**
+     * Получение перестановки, упорядочивающей список: i-й элемент результата - номер модели на i-й позиции.
+     * Равные по всем ключам модели остаются в исходном порядке.
+     *
+     * @param models   список моделей.
+     * @param sortSpec составная сортировка.
+     * @return номера моделей в отсортированном порядке.
+     */
+    @NonNull
+    public static int[] sortedOrder(@NonNull List<InstalledPackageModel> models, @NonNull SortSpec sortSpec) {
+        return sortedOrder(models, sortSpec, PARALLEL_THRESHOLD);
+    }
+
+    @NonNull
+    static int[] sortedOrder(@NonNull List<InstalledPackageModel> models, @NonNull SortSpec sortSpec, int parallelThreshold) {
+        int size = models.size();
+        int[] order = new int[size];
+        for (int i = 0; i < size; i++) {
+            order[i] = i;
+        }
+        if (size < 2)
+            return order;
+
+        KeyColumns columns = new KeyColumns(models, sortSpec.getKeys());
+        int[] buffer = new int[size];
+        if (size < parallelThreshold) {
+            mergeSort(order, buffer, 0, size, columns);
+        } else {
+            getPool().invoke(new MergeSortTask(order, buffer, 0, size, columns, parallelThreshold));
+        }
+        return order;
+    }
+
+    private static synchronized ForkJoinPool getPool() {
+        if (sPool == null)
+            sPool = new ForkJoinPool(Math.max(1, Runtime.getRuntime().availableProcessors()));
+        return sPool;
+    }
+
+    /**
+     * Сортировка order[from, to) слиянием через буфер того же размера.
+     */
+    private static void mergeSort(int[] order, int[] buffer, int from, int to, KeyColumns columns) {
+        if (to - from <= INSERTION_SORT_THRESHOLD) {
+            insertionSort(order, from, to, columns);
+            return;
+        }
+        int middle = (from + to) >>> 1;
+        mergeSort(order, buffer, from, middle, columns);
+        mergeSort(order, buffer, middle, to, columns);
+        merge(order, buffer, from, middle, to, columns);
+    }
+
+    private static void insertionSort(int[] order, int from, int to, KeyColumns columns) {
+        for (int i = from + 1; i < to; i++) {
+            int value = order[i];
+            int j = i - 1;
+            // строгое сравнение сохраняет порядок равных
+            while (j >= from && columns.compare(order[j], value) > 0) {
+                order[j + 1] = order[j];
+                j--;
+            }
+            order[j + 1] = value;
+        }
+    }
+
+    private static void merge(int[] order, int[] buffer, int from, int middle, int to, KeyColumns columns) {
+        // половины уже упорядочены друг относительно друга
+        if (columns.compare(order[middle - 1], order[middle]) <= 0)
+            return;
+
+        System.arraycopy(order, from, buffer, from, to - from);
+        int left = from;
+        int right = middle;
+        int position = from;
+        while (left < middle && right < to) {
+            // при равенстве берется элемент левой половины, поэтому сортировка устойчива
+            if (columns.compare(buffer[right], buffer[left]) < 0) {
+                order[position++] = buffer[right++];
+            } else {
+                order[position++] = buffer[left++];
+            }
+        }
+        System.arraycopy(buffer, left, order, position, middle - left);
+        System.arraycopy(buffer, right, order, position, to - right);
+    }
+
+    /**
+     * Параллельная сортировка слиянием: половины больших частей сортируются в разных потоках.
+     * Части не пересекаются ни в массиве номеров, ни в буфере.
+     */
+    private static class MergeSortTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int[] mOrder;
+        private final int[] mBuffer;
+        private final int mFrom;
+        private final int mTo;
+        private final KeyColumns mColumns;
+        private final int mParallelThreshold;
+
+        MergeSortTask(int[] order, int[] buffer, int from, int to, KeyColumns columns, int parallelThreshold) {
+            mOrder = order;
+            mBuffer = buffer;
+            mFrom = from;
+            mTo = to;
+            mColumns = columns;
+            mParallelThreshold = parallelThreshold;
+        }
+
+        @Override
+        protected void compute() {
+            if (mTo - mFrom < mParallelThreshold) {
+                mergeSort(mOrder, mBuffer, mFrom, mTo, mColumns);
+                return;
+            }
+            int middle = (mFrom + mTo) >>> 1;
+            invokeAll(new MergeSortTask(mOrder, mBuffer, mFrom, middle, mColumns, mParallelThreshold),
+                    new MergeSortTask(mOrder, mBuffer, middle, mTo, mColumns, mParallelThreshold));
+            merge(mOrder, mBuffer, mFrom, middle, mTo, mColumns);
+        }
+    }
+
+    /**
+     * Ключи сортировки всех моделей, извлеченные в массивы по одному на ключ.
+     */
+    private static class KeyColumns {
+
+        private final KeyColumn[] mColumns;
+
+        KeyColumns(@NonNull List<InstalledPackageModel> models, @NonNull List<SortKey> keys) {
+            mColumns = new KeyColumn[keys.size()];
+            for (int i = 0; i < mColumns.length; i++) {
+                mColumns[i] = createColumn(models, keys.get(i));
+            }
+        }
+
+        int compare(int first, int second) {
+            for (KeyColumn column : mColumns) {
+                int compare = column.compare(first, second);
+                if (compare != 0)
+                    return compare;
+            }
+            return 0;
+        }
+
+        @NonNull
+        private static KeyColumn createColumn(@NonNull List<InstalledPackageModel> models, @NonNull SortKey key) {
+            int size = models.size();
+            switch (key) {
+                case SYSTEM_FIRST: {
+                    long[] values = new long[size];
+                    for (int i = 0; i < size; i++) {
+                        values[i] = models.get(i).getIsAppSystem() ? 0 : 1;
+                    }
+                    return new LongColumn(values);
+                }
+                case APP_SIZE: {
+                    // по убыванию размера: неизмеренный размер -1 дает наибольший ключ и оказывается в конце
+                    long[] values = new long[size];
+                    for (int i = 0; i < size; i++) {
+                        values[i] = -models.get(i).getAppSize();
+                    }
+                    return new LongColumn(values);
+                }
+                case APP_NAME: {
+                    byte[][] values = new byte[size][];
+                    for (int i = 0; i < size; i++) {
+                        values[i] = models.get(i).getAppNameSortKey().toByteArray();
+                    }
+                    return new BytesColumn(values);
+                }
+                case APP_PACKAGE_NAME: {
+                    String[] values = new String[size];
+                    for (int i = 0; i < size; i++) {
+                        values[i] = models.get(i).getAppPackageName();
+                    }
+                    return new StringColumn(values);
+                }
+                default:
+                    throw new IllegalArgumentException("Unknown sort key: " + key);
+            }
+        }
+    }
+
+    private interface KeyColumn {
+
+        int compare(int first, int second);
+    }
+
+    private static class LongColumn implements KeyColumn {
+
+        private final long[] mValues;
+
+        LongColumn(long[] values) {
+            mValues = values;
+        }
+
+        @Override
+        public int compare(int first, int second) {
+            return Long.compare(mValues[first], mValues[second]);
+        }
+    }
+
+    /**
+     * Ключи сортировки локали в виде байтов: беззнаковое лексикографическое сравнение байтов
+     * совпадает со сравнением самих ключей.
+     */
+    private static class BytesColumn implements KeyColumn {
+
+        private final byte[][] mValues;
+
+        BytesColumn(byte[][] values) {
+            mValues = values;
+        }
+
+        @Override
+        public int compare(int first, int second) {
+            byte[] a = mValues[first];
+            byte[] b = mValues[second];
+            int length = Math.min(a.length, b.length);
+            for (int i = 0; i < length; i++) {
+                if (a[i] != b[i])
+                    return (a[i] & 0xff) - (b[i] & 0xff);
+            }
+            return a.length - b.length;
+        }
+    }
+
+    private static class StringColumn implements KeyColumn {
+
+        private final String[] mValues;
+
+        StringColumn(String[] values) {
+            mValues = values;
+        }
+
+        @Override
+        public int compare(int first, int second) {
+            return mValues[first].compareTo(mValues[second]);
+        }
+    }
+}
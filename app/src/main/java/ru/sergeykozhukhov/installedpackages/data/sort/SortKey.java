@@ -0,0 +1,36 @@
+package ru.sergeykozhukhov.installedpackages.data.sort;
+
+import androidx.annotation.NonNull;
+
+import java.util.Comparator;
+
+import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackageModel;
+
+/**
+ * Ключ сортировки, из которых составляется {@link SortSpec}.
+ *
+ * SYSTEM_FIRST - сначала системные приложения
+ * APP_NAME - по имени приложения с учетом правил текущей локали
+ * APP_PACKAGE_NAME - по имени пакета
+ * APP_SIZE - по размеру приложения, сначала большие, неизмеренные в конце
+ */
+public enum SortKey {
+    SYSTEM_FIRST(InstalledPackageModel.BY_SYSTEM_FIRST),
+    APP_NAME(InstalledPackageModel.BY_APP_NAME),
+    APP_PACKAGE_NAME(InstalledPackageModel.BY_APP_PACKAGE_NAME),
+    APP_SIZE(InstalledPackageModel.BY_APP_SIZE);
+
+    private final Comparator<InstalledPackageModel> mComparator;
+
+    SortKey(@NonNull Comparator<InstalledPackageModel> comparator) {
+        mComparator = comparator;
+    }
+
+    /**
+     * Компаратор моделей по одному ключу, порядок которого совпадает с порядком извлеченных ключей в {@link SortEngine}.
+     */
+    @NonNull
+    public Comparator<InstalledPackageModel> getComparator() {
+        return mComparator;
+    }
+}
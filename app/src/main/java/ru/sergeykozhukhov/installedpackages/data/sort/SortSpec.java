@@ -0,0 +1,95 @@
+package ru.sergeykozhukhov.installedpackages.data.sort;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackageModel;
+import ru.sergeykozhukhov.installedpackages.data.model.SortOption;
+
+/**
+ * Составная сортировка: список ключей, каждый следующий ключ упорядочивает модели, равные по предыдущим.
+ * Модели, равные по всем ключам, сохраняют исходный порядок.
+ */
+public class SortSpec {
+
+    private final SortKey[] mKeys;
+
+    /**
+     * @param keys ключи сортировки в порядке убывания приоритета.
+     */
+    public SortSpec(@NonNull SortKey... keys) {
+        if (keys.length == 0)
+            throw new IllegalArgumentException("Sort spec must contain at least one key");
+        mKeys = keys.clone();
+    }
+
+    @NonNull
+    public List<SortKey> getKeys() {
+        return Collections.unmodifiableList(Arrays.asList(mKeys));
+    }
+
+    /**
+     * Компаратор, последовательно сравнивающий модели по всем ключам.
+     */
+    @NonNull
+    public Comparator<InstalledPackageModel> getComparator() {
+        return new Comparator<InstalledPackageModel>() {
+            @Override
+            public int compare(InstalledPackageModel o1, InstalledPackageModel o2) {
+                for (SortKey key : mKeys) {
+                    int compare = key.getComparator().compare(o1, o2);
+                    if (compare != 0)
+                        return compare;
+                }
+                return 0;
+            }
+        };
+    }
+
+    /**
+     * Получение составной сортировки для варианта сортировки.
+     *
+     * @param sortOption вариант сортировки
+     * @return сортировка или {@code null}, если порядок не меняется
+     */
+    @Nullable
+    public static SortSpec forOption(@Nullable SortOption sortOption) {
+        if (sortOption == null)
+            return null;
+        switch (sortOption){
+            case BY_APP_NAME:
+                return new SortSpec(SortKey.APP_NAME);
+            case BY_APP_PACKAGE_NAME:
+                return new SortSpec(SortKey.APP_PACKAGE_NAME);
+            case BY_APP_SIZE:
+                return new SortSpec(SortKey.APP_SIZE);
+            case BY_SYSTEM_THEN_APP_NAME:
+                return new SortSpec(SortKey.SYSTEM_FIRST, SortKey.APP_NAME, SortKey.APP_PACKAGE_NAME);
+            case NONE:
+            default:
+                return null;
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+        return Arrays.equals(mKeys, ((SortSpec) o).mKeys);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(mKeys);
+    }
+
+    @Override
+    public String toString() {
+        return "SortSpec" + Arrays.toString(mKeys);
+    }
+}
@@ -0,0 +1,363 @@
+package ru.sergeykozhukhov.installedpackages.data.store;
+
+import androidx.annotation.NonNull;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+import ru.sergeykozhukhov.installedpackages.data.model.IInstalledPackageModel;
+
+/**
+ * Хранилище данных о приложениях по столбцам.
+ *
+ * <p> Вместо объекта на приложение данные хранятся в массивах: названия и имена пакетов - номерами
+ * в общей {@link StringPool}, время обновления и размер - в массивах long, признаки (системное, включено,
+ * обновленное системное) - в упакованном наборе битов. На приложение приходится около 30 байт
+ * плюс сами строки, без заголовков объектов и узлов хэш-таблиц.
+ *
+ * <p> Строки приложения доступны через легкое представление {@link Row}. Порядок строк - порядок добавления,
+ * удаление сдвигает последующие строки. Хранилище не потокобезопасно: для изменения из другого потока
+ * используется копия {@link #copy()}, которая разделяет с исходным хранилищем только таблицу строк.
+ * Строки удаленных приложений и прежние названия остаются в разделяемой таблице, поэтому копия
+ * разросшейся таблицы получает новую таблицу, а на диск записываются только строки самого хранилища.
+ */
+public class PackageColumnStore {
+
+    // номера признаков в наборе битов строки
+    private static final int FLAG_SYSTEM = 0;
+    private static final int FLAG_ENABLED = 1;
+    private static final int FLAG_UPDATED_SYSTEM = 2;
+    private static final int FLAG_COUNT = 3;
+
+    private static final int MIN_CAPACITY = 16;
+    // во сколько раз таблица строк может превышать количество строк хранилища до замены ее при копировании
+    private static final int POOL_COMPACT_FACTOR = 2;
+
+    private final StringPool mPool;
+    private int[] mAppNames;
+    private int[] mPackageNames;
+    private long[] mLastUpdateTimes;
+    private long[] mAppSizes;
+    // mFlags - признаки строк подряд, по FLAG_COUNT битов на строку
+    private long[] mFlags;
+    // mRowsByPackageName - номер строки + 1 по номеру имени пакета в таблице строк, 0 - пакета нет
+    private int[] mRowsByPackageName;
+    private int mSize;
+
+    public PackageColumnStore() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize ожидаемое количество приложений, при котором массивы не расширяются.
+     */
+    public PackageColumnStore(int expectedSize) {
+        this(new StringPool(expectedSize * 2), Math.max(MIN_CAPACITY, expectedSize));
+    }
+
+    private PackageColumnStore(@NonNull StringPool pool, int capacity) {
+        mPool = pool;
+        mAppNames = new int[capacity];
+        mPackageNames = new int[capacity];
+        mLastUpdateTimes = new long[capacity];
+        mAppSizes = new long[capacity];
+        mFlags = new long[getFlagWords(capacity)];
+        mRowsByPackageName = new int[Math.max(MIN_CAPACITY, pool.size())];
+    }
+
+    public int size() {
+        return mSize;
+    }
+
+    public boolean isEmpty() {
+        return mSize == 0;
+    }
+
+    /**
+     * Поиск строки приложения.
+     *
+     * @param packageName имя пакета.
+     * @return номер строки или -1, если приложения нет.
+     */
+    public int indexOf(@NonNull String packageName) {
+        int packageNameId = mPool.indexOf(packageName);
+        if (packageNameId < 0 || packageNameId >= mRowsByPackageName.length)
+            return -1;
+        return mRowsByPackageName[packageNameId] - 1;
+    }
+
+    public boolean contains(@NonNull String packageName) {
+        return indexOf(packageName) >= 0;
+    }
+
+    /**
+     * Получение представления строки.
+     *
+     * @param row номер строки, в пределах [0, {@link #size()})
+     */
+    @NonNull
+    public Row getRow(int row) {
+        if (row < 0 || row >= mSize)
+            throw new IndexOutOfBoundsException("Row " + row + ", size " + mSize);
+        return new Row(row);
+    }
+
+    /**
+     * Добавление приложения или замена данных уже добавленного приложения с тем же именем пакета.
+     *
+     * @param model данные приложения, в том числе строка другого хранилища.
+     * @return номер строки приложения.
+     */
+    public int put(@NonNull IInstalledPackageModel model) {
+        int packageNameId = mPool.intern(model.getAppPackageName());
+        ensureRowsByPackageName(packageNameId);
+
+        int row = mRowsByPackageName[packageNameId] - 1;
+        if (row < 0) {
+            ensureCapacity(mSize + 1);
+            row = mSize++;
+            mPackageNames[row] = packageNameId;
+            mRowsByPackageName[packageNameId] = row + 1;
+        }
+        mAppNames[row] = mPool.intern(model.getAppName());
+        mLastUpdateTimes[row] = model.getLastUpdateTime();
+        mAppSizes[row] = model.getAppSize();
+        setFlag(row, FLAG_SYSTEM, model.getIsAppSystem());
+        setFlag(row, FLAG_ENABLED, model.getIsAppEnabled());
+        setFlag(row, FLAG_UPDATED_SYSTEM, model.getIsUpdatedSystemApp());
+        return row;
+    }
+
+    /**
+     * Изменение размера приложения.
+     */
+    public void setAppSize(int row, long appSize) {
+        mAppSizes[row] = appSize;
+    }
+
+    /**
+     * Удаление приложения. Следующие строки сдвигаются на одну позицию, порядок сохраняется.
+     *
+     * @return {@code true}, если приложение было в хранилище.
+     */
+    public boolean remove(@NonNull String packageName) {
+        int row = indexOf(packageName);
+        if (row < 0)
+            return false;
+
+        mRowsByPackageName[mPackageNames[row]] = 0;
+        int moved = mSize - row - 1;
+        System.arraycopy(mAppNames, row + 1, mAppNames, row, moved);
+        System.arraycopy(mPackageNames, row + 1, mPackageNames, row, moved);
+        System.arraycopy(mLastUpdateTimes, row + 1, mLastUpdateTimes, row, moved);
+        System.arraycopy(mAppSizes, row + 1, mAppSizes, row, moved);
+        for (int i = row; i < mSize - 1; i++) {
+            for (int flag = 0; flag < FLAG_COUNT; flag++) {
+                setFlag(i, flag, getFlag(i + 1, flag));
+            }
+            mRowsByPackageName[mPackageNames[i]] = i + 1;
+        }
+        mSize--;
+        for (int flag = 0; flag < FLAG_COUNT; flag++) {
+            setFlag(mSize, flag, false);
+        }
+        return true;
+    }
+
+    /**
+     * Копия хранилища. Массивы копируются целиком, таблица строк разделяется.
+     * Если таблица строк разрослась больше чем в {@link #POOL_COMPACT_FACTOR} раз относительно строк хранилища,
+     * копия получает новую таблицу только со своими строками.
+     */
+    @NonNull
+    public PackageColumnStore copy() {
+        int capacity = Math.max(MIN_CAPACITY, mSize);
+        boolean isPoolCompacted = mPool.size() > POOL_COMPACT_FACTOR * 2 * capacity;
+        PackageColumnStore copy = new PackageColumnStore(
+                isPoolCompacted ? new StringPool(mSize * 2) : mPool, capacity);
+        System.arraycopy(mLastUpdateTimes, 0, copy.mLastUpdateTimes, 0, mSize);
+        System.arraycopy(mAppSizes, 0, copy.mAppSizes, 0, mSize);
+        System.arraycopy(mFlags, 0, copy.mFlags, 0, getFlagWords(mSize));
+        if (isPoolCompacted) {
+            for (int row = 0; row < mSize; row++) {
+                int packageNameId = copy.mPool.intern(mPool.get(mPackageNames[row]));
+                copy.ensureRowsByPackageName(packageNameId);
+                copy.mPackageNames[row] = packageNameId;
+                copy.mRowsByPackageName[packageNameId] = row + 1;
+                copy.mAppNames[row] = copy.mPool.intern(mPool.get(mAppNames[row]));
+            }
+        } else {
+            System.arraycopy(mAppNames, 0, copy.mAppNames, 0, mSize);
+            System.arraycopy(mPackageNames, 0, copy.mPackageNames, 0, mSize);
+            copy.mRowsByPackageName = Arrays.copyOf(mRowsByPackageName, mRowsByPackageName.length);
+        }
+        copy.mSize = mSize;
+        return copy;
+    }
+
+    /**
+     * Запись хранилища: таблица строк, затем столбцы целиком.
+     * Записывается новая таблица только со строками хранилища: разделяемая таблица содержит строки
+     * других копий и может пополняться из других потоков во время записи.
+     */
+    public void writeTo(@NonNull DataOutputStream outputStream) throws IOException {
+        StringPool pool = new StringPool(mSize * 2);
+        int[] appNames = new int[mSize];
+        int[] packageNames = new int[mSize];
+        for (int row = 0; row < mSize; row++) {
+            appNames[row] = pool.intern(mPool.get(mAppNames[row]));
+            packageNames[row] = pool.intern(mPool.get(mPackageNames[row]));
+        }
+
+        pool.writeTo(outputStream);
+        outputStream.writeInt(mSize);
+        for (int row = 0; row < mSize; row++) {
+            outputStream.writeInt(appNames[row]);
+        }
+        for (int row = 0; row < mSize; row++) {
+            outputStream.writeInt(packageNames[row]);
+        }
+        for (int row = 0; row < mSize; row++) {
+            outputStream.writeLong(mLastUpdateTimes[row]);
+        }
+        for (int row = 0; row < mSize; row++) {
+            outputStream.writeLong(mAppSizes[row]);
+        }
+        int flagWords = getFlagWords(mSize);
+        for (int i = 0; i < flagWords; i++) {
+            outputStream.writeLong(mFlags[i]);
+        }
+    }
+
+    /**
+     * Чтение хранилища, записанного {@link #writeTo(DataOutputStream)}.
+     *
+     * @throws IOException если данные повреждены.
+     */
+    @NonNull
+    public static PackageColumnStore readFrom(@NonNull DataInputStream inputStream) throws IOException {
+        StringPool pool = StringPool.readFrom(inputStream);
+        int size = inputStream.readInt();
+        if (size < 0)
+            throw new IOException("Invalid store size " + size);
+
+        PackageColumnStore store = new PackageColumnStore(pool, Math.max(MIN_CAPACITY, size));
+        for (int row = 0; row < size; row++) {
+            store.mAppNames[row] = readStringId(inputStream, pool);
+        }
+        for (int row = 0; row < size; row++) {
+            int packageNameId = readStringId(inputStream, pool);
+            if (store.mRowsByPackageName[packageNameId] != 0)
+                throw new IOException("Duplicate package " + pool.get(packageNameId));
+            store.mPackageNames[row] = packageNameId;
+            store.mRowsByPackageName[packageNameId] = row + 1;
+        }
+        for (int row = 0; row < size; row++) {
+            store.mLastUpdateTimes[row] = inputStream.readLong();
+        }
+        for (int row = 0; row < size; row++) {
+            store.mAppSizes[row] = inputStream.readLong();
+        }
+        int flagWords = getFlagWords(size);
+        for (int i = 0; i < flagWords; i++) {
+            store.mFlags[i] = inputStream.readLong();
+        }
+        store.mSize = size;
+        return store;
+    }
+
+    private static int readStringId(@NonNull DataInputStream inputStream, @NonNull StringPool pool) throws IOException {
+        int id = inputStream.readInt();
+        if (id < 0 || id >= pool.size())
+            throw new IOException("Invalid string id " + id);
+        return id;
+    }
+
+    private boolean getFlag(int row, int flag) {
+        int bit = row * FLAG_COUNT + flag;
+        return (mFlags[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    private void setFlag(int row, int flag, boolean value) {
+        int bit = row * FLAG_COUNT + flag;
+        if (value) {
+            mFlags[bit >>> 6] |= 1L << bit;
+        } else {
+            mFlags[bit >>> 6] &= ~(1L << bit);
+        }
+    }
+
+    private static int getFlagWords(int rowCount) {
+        return (rowCount * FLAG_COUNT + 63) >>> 6;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= mAppNames.length)
+            return;
+        int newCapacity = Math.max(capacity, mAppNames.length * 2);
+        mAppNames = Arrays.copyOf(mAppNames, newCapacity);
+        mPackageNames = Arrays.copyOf(mPackageNames, newCapacity);
+        mLastUpdateTimes = Arrays.copyOf(mLastUpdateTimes, newCapacity);
+        mAppSizes = Arrays.copyOf(mAppSizes, newCapacity);
+        mFlags = Arrays.copyOf(mFlags, getFlagWords(newCapacity));
+    }
+
+    private void ensureRowsByPackageName(int packageNameId) {
+        if (packageNameId < mRowsByPackageName.length)
+            return;
+        mRowsByPackageName = Arrays.copyOf(mRowsByPackageName,
+                Math.max(packageNameId + 1, mRowsByPackageName.length * 2));
+    }
+
+    /**
+     * Представление строки хранилища. Данные читаются из столбцов при каждом обращении,
+     * представление ничего не копирует.
+     */
+    public final class Row implements IInstalledPackageModel {
+
+        private final int mRow;
+
+        private Row(int row) {
+            mRow = row;
+        }
+
+        @Override
+        @NonNull
+        public String getAppName() {
+            return mPool.get(mAppNames[mRow]);
+        }
+
+        @Override
+        @NonNull
+        public String getAppPackageName() {
+            return mPool.get(mPackageNames[mRow]);
+        }
+
+        @Override
+        public boolean getIsAppSystem() {
+            return getFlag(mRow, FLAG_SYSTEM);
+        }
+
+        @Override
+        public boolean getIsAppEnabled() {
+            return getFlag(mRow, FLAG_ENABLED);
+        }
+
+        @Override
+        public boolean getIsUpdatedSystemApp() {
+            return getFlag(mRow, FLAG_UPDATED_SYSTEM);
+        }
+
+        @Override
+        public long getLastUpdateTime() {
+            return mLastUpdateTimes[mRow];
+        }
+
+        @Override
+        public long getAppSize() {
+            return mAppSizes[mRow];
+        }
+    }
+}
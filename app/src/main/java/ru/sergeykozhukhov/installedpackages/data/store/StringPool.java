@@ -0,0 +1,143 @@
+package ru.sergeykozhukhov.installedpackages.data.store;
+
+import androidx.annotation.NonNull;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Таблица строк: каждая строка хранится один раз и заменяется в столбцах своим номером.
+ *
+ * <p> Номера не освобождаются, поэтому таблица только растет; разросшуюся таблицу заменяет новой
+ * {@link PackageColumnStore#copy()}. Таблица разделяется копиями {@link PackageColumnStore}, которые могут
+ * изменяться в разных потоках, поэтому добавление и поиск синхронизированы. Получение строки по номеру
+ * не блокирует: номер получен из {@link #intern(String)} до публикации хранилища, а массив строк
+ * при расширении заменяется копией, уже содержащей все выданные номера.
+ *
+ * <p> Таблица с открытой адресацией и линейным пробированием не создает объект записи на каждую строку,
+ * поэтому служит и множеством строк при отбрасывании повторений.
+ */
+public final class StringPool {
+
+    private static final int MIN_CAPACITY = 16;
+
+    // mStrings - строки по номеру, заменяется расширенной копией под блокировкой
+    // mIndex - таблица с открытой адресацией: номер строки + 1, 0 - свободная ячейка
+    private volatile String[] mStrings;
+    private int[] mIndex;
+    private int mSize;
+
+    /**
+     * @param expectedSize ожидаемое количество строк, при котором таблица не расширяется.
+     */
+    public StringPool(int expectedSize) {
+        mStrings = new String[Math.max(MIN_CAPACITY, expectedSize)];
+        mIndex = new int[tableSizeFor(mStrings.length)];
+    }
+
+    /**
+     * Получение номера строки с добавлением строки в таблицу, если ее там нет.
+     * Номера выдаются подряд, поэтому новая строка получает номер, равный прежнему размеру таблицы.
+     */
+    public synchronized int intern(@NonNull String string) {
+        int slot = find(string);
+        if (mIndex[slot] != 0)
+            return mIndex[slot] - 1;
+
+        String[] strings = mStrings;
+        if (mSize == strings.length) {
+            strings = Arrays.copyOf(strings, mSize * 2);
+            mStrings = strings;
+        }
+        strings[mSize] = string;
+        mIndex[slot] = ++mSize;
+        if (mSize * 2 > mIndex.length)
+            rebuildIndex(mIndex.length * 2);
+        return mSize - 1;
+    }
+
+    /**
+     * Получение номера строки без добавления.
+     *
+     * @return номер строки или -1, если строки нет в таблице.
+     */
+    synchronized int indexOf(@NonNull String string) {
+        return mIndex[find(string)] - 1;
+    }
+
+    /**
+     * Получение строки по номеру без блокировки.
+     *
+     * @param id номер, полученный из {@link #intern(String)}.
+     */
+    @NonNull
+    String get(int id) {
+        return mStrings[id];
+    }
+
+    synchronized int size() {
+        return mSize;
+    }
+
+    synchronized void writeTo(@NonNull DataOutputStream outputStream) throws IOException {
+        outputStream.writeInt(mSize);
+        for (int i = 0; i < mSize; i++) {
+            outputStream.writeUTF(mStrings[i]);
+        }
+    }
+
+    @NonNull
+    static StringPool readFrom(@NonNull DataInputStream inputStream) throws IOException {
+        int size = inputStream.readInt();
+        if (size < 0)
+            throw new IOException("Invalid string pool size " + size);
+        StringPool pool = new StringPool(size);
+        for (int i = 0; i < size; i++) {
+            pool.intern(inputStream.readUTF());
+        }
+        return pool;
+    }
+
+    private int find(@NonNull String string) {
+        int mask = mIndex.length - 1;
+        int slot = hash(string) & mask;
+        while (mIndex[slot] != 0 && !mStrings[mIndex[slot] - 1].equals(string)) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private void rebuildIndex(int capacity) {
+        mIndex = new int[capacity];
+        int mask = capacity - 1;
+        for (int id = 0; id < mSize; id++) {
+            int slot = hash(mStrings[id]) & mask;
+            while (mIndex[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            mIndex[slot] = id + 1;
+        }
+    }
+
+    /**
+     * Хэш строки с перемешанными старшими битами: размер таблицы - степень двойки,
+     * и номер ячейки берется из младших битов.
+     */
+    private static int hash(@NonNull String string) {
+        int hash = string.hashCode();
+        return hash ^ (hash >>> 16);
+    }
+
+    /**
+     * Размер таблицы с открытой адресацией: степень двойки, заполненная не больше чем наполовину.
+     */
+    private static int tableSizeFor(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity < expectedSize * 2) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+}
@@ -4,37 +4,128 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import java.lang.ref.WeakReference;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import ru.sergeykozhukhov.installedpackages.data.filter.FilterSpec;
+import ru.sergeykozhukhov.installedpackages.data.metrics.Metrics;
+import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackageChangeModel;
 import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackageModel;
 import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackedSortOptionModel;
+import ru.sergeykozhukhov.installedpackages.data.model.MetadataColumn;
+import ru.sergeykozhukhov.installedpackages.data.model.PackageMetadataModel;
+import ru.sergeykozhukhov.installedpackages.data.model.ScanMode;
 import ru.sergeykozhukhov.installedpackages.data.model.SortOption;
 import ru.sergeykozhukhov.installedpackages.data.repository.PackageInstalledRepository;
+import ru.sergeykozhukhov.installedpackages.data.search.PackageSearchIndex;
+import ru.sergeykozhukhov.installedpackages.data.sort.PackageSortIndex;
+import ru.sergeykozhukhov.installedpackages.data.sort.SortEngine;
+import ru.sergeykozhukhov.installedpackages.data.sort.SortSpec;
 import ru.sergeykozhukhov.installedpackages.presentation.view.IPackageInstalledView;
 
 /**
  * Presenter главного экрана приложения.
+ *
+ * <p> Presenter хранит загруженные данные и состояние загрузки, поэтому может пережить пересоздание View:
+ * после {@link #attachView(IPackageInstalledView)} новая View сразу получает текущее состояние.
  */
 public class PackageInstalledPresenter {
 
+    // столбцы дополнительных данных, отображаемые в элементе списка
+    static final Set<MetadataColumn> DISPLAYED_METADATA_COLUMNS = Collections.unmodifiableSet(
+            EnumSet.of(MetadataColumn.VERSION, MetadataColumn.TARGET_SDK, MetadataColumn.PERMISSIONS));
+
+    // данные всегда загружаются вместе с системными приложениями, а их отображение определяется фильтром,
+    // поэтому переключение отображения системных приложений не обращается к PackageManager
+    private static final boolean LOAD_SYSTEM_PACKAGES = true;
+
     // mMainActivityWeakReference - слабая ссылка на интерфейс, описывающий возможности View
     // общение с View через интерфейс
-    private final WeakReference<IPackageInstalledView> mMainActivityWeakReference;
+    private WeakReference<IPackageInstalledView> mMainActivityWeakReference;
 
     // mPackageInstalledRepository - поставщик данных об установленных приложениях
     private final PackageInstalledRepository mPackageInstalledRepository;
+    // mMetrics - замер сортировки, поиска и применения изменений
+    private final Metrics mMetrics;
+
+    // mSortIndex - загруженные данные с отсортированными представлениями, к ним применяются изменения приложений
+    // mSortOption - вариант сортировки, выбранный пользователем; загрузки его не заменяют,
+    // вариант, переданный в загрузку, определяет только порядок обработки и порций
+    private PackageSortIndex mSortIndex;
+    private SortOption mSortOption;
+
+    // mIsLoading и mLastProgress - состояние загрузки с индикатором, повторяемое для новой View
+    // mStreamedData - данные, уже полученные порциями во время загрузки без индикатора
+    private boolean mIsLoading;
+    private int mLastProgress;
+    private List<InstalledPackageModel> mStreamedData;
+
+    // mSearchQuery - строка поиска, {@code null} вне режима поиска
+    // mSearchIndex - индекс поиска по текущему отсортированному представлению, строится при первом запросе после изменения данных
+    private String mSearchQuery;
+    private PackageSearchIndex mSearchIndex;
+
+    // mFilterSpec - фильтр отображаемых приложений, применяется к загруженным данным без их повторной загрузки
+    private FilterSpec mFilterSpec = FilterSpec.ALL;
+    // mFilterMetadata - дополнительные данные для условий фильтра по имени пакета, загружаются только при таких условиях
+    private final Map<String, PackageMetadataModel> mFilterMetadata = new HashMap<>();
+
+    public PackageInstalledPresenter(@NonNull PackageInstalledRepository packageInstalledRepository) {
+        this(packageInstalledRepository, Metrics.DISABLED);
+    }
+
+    public PackageInstalledPresenter(@NonNull PackageInstalledRepository packageInstalledRepository,
+                                     @NonNull Metrics metrics) {
+        mMainActivityWeakReference = new WeakReference<>(null);
+        mPackageInstalledRepository = packageInstalledRepository;
+        mMetrics = metrics;
+    }
 
      public PackageInstalledPresenter(@NonNull IPackageInstalledView mainActivity,
                                      @NonNull PackageInstalledRepository packageInstalledRepository) {
         mMainActivityWeakReference = new WeakReference<>(mainActivity);
         mPackageInstalledRepository = packageInstalledRepository;
+        mMetrics = Metrics.DISABLED;
+    }
+
+    /**
+     * Метод для прикрепления View. View сразу получает текущий ход загрузки и уже загруженные данные,
+     * повторного обращения к PackageManager не происходит.
+     *
+     * @param packageInstalledView интерфейс, описывающий возможности View.
+     */
+    public void attachView(@NonNull IPackageInstalledView packageInstalledView) {
+        mMainActivityWeakReference = new WeakReference<>(packageInstalledView);
+
+        if (mIsLoading) {
+            packageInstalledView.showProgress();
+            packageInstalledView.showPercentProgress(mLastProgress);
+        }
+        if (mSortIndex != null) {
+            packageInstalledView.showData(getVisibleData());
+        } else if (mStreamedData != null) {
+            packageInstalledView.showData(getVisibleData(mStreamedData));
+        }
+    }
+
+    /**
+     * Определение, загружены ли данные или идет их загрузка.
+     *
+     * @return {@code true}, если новой View достаточно прикрепиться к presenter, чтобы получить данные.
+     */
+    public boolean isDataRequested() {
+        return mSortIndex != null || mIsLoading || mStreamedData != null;
     }
 
     /**
      * Метод для получения данных в синхронном режиме.
      *
-     * @param isSystem загрузка данных с (@code true) включением/(@code false) исключением информации о системных приложениях.
+     * @param isSystem отображение (@code true)/скрытие (@code false) системных приложений; загружаются они в любом случае.
      * @param  objectSortOption объект модели, описывающей вариант сортировки данных о приложениях.
      */
     // Данный метод нужен исключительно для понимания работы Unit-тестов.
@@ -49,23 +140,24 @@ public class PackageInstalledPresenter {
 
         IPackageInstalledView packageInstalledView = mMainActivityWeakReference.get();
         if (packageInstalledView != null) {
+            mFilterSpec = mFilterSpec.withSystemApps(isSystem);
+            mSortOption = sortOption;
             packageInstalledView.showProgress();
 
-            List<InstalledPackageModel> data = mPackageInstalledRepository.getData(isSystem);
+            List<InstalledPackageModel> data = mPackageInstalledRepository.getData(LOAD_SYSTEM_PACKAGES);
 
             packageInstalledView.hideProgress();
 
-            if (sortOption != null)
-                sortData(data, sortOption);
+            setCurrentData(data);
 
-            packageInstalledView.showData(data);
+            packageInstalledView.showData(getVisibleData());
         }
     }
 
     /**
      * Метод для загрузки данных в ассинхронном режиме.
      *
-     * @param isSystem загрузка данных с (@code true) включением/(@code false) исключением информации о системных приложениях.
+     * @param isSystem отображение (@code true)/скрытие (@code false) системных приложений; загружаются они в любом случае.
      * @param  objectSortOption объект модели, описывающей вариант сортировки данных о приложениях.
      */
     public void loadDataAsync(boolean isSystem, @Nullable final Object objectSortOption) {
@@ -76,20 +168,24 @@ public class PackageInstalledPresenter {
         }
         else return;
 
+        mFilterSpec = mFilterSpec.withSystemApps(isSystem);
+        mSortOption = sortOption;
         IPackageInstalledView packageInstalledView = mMainActivityWeakReference.get();
         if (packageInstalledView != null) {
             packageInstalledView.showProgress();
         }
+        mIsLoading = true;
+        mLastProgress = 0;
 
         PackageInstalledRepository.OnLoadingFinishListener onLoadingFinishListener = new PackageInstalledRepository.OnLoadingFinishListener() {
             @Override
             public void onFinish(List<InstalledPackageModel> packageModels) {
-                if (sortOption != null)
-                    sortData(packageModels, sortOption);
+                mIsLoading = false;
+                setCurrentData(packageModels);
                 IPackageInstalledView installedView = mMainActivityWeakReference.get();
                 if (installedView != null) {
                     installedView.hideProgress();
-                    installedView.showData(packageModels);
+                    installedView.showData(getVisibleData());
                 }
             }
         };
@@ -97,6 +193,7 @@ public class PackageInstalledPresenter {
         PackageInstalledRepository.OnProgressUpdateListener onProgressUpdateListener = new PackageInstalledRepository.OnProgressUpdateListener() {
             @Override
             public void onUpdate(int progress) {
+                mLastProgress = progress;
                 IPackageInstalledView installedView = mMainActivityWeakReference.get();
                 if (installedView != null) {
                     installedView.showPercentProgress(progress);
@@ -104,7 +201,161 @@ public class PackageInstalledPresenter {
             }
         };
 
-        mPackageInstalledRepository.loadDataAsync(isSystem, onProgressUpdateListener, onLoadingFinishListener);
+        mPackageInstalledRepository.loadDataAsync(LOAD_SYSTEM_PACKAGES, sortOption, onProgressUpdateListener, onLoadingFinishListener);
+    }
+
+    /**
+     * Метод для отображения данных из снимка, сохраненного при последней загрузке, с последующим
+     * ассинхронным обновлением. Снимок читается с диска в фоновом потоке; если снимка нет
+     * или до окончания чтения запрошена загрузка, ничего не происходит.
+     *
+     * @param isSystem отображение (@code true)/скрытие (@code false) системных приложений; загружаются они в любом случае.
+     * @param  objectSortOption объект модели, описывающей вариант сортировки данных о приложениях.
+     */
+    public void loadDataCached(boolean isSystem, @Nullable final Object objectSortOption) {
+        final SortOption sortOption;
+
+        if (objectSortOption instanceof InstalledPackedSortOptionModel){
+            sortOption = ((InstalledPackedSortOptionModel) objectSortOption).getSortOption();
+        }
+        else return;
+
+        IPackageInstalledView packageInstalledView = mMainActivityWeakReference.get();
+        if (packageInstalledView == null)
+            return;
+
+        mFilterSpec = mFilterSpec.withSystemApps(isSystem);
+        mSortOption = sortOption;
+        PackageInstalledRepository.OnSnapshotLoadedListener onSnapshotLoadedListener = new PackageInstalledRepository.OnSnapshotLoadedListener() {
+            @Override
+            public void onSnapshotLoaded(@Nullable List<InstalledPackageModel> snapshot) {
+                // пока снимок читался, могла быть запрошена загрузка, данные которой новее снимка
+                if (snapshot == null || isDataRequested())
+                    return;
+
+                setCurrentData(snapshot);
+                IPackageInstalledView installedView = mMainActivityWeakReference.get();
+                if (installedView != null) {
+                    installedView.showData(getVisibleData());
+                }
+
+                // обновление снимка в фоне без индикатора загрузки: пересчитываются только изменившиеся пакеты;
+                // пока снимок читался, сортировка могла смениться
+                refreshData(mSortOption);
+            }
+        };
+
+        mPackageInstalledRepository.loadSnapshotAsync(LOAD_SYSTEM_PACKAGES, onSnapshotLoadedListener);
+    }
+
+    /**
+     * Ассинхронное обновление уже отображаемых данных без индикатора загрузки.
+     * Новый список передается целиком, и представление перерисовывает только изменившиеся приложения
+     * в порядке сортировки, выбранной к моменту окончания загрузки.
+     *
+     * @param sortOption вариант сортировки, в порядке которого обрабатываются пакеты
+     */
+    private void refreshData(@Nullable SortOption sortOption) {
+        PackageInstalledRepository.OnProgressUpdateListener onProgressUpdateListener = new PackageInstalledRepository.OnProgressUpdateListener() {
+            @Override
+            public void onUpdate(int progress) {
+            }
+        };
+
+        PackageInstalledRepository.OnLoadingFinishListener onLoadingFinishListener = new PackageInstalledRepository.OnLoadingFinishListener() {
+            @Override
+            public void onFinish(List<InstalledPackageModel> packageModels) {
+                // обновление могло заменить загрузку порциями
+                mStreamedData = null;
+                setCurrentData(packageModels);
+                IPackageInstalledView installedView = mMainActivityWeakReference.get();
+                finishLoadingProgress(installedView);
+                if (installedView != null) {
+                    installedView.showData(getVisibleData());
+                }
+            }
+        };
+
+        mPackageInstalledRepository.loadDataAsync(LOAD_SYSTEM_PACKAGES, sortOption, onProgressUpdateListener, onLoadingFinishListener);
+    }
+
+    /**
+     * Метод для загрузки данных в ассинхронном режиме с отображением приложений порциями по мере их загрузки.
+     * Порции загружаются в порядке сортировки, поэтому первыми отображаются приложения вверху списка.
+     * Точно отсортированный список отображается после окончания загрузки.
+     *
+     * <p> Повторная загрузка при уже отображаемом списке выполняется без порций и без индикатора:
+     * список не очищается, а заменяется целиком после загрузки, и представление перерисовывает только
+     * изменившиеся приложения. Порции нужны, чтобы не показывать пустой экран, а при повторной загрузке
+     * экран уже заполнен.
+     *
+     * @param isSystem отображение (@code true)/скрытие (@code false) системных приложений; загружаются они в любом случае.
+     * @param  objectSortOption объект модели, описывающей вариант сортировки данных о приложениях.
+     */
+    public void loadDataStreaming(boolean isSystem, @Nullable final Object objectSortOption) {
+        final SortOption sortOption;
+
+        if (objectSortOption instanceof InstalledPackedSortOptionModel){
+            sortOption = ((InstalledPackedSortOptionModel) objectSortOption).getSortOption();
+        }
+        else return;
+
+        mFilterSpec = mFilterSpec.withSystemApps(isSystem);
+        mSortOption = sortOption;
+        if (mSortIndex != null) {
+            // повторная загрузка без порций и индикатора
+            refreshData(sortOption);
+            return;
+        }
+
+        IPackageInstalledView packageInstalledView = mMainActivityWeakReference.get();
+        if (packageInstalledView != null) {
+            packageInstalledView.showData(new ArrayList<InstalledPackageModel>());
+        }
+        mStreamedData = new ArrayList<>();
+
+        PackageInstalledRepository.OnBatchLoadedListener onBatchLoadedListener = new PackageInstalledRepository.OnBatchLoadedListener() {
+            @Override
+            public void onBatchLoaded(@NonNull List<InstalledPackageModel> packageModels) {
+                mStreamedData.addAll(packageModels);
+                loadFilterMetadata(packageModels);
+                IPackageInstalledView installedView = mMainActivityWeakReference.get();
+                if (installedView == null)
+                    return;
+                List<InstalledPackageModel> visibleModels = getVisibleData(packageModels);
+                if (!visibleModels.isEmpty())
+                    installedView.appendData(visibleModels);
+            }
+        };
+
+        PackageInstalledRepository.OnLoadingFinishListener onLoadingFinishListener = new PackageInstalledRepository.OnLoadingFinishListener() {
+            @Override
+            public void onFinish(List<InstalledPackageModel> packageModels) {
+                // порции пришли в порядке, определенном до получения названий, поэтому при сортировке список заменяется;
+                // список заменяется и в режиме поиска, так как запрос мог измениться во время загрузки,
+                // и после смены сортировки во время загрузки, так как порции пришли в порядке прежней сортировки
+                mStreamedData = null;
+                setCurrentData(packageModels);
+                IPackageInstalledView installedView = mMainActivityWeakReference.get();
+                finishLoadingProgress(installedView);
+                if (isUnsorted(sortOption) && isUnsorted(mSortOption) && mSearchQuery == null)
+                    return;
+                if (installedView != null) {
+                    installedView.showData(getVisibleData());
+                }
+            }
+        };
+
+        mPackageInstalledRepository.loadDataStreaming(LOAD_SYSTEM_PACKAGES, sortOption, onBatchLoadedListener, onLoadingFinishListener);
+    }
+
+    /**
+     * Выбор режима получения списка приложений для следующих загрузок.
+     *
+     * @param scanMode {@link ScanMode} режим: приложения средства запуска или все установленные пакеты.
+     */
+    public void setScanMode(@NonNull ScanMode scanMode) {
+        mPackageInstalledRepository.setScanMode(scanMode);
     }
 
     /**
@@ -114,21 +365,274 @@ public class PackageInstalledPresenter {
      * @param sortOption вариант сортировки
      */
     public void sortData(@NonNull List<InstalledPackageModel> data, @Nullable SortOption sortOption){
+        SortSpec sortSpec = SortSpec.forOption(sortOption);
+        if (sortSpec != null) {
+            long startTime = mMetrics.startTimer();
+            SortEngine.sort(data, sortSpec);
+            mMetrics.stopTimer(Metrics.Stage.SORT, startTime);
+        }
+    }
 
-        if (sortOption == null)
+    /**
+     * Смена варианта сортировки отображаемых данных без их повторной загрузки.
+     * Отсортированное представление берется из индекса, сортировка выполняется только при первом выборе варианта.
+     *
+     * @param  objectSortOption объект модели, описывающей вариант сортировки данных о приложениях.
+     */
+    public void changeSortOption(@Nullable Object objectSortOption) {
+        if (!(objectSortOption instanceof InstalledPackedSortOptionModel))
             return;
-        switch (sortOption){
-            case NONE:
-                break;
-            case BY_APP_NAME:
-                Collections.sort(data, InstalledPackageModel.BY_APP_NAME);
-                break;
-            case BY_APP_PACKAGE_NAME:
-                Collections.sort(data, InstalledPackageModel.BY_APP_PACKAGE_NAME);
-                break;
+        SortOption sortOption = ((InstalledPackedSortOptionModel) objectSortOption).getSortOption();
+        if (sortOption == mSortOption)
+            return;
+        mSortOption = sortOption;
+        mSearchIndex = null;
+
+        IPackageInstalledView packageInstalledView = mMainActivityWeakReference.get();
+        if (mSortIndex != null && packageInstalledView != null) {
+            packageInstalledView.showData(getVisibleData());
         }
     }
 
+    /**
+     * Поиск приложений по подстроке названия или имени пакета среди загруженных данных.
+     * Во время загрузки порциями поиск выполняется среди уже полученных приложений, а следующие порции
+     * отображаются только в части, подходящей под запрос.
+     * Пустой запрос выключает режим поиска. Данные повторно не загружаются и не сортируются.
+     *
+     * @param query строка поиска
+     */
+    public void search(@Nullable String query) {
+        String searchQuery = query != null && !query.trim().isEmpty() ? query : null;
+        if (searchQuery == null && mSearchQuery == null)
+            return;
+        mSearchQuery = searchQuery;
+        showVisibleData();
+    }
+
+    /**
+     * Смена фильтра отображаемых приложений. Фильтр применяется к уже загруженным данным за один проход,
+     * данные повторно не загружаются и не сортируются. Исключение - условия по дополнительным данным,
+     * которые загружаются для приложений без них, после чего список отображается заново.
+     *
+     * @param filterSpec {@link FilterSpec} фильтр приложений
+     */
+    public void setFilterSpec(@NonNull FilterSpec filterSpec) {
+        if (filterSpec.equals(mFilterSpec))
+            return;
+        mFilterSpec = filterSpec;
+        mSearchIndex = null;
+        showVisibleData();
+
+        if (mSortIndex != null)
+            loadFilterMetadata(getSortedData());
+        else if (mStreamedData != null)
+            loadFilterMetadata(mStreamedData);
+    }
+
+    /**
+     * @return {@link FilterSpec} текущий фильтр отображаемых приложений
+     */
+    @NonNull
+    public FilterSpec getFilterSpec() {
+        return mFilterSpec;
+    }
+
+    /**
+     * Загрузка дополнительных данных для отображаемых приложений.
+     * Данные, уже загруженные для текущей версии приложения, повторно не запрашиваются.
+     *
+     * @param packageModels отображаемые приложения, данных которых еще нет у View
+     */
+    public void loadMetadata(@NonNull List<InstalledPackageModel> packageModels) {
+        if (packageModels.isEmpty())
+            return;
+
+        mPackageInstalledRepository.loadMetadataAsync(packageModels, DISPLAYED_METADATA_COLUMNS,
+                new PackageInstalledRepository.OnMetadataLoadedListener() {
+                    @Override
+                    public void onMetadataLoaded(@NonNull Map<String, PackageMetadataModel> metadata) {
+                        IPackageInstalledView packageInstalledView = mMainActivityWeakReference.get();
+                        if (packageInstalledView != null)
+                            packageInstalledView.showMetadata(metadata);
+                    }
+                });
+    }
+
+    /**
+     * Включение отслеживания изменений установленных приложений.
+     * Изменения применяются к отображаемым данным без их повторной загрузки.
+     */
+    public void startTrackingChanges() {
+        mPackageInstalledRepository.startTrackingChanges(new PackageInstalledRepository.OnPackagesChangedListener() {
+            @Override
+            public void onPackagesChanged(@NonNull List<InstalledPackageChangeModel> changes) {
+                applyChanges(changes);
+            }
+        });
+    }
+
+    /**
+     * Выключение отслеживания изменений установленных приложений.
+     */
+    public void stopTrackingChanges() {
+        mPackageInstalledRepository.stopTrackingChanges();
+    }
+
+    /**
+     * Применение изменений установленных приложений к отображаемым данным с сохранением порядка сортировки.
+     *
+     * @param changes список изменений
+     */
+    private void applyChanges(@NonNull List<InstalledPackageChangeModel> changes) {
+        if (mSortIndex == null)
+            return;
+
+        long startTime = mMetrics.startTimer();
+        mSearchIndex = null;
+        List<InstalledPackageModel> changedModels = new ArrayList<>(changes.size());
+        for (InstalledPackageChangeModel change : changes) {
+            InstalledPackageModel model = change.getInstalledPackageModel();
+            if (change.getType() == InstalledPackageChangeModel.Type.REMOVED || model == null) {
+                mSortIndex.remove(change.getAppPackageName());
+                mFilterMetadata.remove(change.getAppPackageName());
+            } else {
+                // индексы сортировок обновляются вставкой с бинарным поиском
+                mSortIndex.put(model);
+                changedModels.add(model);
+            }
+        }
+        mMetrics.stopTimer(Metrics.Stage.APPLY_CHANGES, startTime);
+        loadFilterMetadata(changedModels);
+
+        IPackageInstalledView packageInstalledView = mMainActivityWeakReference.get();
+        if (packageInstalledView != null) {
+            packageInstalledView.showData(getVisibleData());
+        }
+    }
+
+    /**
+     * Скрытие индикатора загрузки, если загрузку с индикатором заменил запрос без него:
+     * результат заменённой загрузки не приходит, и индикатор иначе остался бы на экране.
+     */
+    private void finishLoadingProgress(@Nullable IPackageInstalledView packageInstalledView) {
+        if (!mIsLoading)
+            return;
+        mIsLoading = false;
+        if (packageInstalledView != null)
+            packageInstalledView.hideProgress();
+    }
+
+    /**
+     * Сохранение отображаемых данных. Вариант сортировки не меняется: данные отображаются
+     * в порядке, выбранном пользователем, даже если он сменил сортировку во время загрузки.
+     */
+    private void setCurrentData(@NonNull List<InstalledPackageModel> data) {
+        mSortIndex = new PackageSortIndex(data);
+        mSearchIndex = null;
+        loadFilterMetadata(data);
+    }
+
+    private static boolean isUnsorted(@Nullable SortOption sortOption) {
+        return sortOption == null || sortOption == SortOption.NONE;
+    }
+
+    /**
+     * Загрузка дополнительных данных, необходимых условиям фильтра, для приложений, у которых их еще нет
+     * для текущей версии. Пока данные загружаются, такие приложения фильтр не проходят;
+     * после загрузки список отображается заново.
+     *
+     * @param packageModels приложения, для которых необходимы данные
+     */
+    private void loadFilterMetadata(@NonNull List<InstalledPackageModel> packageModels) {
+        Set<MetadataColumn> columns = mFilterSpec.getMetadataColumns();
+        if (columns.isEmpty())
+            return;
+
+        List<InstalledPackageModel> notLoadedModels = new ArrayList<>();
+        for (InstalledPackageModel model : packageModels) {
+            PackageMetadataModel metadata = mFilterMetadata.get(model.getAppPackageName());
+            if (metadata == null || metadata.getLastUpdateTime() != model.getLastUpdateTime()
+                    || !metadata.hasColumns(columns))
+                notLoadedModels.add(model);
+        }
+        if (notLoadedModels.isEmpty())
+            return;
+
+        mPackageInstalledRepository.loadMetadataAsync(notLoadedModels, columns,
+                new PackageInstalledRepository.OnMetadataLoadedListener() {
+                    @Override
+                    public void onMetadataLoaded(@NonNull Map<String, PackageMetadataModel> metadata) {
+                        mFilterMetadata.putAll(metadata);
+                        mSearchIndex = null;
+                        showVisibleData();
+                    }
+                });
+    }
+
+    /**
+     * Отображение загруженных или уже полученных порциями данных после смены фильтра или строки поиска.
+     */
+    private void showVisibleData() {
+        IPackageInstalledView packageInstalledView = mMainActivityWeakReference.get();
+        if (packageInstalledView == null)
+            return;
+        if (mSortIndex != null) {
+            packageInstalledView.showData(getVisibleData());
+        } else if (mStreamedData != null) {
+            packageInstalledView.showData(getVisibleData(mStreamedData));
+        }
+    }
+
+    /**
+     * Получение данных для отображения: всех прошедших фильтр или, в режиме поиска, найденных среди них.
+     */
+    @NonNull
+    private List<InstalledPackageModel> getVisibleData() {
+        if (mSearchQuery == null)
+            return getFilteredData();
+        // индекс поиска строится по текущему порядку, чтобы найденные приложения шли в порядке сортировки
+        if (mSearchIndex == null)
+            mSearchIndex = new PackageSearchIndex(getFilteredData());
+        long startTime = mMetrics.startTimer();
+        List<InstalledPackageModel> result = mSearchIndex.search(mSearchQuery);
+        mMetrics.stopTimer(Metrics.Stage.SEARCH, startTime);
+        return result;
+    }
+
+    /**
+     * Получение данных для отображения из части, полученной во время загрузки порциями:
+     * фильтр и поиск применяются так же, как в {@link #getVisibleData()}, в порядке получения.
+     */
+    @NonNull
+    private List<InstalledPackageModel> getVisibleData(@NonNull List<InstalledPackageModel> streamedModels) {
+        List<InstalledPackageModel> filteredData = mFilterSpec.apply(streamedModels, mFilterMetadata);
+        if (mSearchQuery == null)
+            return new ArrayList<>(filteredData); // полученная часть продолжает расти
+        long startTime = mMetrics.startTimer();
+        List<InstalledPackageModel> result = new PackageSearchIndex(filteredData).search(mSearchQuery);
+        mMetrics.stopTimer(Metrics.Stage.SEARCH, startTime);
+        return result;
+    }
+
+    @NonNull
+    private List<InstalledPackageModel> getFilteredData() {
+        List<InstalledPackageModel> sortedData = getSortedData();
+        if (mFilterSpec.isAll())
+            return sortedData;
+        long startTime = mMetrics.startTimer();
+        List<InstalledPackageModel> filteredData = mFilterSpec.apply(sortedData, mFilterMetadata);
+        mMetrics.stopTimer(Metrics.Stage.FILTER, startTime);
+        return filteredData;
+    }
+
+    @NonNull
+    private List<InstalledPackageModel> getSortedData() {
+        long startTime = mMetrics.startTimer();
+        List<InstalledPackageModel> sortedData = mSortIndex.get(mSortOption);
+        mMetrics.stopTimer(Metrics.Stage.SORT, startTime);
+        return sortedData;
+    }
 
     /**
      * Загрузка данных о возможных вариантах сортировки данных по приложениям
@@ -148,5 +652,15 @@ public class PackageInstalledPresenter {
         mMainActivityWeakReference.clear();
     }
 
+    /**
+     * Освобождение ресурсов presenter, когда он больше не нужен ни одной View:
+     * прекращение отслеживания изменений и отмена выполняющейся загрузки.
+     */
+    public void destroy() {
+        detachView();
+        mPackageInstalledRepository.stopTrackingChanges();
+        mPackageInstalledRepository.cancelLoading();
+    }
+
 
 }
@@ -0,0 +1,84 @@
+package ru.sergeykozhukhov.installedpackages.presentation.presenter;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.ViewModel;
+import androidx.lifecycle.ViewModelProvider;
+
+import ru.sergeykozhukhov.installedpackages.BuildConfig;
+import ru.sergeykozhukhov.installedpackages.data.cache.IconLoader;
+import ru.sergeykozhukhov.installedpackages.data.metrics.Metrics;
+import ru.sergeykozhukhov.installedpackages.data.metrics.RecordingMetrics;
+import ru.sergeykozhukhov.installedpackages.data.repository.PackageInstalledRepository;
+
+/**
+ * Хранилище presenter главного экрана, переживающее пересоздание Activity при изменении конфигурации.
+ *
+ * <p> Вместе с presenter сохраняются загруженные данные, выполняющаяся загрузка и кэш иконок.
+ */
+public class PackageInstalledViewModel extends ViewModel {
+
+    private final PackageInstalledRepository mPackageInstalledRepository;
+    private final PackageInstalledPresenter mPresenter;
+
+    PackageInstalledViewModel(@NonNull PackageInstalledRepository packageInstalledRepository) {
+        mPackageInstalledRepository = packageInstalledRepository;
+        mPresenter = new PackageInstalledPresenter(packageInstalledRepository, packageInstalledRepository.getMetrics());
+    }
+
+    @NonNull
+    public PackageInstalledPresenter getPresenter() {
+        return mPresenter;
+    }
+
+    /**
+     * Получение загрузчика иконок для элементов списка.
+     *
+     * @return {@link IconLoader} загрузчик иконок, общий для всех экземпляров Activity
+     */
+    @NonNull
+    public IconLoader getIconLoader() {
+        return mPackageInstalledRepository.getIconLoader();
+    }
+
+    /**
+     * Вывод метрик загрузки в logcat и файл, если они собираются.
+     */
+    public void dumpMetrics() {
+        mPackageInstalledRepository.dumpMetrics();
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void onCleared() {
+        mPresenter.destroy();
+    }
+
+    /**
+     * Фабрика {@link PackageInstalledViewModel}.
+     */
+    public static class Factory implements ViewModelProvider.Factory {
+
+        private final Context mApplicationContext;
+
+        /**
+         * @param context контекст, из которого берется контекст приложения: репозиторий живет дольше Activity
+         *                и не должен удерживать ее.
+         */
+        public Factory(@NonNull Context context) {
+            mApplicationContext = context.getApplicationContext();
+        }
+
+        @SuppressWarnings("unchecked")
+        @NonNull
+        @Override
+        public <T extends ViewModel> T create(@NonNull Class<T> modelClass) {
+            // метрики собираются только в отладочной сборке, в релизе замеры ничего не стоят
+            Metrics metrics = BuildConfig.DEBUG ? new RecordingMetrics() : Metrics.DISABLED;
+            return (T) new PackageInstalledViewModel(new PackageInstalledRepository(mApplicationContext, metrics));
+        }
+    }
+}
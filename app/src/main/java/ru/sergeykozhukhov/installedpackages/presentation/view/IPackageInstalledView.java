@@ -4,9 +4,11 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 
 import java.util.List;
+import java.util.Map;
 
 import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackageModel;
 import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackedSortOptionModel;
+import ru.sergeykozhukhov.installedpackages.data.model.PackageMetadataModel;
 
 /**
  * Интерфейс, описывающий возможности View.
@@ -37,6 +39,20 @@ public interface IPackageInstalledView {
      */
     void showData(@NonNull List<InstalledPackageModel> modelList);
 
+    /**
+     * Добавить порцию данных об установленных приложениях в конец уже отображаемого списка.
+     *
+     * @param modelList порция приложений.
+     */
+    void appendData(@NonNull List<InstalledPackageModel> modelList);
+
+    /**
+     * Отобразить дополнительные данные об отображаемых приложениях.
+     *
+     * @param metadata данные по имени пакета.
+     */
+    void showMetadata(@NonNull Map<String, PackageMetadataModel> metadata);
+
 
     /**
      * Отобразить возможные варианты сортироки данных по приложениям
@@ -3,8 +3,13 @@ package ru.sergeykozhukhov.installedpackages.presentation.view;
 import androidx.appcompat.app.AppCompatActivity;
 
 import android.os.Bundle;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.View;
+import android.widget.AdapterView;
 import android.widget.CheckBox;
+import android.widget.CompoundButton;
+import android.widget.EditText;
 import android.widget.ImageView;
 import android.widget.ProgressBar;
 import android.widget.Spinner;
@@ -13,16 +18,20 @@ import android.widget.TextView;
 import ru.sergeykozhukhov.installedpackages.R;
 import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackageModel;
 import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackedSortOptionModel;
-import ru.sergeykozhukhov.installedpackages.data.repository.PackageInstalledRepository;
+import ru.sergeykozhukhov.installedpackages.data.model.PackageMetadataModel;
+import ru.sergeykozhukhov.installedpackages.data.model.ScanMode;
 import ru.sergeykozhukhov.installedpackages.presentation.presenter.PackageInstalledPresenter;
+import ru.sergeykozhukhov.installedpackages.presentation.presenter.PackageInstalledViewModel;
 import ru.sergeykozhukhov.installedpackages.presentation.view.adapter.PackageInstalledRecyclerAdapter;
 import ru.sergeykozhukhov.installedpackages.presentation.view.adapter.PackageInstalledSpinnerAdapter;
 
 import androidx.annotation.NonNull;
+import androidx.lifecycle.ViewModelProvider;
 import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import java.util.List;
+import java.util.Map;
 
 /**
  * Главное активити приложения. Умеет показывать список установленных приложений на телефоне.
@@ -32,14 +41,19 @@ public class PackageInstalledActivity extends AppCompatActivity implements IPack
     private RecyclerView mInstalledPackagesRecyclerView; // список информации по приложениям
     private Spinner mSortOptionsSpinner; // список вариантов сорторивки информации по приложениям
     private CheckBox mIsLoadSystemCheckBox; // определение, загружать ли информацию по системным приложениям
+    private CheckBox mIsLoadAllPackagesCheckBox; // определение, загружать ли все пакеты, а не только приложения средства запуска
     private ImageView mLoadInstalledPackagesImageView; // загрузка данных по приложениям
     private View mProgressLoadFrameLayout; // поле для отображениям процесса загрузки данных
     private ProgressBar mPercentLoadedProgressBar; // индикатор хода загрузки данных
     private TextView mPercentLoadedTextView; // индикатор хода загрузки данных
+    private EditText mSearchEditText; // строка поиска по названию и имени пакета
 
     // стоит вынести в уровень "model". Сделано для быстроты реализации.
     private boolean mFlagIsFirstLoaded = true; // флаг для определения первый ли раз загружены данные
 
+    private PackageInstalledRecyclerAdapter mRecyclerAdapter; // адаптер списка информации по приложениям, создается один раз
+
+    private PackageInstalledViewModel mViewModel; // хранилище презентера, переживающее пересоздание активити
     private PackageInstalledPresenter mMainPresenter; // презентер данного окна
 
     /**
@@ -52,7 +66,17 @@ public class PackageInstalledActivity extends AppCompatActivity implements IPack
 
         initViews(); // инициализация views
         providePresenter(); // инициализация презентера
+        initRecyclerAdapter(); // инициализация адаптера списка
         initListeners(); // инициализация обработчиков нажатия на элементы
+
+        // после пересоздания активити презентер сразу передает ей уже загруженные данные и ход загрузки
+        mMainPresenter.attachView(this);
+        mMainPresenter.loadSortOptions();
+        if (!mMainPresenter.isDataRequested()) {
+            // показ снимка списка, сохраненного при прошлой загрузке, до обращения к PackageManager
+            mMainPresenter.setScanMode(getScanMode());
+            mMainPresenter.loadDataCached(mIsLoadSystemCheckBox.isChecked(), mSortOptionsSpinner.getSelectedItem());
+        }
     }
 
     /**
@@ -61,13 +85,23 @@ public class PackageInstalledActivity extends AppCompatActivity implements IPack
     @Override
     protected void onStart() {
         super.onStart();
-        mMainPresenter.loadSortOptions();
+        mMainPresenter.startTrackingChanges();
     }
 
     /**
      * {@inheritDoc}
      */
     @Override
+    protected void onStop() {
+        mMainPresenter.stopTrackingChanges();
+        super.onStop();
+    }
+
+    /**
+     * {@inheritDoc}
+     * Презентер не уничтожается вместе с активити: его освобождает {@link PackageInstalledViewModel}.
+     */
+    @Override
     protected void onDestroy() {
         mMainPresenter.detachView();
         super.onDestroy();
@@ -104,8 +138,23 @@ public class PackageInstalledActivity extends AppCompatActivity implements IPack
      */
     @Override
     public void showData(@NonNull List<InstalledPackageModel> modelList) {
-        PackageInstalledRecyclerAdapter adapter = new PackageInstalledRecyclerAdapter(modelList);
-        mInstalledPackagesRecyclerView.setAdapter(adapter);
+        mRecyclerAdapter.submitList(modelList);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void appendData(@NonNull List<InstalledPackageModel> modelList) {
+        mRecyclerAdapter.appendData(modelList);
+    }
+
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void showMetadata(@NonNull Map<String, PackageMetadataModel> metadata) {
+        mRecyclerAdapter.setMetadata(metadata);
     }
 
     /**
@@ -118,11 +167,28 @@ public class PackageInstalledActivity extends AppCompatActivity implements IPack
     }
 
     /**
-     * Инициализация презентера
+     * Инициализация презентера. Презентер и его данные хранятся в {@link PackageInstalledViewModel}
+     * и переиспользуются при пересоздании активити.
      */
     private void providePresenter() {
-        PackageInstalledRepository packageInstalledRepository = new PackageInstalledRepository(this);
-        mMainPresenter = new PackageInstalledPresenter(this, packageInstalledRepository);
+        mViewModel = new ViewModelProvider(this, new PackageInstalledViewModel.Factory(this))
+                .get(PackageInstalledViewModel.class);
+        mMainPresenter = mViewModel.getPresenter();
+    }
+
+    /**
+     * Инициализация адаптера списка. Адаптер сохраняется на все время жизни экрана,
+     * поэтому обновление данных не пересоздает элементы списка и не сбрасывает позицию прокрутки.
+     */
+    private void initRecyclerAdapter() {
+        mRecyclerAdapter = new PackageInstalledRecyclerAdapter(mViewModel.getIconLoader());
+        mRecyclerAdapter.setOnMetadataRequestListener(new PackageInstalledRecyclerAdapter.OnMetadataRequestListener() {
+            @Override
+            public void onMetadataRequested(@NonNull List<InstalledPackageModel> modelList) {
+                mMainPresenter.loadMetadata(modelList);
+            }
+        });
+        mInstalledPackagesRecyclerView.setAdapter(mRecyclerAdapter);
     }
 
 
@@ -136,10 +202,20 @@ public class PackageInstalledActivity extends AppCompatActivity implements IPack
         mInstalledPackagesRecyclerView.setLayoutManager(layoutManager);
         mSortOptionsSpinner = findViewById(R.id.sort_options_spinner);
         mIsLoadSystemCheckBox = findViewById(R.id.system_packages_check_box);
+        mIsLoadAllPackagesCheckBox = findViewById(R.id.all_packages_check_box);
         mLoadInstalledPackagesImageView = findViewById(R.id.load_data_image_view);
         mProgressLoadFrameLayout = findViewById(R.id.progress_frame_layout);
         mPercentLoadedProgressBar = findViewById(R.id.percent_loaded_progress_bar);
         mPercentLoadedTextView = findViewById(R.id.comment_progress_text_view);
+        mSearchEditText = findViewById(R.id.search_edit_text);
+    }
+
+    /**
+     * Получение выбранного режима получения списка приложений
+     */
+    @NonNull
+    private ScanMode getScanMode() {
+        return mIsLoadAllPackagesCheckBox.isChecked() ? ScanMode.FULL_INVENTORY : ScanMode.LAUNCHER;
     }
 
     /**
@@ -151,12 +227,58 @@ public class PackageInstalledActivity extends AppCompatActivity implements IPack
             @Override
             public void onClick(View v) {
                 boolean isSystem = mIsLoadSystemCheckBox.isChecked();
-                 mMainPresenter.loadDataAsync(isSystem, mSortOptionsSpinner.getSelectedItem());
+                 mMainPresenter.setScanMode(getScanMode());
+                 mMainPresenter.loadDataStreaming(isSystem, mSortOptionsSpinner.getSelectedItem());
                  if(mFlagIsFirstLoaded){
                      mLoadInstalledPackagesImageView.setImageResource(R.drawable.ic_update_black_24dp);
                      mFlagIsFirstLoaded = false;
                  }
             }
         });
+
+        // долгое нажатие выводит метрики загрузки (только в отладочной сборке)
+        mLoadInstalledPackagesImageView.setOnLongClickListener(new View.OnLongClickListener() {
+            @Override
+            public boolean onLongClick(View v) {
+                mViewModel.dumpMetrics();
+                return true;
+            }
+        });
+
+        // системные приложения загружаются всегда, переключение их отображения только фильтрует загруженные данные
+        mIsLoadSystemCheckBox.setOnCheckedChangeListener(new CompoundButton.OnCheckedChangeListener() {
+            @Override
+            public void onCheckedChanged(CompoundButton buttonView, boolean isChecked) {
+                mMainPresenter.setFilterSpec(mMainPresenter.getFilterSpec().withSystemApps(isChecked));
+            }
+        });
+
+        // смена сортировки берет готовое отсортированное представление загруженных данных, без повторной загрузки
+        mSortOptionsSpinner.setOnItemSelectedListener(new AdapterView.OnItemSelectedListener() {
+            @Override
+            public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
+                mMainPresenter.changeSortOption(parent.getItemAtPosition(position));
+            }
+
+            @Override
+            public void onNothingSelected(AdapterView<?> parent) {
+            }
+        });
+
+        // поиск выполняется по индексу загруженных данных при каждом изменении строки
+        mSearchEditText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
+            }
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
+            }
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                mMainPresenter.search(s.toString());
+            }
+        });
     }
 }
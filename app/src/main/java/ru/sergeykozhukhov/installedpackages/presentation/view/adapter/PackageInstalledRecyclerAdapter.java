@@ -1,5 +1,9 @@
 package ru.sergeykozhukhov.installedpackages.presentation.view.adapter;
 
+import android.graphics.drawable.Drawable;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.format.Formatter;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -7,26 +11,195 @@ import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.recyclerview.widget.DiffUtil;
+import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 import androidx.recyclerview.widget.RecyclerView.Adapter;
 
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
 
 import ru.sergeykozhukhov.installedpackages.R;
+import ru.sergeykozhukhov.installedpackages.data.cache.IconLoader;
 import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackageModel;
+import ru.sergeykozhukhov.installedpackages.data.model.PackageMetadataModel;
 
 /**
  * Адаптер для отображения элементов списка с информацией по приложениям.
+ *
+ * <p> Адаптер создается один раз на экран. Новые списки сравниваются с текущим в фоновом потоке
+ * с помощью {@link DiffUtil}, и перерисовываются только изменившиеся элементы.
+ * Порции данных дописываются в конец отображаемого списка без сравнения.
  */
 public class PackageInstalledRecyclerAdapter extends Adapter<PackageInstalledRecyclerAdapter.PackageInstalledViewHolder> {
 
+    // количество элементов за пределами экрана, иконки которых загружаются заранее
+    private static final int PREFETCH_DISTANCE = 8;
+    // изменение элемента, при котором перерисовываются только дополнительные данные
+    private static final Object PAYLOAD_METADATA = new Object();
+    // фоновый поток сравнения списков; сравнения выполняются по очереди, устаревшие результаты не применяются
+    private static final Executor DIFF_EXECUTOR = Executors.newSingleThreadExecutor();
+
+    // приложение идентифицируется по имени пакета, а элемент перерисовывается только при изменении модели
+    private static final DiffUtil.ItemCallback<InstalledPackageModel> DIFF_CALLBACK =
+            new DiffUtil.ItemCallback<InstalledPackageModel>() {
+                @Override
+                public boolean areItemsTheSame(@NonNull InstalledPackageModel oldItem, @NonNull InstalledPackageModel newItem) {
+                    return oldItem.getAppPackageName().equals(newItem.getAppPackageName());
+                }
+
+                @Override
+                public boolean areContentsTheSame(@NonNull InstalledPackageModel oldItem, @NonNull InstalledPackageModel newItem) {
+                    return oldItem.equals(newItem);
+                }
+            };
+
     /*
-    * mInstalledPackageModelList - список моделей с информацией по приложениям
+    * mItems - отображаемый список моделей; изменяется только в главном потоке и только пока нет сравнения,
+    *          так как во время сравнения он читается в фоновом потоке
+    * mPendingAppend - порции данных, полученные во время сравнения, или {@code null}, если сравнения нет;
+    *                  дописываются к новому списку после его отображения
+    * mDiffGeneration - номер последнего сравнения, результаты предыдущих сравнений отбрасываются
+    * mIconLoader - загрузчик иконок для отображаемых элементов
+    * mMetadata - дополнительные данные отображавшихся элементов по имени пакета
+    * mRequestedMetadata - имена пакетов, дополнительные данные которых уже запрошены
+    * mPendingMetadataRequest - элементы, привязанные в текущем кадре, данные которых запрашиваются одним запросом
     * */
-    private List<InstalledPackageModel> mInstalledPackageModelList;
+    private List<InstalledPackageModel> mItems = new ArrayList<>();
+    private List<InstalledPackageModel> mPendingAppend;
+    private int mDiffGeneration;
+    private final IconLoader mIconLoader;
+    private final Map<String, PackageMetadataModel> mMetadata = new HashMap<>();
+    private final Set<String> mRequestedMetadata = new HashSet<>();
+    private final List<InstalledPackageModel> mPendingMetadataRequest = new ArrayList<>();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+    private OnMetadataRequestListener mOnMetadataRequestListener;
+
+    // запрос дополнительных данных всех элементов, привязанных с момента предыдущего запроса
+    private final Runnable mRequestMetadataRunnable = new Runnable() {
+        @Override
+        public void run() {
+            List<InstalledPackageModel> modelList = new ArrayList<>(mPendingMetadataRequest);
+            mPendingMetadataRequest.clear();
+            if (mOnMetadataRequestListener != null)
+                mOnMetadataRequestListener.onMetadataRequested(modelList);
+        }
+    };
+
+    // предварительная загрузка иконок элементов, которые появятся на экране при продолжении прокрутки
+    private final RecyclerView.OnScrollListener mPrefetchScrollListener = new RecyclerView.OnScrollListener() {
+        @Override
+        public void onScrolled(@NonNull RecyclerView recyclerView, int dx, int dy) {
+            if (!(recyclerView.getLayoutManager() instanceof LinearLayoutManager))
+                return;
+            LinearLayoutManager layoutManager = (LinearLayoutManager) recyclerView.getLayoutManager();
+
+            if (dy >= 0) {
+                int from = layoutManager.findLastVisibleItemPosition() + 1;
+                prefetchIcons(from, from + PREFETCH_DISTANCE);
+            } else {
+                int to = layoutManager.findFirstVisibleItemPosition();
+                prefetchIcons(to - PREFETCH_DISTANCE, to);
+            }
+        }
+    };
+
+    public PackageInstalledRecyclerAdapter(@NonNull IconLoader iconLoader) {
+        mIconLoader = iconLoader;
+    }
+
+    /**
+     * Замена отображаемого списка. Различия вычисляются в фоновом потоке,
+     * после чего адаптер получает уведомления только об изменившихся элементах.
+     *
+     * @param installedPackageModelList список моделей с информацией по приложениям
+     */
+    public void submitList(@NonNull List<InstalledPackageModel> installedPackageModelList) {
+        // копия защищает сравниваемый список от изменений вызывающей стороной
+        final List<InstalledPackageModel> newItems = new ArrayList<>(installedPackageModelList);
+        final List<InstalledPackageModel> oldItems = mItems;
+        final int generation = ++mDiffGeneration;
+
+        // вставку в пустой список и очистку списка сравнивать не нужно
+        if (oldItems.isEmpty() || newItems.isEmpty()) {
+            mPendingAppend = null;
+            mItems = newItems;
+            if (!oldItems.isEmpty())
+                notifyItemRangeRemoved(0, oldItems.size());
+            if (!newItems.isEmpty())
+                notifyItemRangeInserted(0, newItems.size());
+            return;
+        }
+
+        mPendingAppend = new ArrayList<>();
+        DIFF_EXECUTOR.execute(new Runnable() {
+            @Override
+            public void run() {
+                final DiffUtil.DiffResult diffResult = DiffUtil.calculateDiff(new DiffCallback(oldItems, newItems));
+                mMainHandler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (generation != mDiffGeneration)
+                            return;
+                        List<InstalledPackageModel> pendingAppend = mPendingAppend;
+                        mPendingAppend = null;
+                        mItems = newItems;
+                        diffResult.dispatchUpdatesTo(PackageInstalledRecyclerAdapter.this);
+                        if (!pendingAppend.isEmpty())
+                            appendData(pendingAppend);
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * Добавление порции моделей в конец списка. Порция вставляется без сравнения списков,
+     * поэтому загрузка порциями не требует повторного сравнения уже отображаемых элементов.
+     *
+     * @param installedPackageModelList порция моделей с информацией по приложениям
+     */
+    public void appendData(@NonNull List<InstalledPackageModel> installedPackageModelList) {
+        if (mPendingAppend != null) {
+            // отображаемый список сейчас сравнивается, порция будет добавлена к новому списку
+            mPendingAppend.addAll(installedPackageModelList);
+            return;
+        }
+        int start = mItems.size();
+        mItems.addAll(installedPackageModelList);
+        notifyItemRangeInserted(start, installedPackageModelList.size());
+    }
 
-    public PackageInstalledRecyclerAdapter(@NonNull List<InstalledPackageModel> installedPackageModelList) {
-        mInstalledPackageModelList = installedPackageModelList;
+    /**
+     * Установка слушателя запросов дополнительных данных для отображаемых элементов.
+     *
+     * @param onMetadataRequestListener слушатель или {@code null}, если дополнительные данные не нужны
+     */
+    public void setOnMetadataRequestListener(@Nullable OnMetadataRequestListener onMetadataRequestListener) {
+        mOnMetadataRequestListener = onMetadataRequestListener;
+    }
+
+    /**
+     * Добавление загруженных дополнительных данных. Перерисовываются только дополнительные данные элементов.
+     *
+     * @param metadata данные по имени пакета
+     */
+    public void setMetadata(@NonNull Map<String, PackageMetadataModel> metadata) {
+        mMetadata.putAll(metadata);
+        mRequestedMetadata.removeAll(metadata.keySet());
+
+        List<InstalledPackageModel> currentList = mItems;
+        for (int position = 0; position < currentList.size(); position++) {
+            if (metadata.containsKey(currentList.get(position).getAppPackageName()))
+                notifyItemChanged(position, PAYLOAD_METADATA);
+        }
     }
 
     @NonNull
@@ -39,34 +212,137 @@ public class PackageInstalledRecyclerAdapter extends Adapter<PackageInstalledRec
 
     @Override
     public void onBindViewHolder(@NonNull PackageInstalledViewHolder holder, int position) {
-        holder.bindView(mInstalledPackageModelList.get(position));
+        InstalledPackageModel installedPackageModel = mItems.get(position);
+        holder.bindView(installedPackageModel, mIconLoader);
+        holder.bindMetadata(getMetadata(installedPackageModel));
+    }
+
+    @Override
+    public void onBindViewHolder(@NonNull PackageInstalledViewHolder holder, int position, @NonNull List<Object> payloads) {
+        if (payloads.isEmpty() || !payloads.contains(PAYLOAD_METADATA)) {
+            onBindViewHolder(holder, position);
+            return;
+        }
+        holder.bindMetadata(getMetadata(mItems.get(position)));
+    }
+
+    @Override
+    public void onViewRecycled(@NonNull PackageInstalledViewHolder holder) {
+        holder.cancelIconRequest();
+    }
+
+    @Override
+    public void onAttachedToRecyclerView(@NonNull RecyclerView recyclerView) {
+        recyclerView.addOnScrollListener(mPrefetchScrollListener);
+    }
+
+    @Override
+    public void onDetachedFromRecyclerView(@NonNull RecyclerView recyclerView) {
+        recyclerView.removeOnScrollListener(mPrefetchScrollListener);
     }
 
     @Override
     public int getItemCount() {
-        return mInstalledPackageModelList.size();
+        return mItems.size();
+    }
+
+    /**
+     * Сравнение двух списков моделей по {@link #DIFF_CALLBACK}.
+     */
+    private static class DiffCallback extends DiffUtil.Callback {
+
+        private final List<InstalledPackageModel> mOldItems;
+        private final List<InstalledPackageModel> mNewItems;
+
+        DiffCallback(@NonNull List<InstalledPackageModel> oldItems, @NonNull List<InstalledPackageModel> newItems) {
+            mOldItems = oldItems;
+            mNewItems = newItems;
+        }
+
+        @Override
+        public int getOldListSize() {
+            return mOldItems.size();
+        }
+
+        @Override
+        public int getNewListSize() {
+            return mNewItems.size();
+        }
+
+        @Override
+        public boolean areItemsTheSame(int oldItemPosition, int newItemPosition) {
+            return DIFF_CALLBACK.areItemsTheSame(mOldItems.get(oldItemPosition), mNewItems.get(newItemPosition));
+        }
+
+        @Override
+        public boolean areContentsTheSame(int oldItemPosition, int newItemPosition) {
+            return DIFF_CALLBACK.areContentsTheSame(mOldItems.get(oldItemPosition), mNewItems.get(newItemPosition));
+        }
+    }
+
+    /**
+     * Получение дополнительных данных элемента. Отсутствующие данные или данные другой версии приложения
+     * запрашиваются вместе с данными остальных элементов, привязанных в этом кадре.
+     *
+     * @return данные или {@code null}, если они еще не загружены
+     */
+    @Nullable
+    private PackageMetadataModel getMetadata(@NonNull InstalledPackageModel installedPackageModel) {
+        PackageMetadataModel metadata = mMetadata.get(installedPackageModel.getAppPackageName());
+        if (metadata != null && metadata.getLastUpdateTime() == installedPackageModel.getLastUpdateTime())
+            return metadata;
+
+        if (mOnMetadataRequestListener != null && mRequestedMetadata.add(installedPackageModel.getAppPackageName())) {
+            if (mPendingMetadataRequest.isEmpty())
+                mMainHandler.post(mRequestMetadataRunnable);
+            mPendingMetadataRequest.add(installedPackageModel);
+        }
+        return null;
+    }
+
+    /**
+     * Предварительная загрузка иконок элементов в диапазоне позиций [from, to).
+     */
+    private void prefetchIcons(int from, int to) {
+        List<InstalledPackageModel> currentList = mItems;
+        int start = Math.max(0, from);
+        int end = Math.min(to, currentList.size());
+        for (int position = start; position < end; position++) {
+            mIconLoader.prefetchIcon(currentList.get(position).getAppIconKey());
+        }
     }
 
     static class PackageInstalledViewHolder extends RecyclerView.ViewHolder {
 
         private TextView mAppTextView;
         private TextView mPackageNameTextView;
+        private TextView mSizeTextView;
+        private TextView mMetadataTextView;
         private ImageView mIconImageView;
         private ImageView mSystemImageView;
 
+        // mIconRequest - текущий запрос загрузки иконки, отменяется при переиспользовании элемента
+        private IconLoader.Request mIconRequest;
+
         PackageInstalledViewHolder(@NonNull View itemView) {
             super(itemView);
 
             mAppTextView = itemView.findViewById(R.id.app_name_text_view);
             mPackageNameTextView = itemView.findViewById(R.id.app_package_text_view);
+            mSizeTextView = itemView.findViewById(R.id.app_size_text_view);
+            mMetadataTextView = itemView.findViewById(R.id.app_metadata_text_view);
             mIconImageView = itemView.findViewById(R.id.app_icon_image_view);
             mSystemImageView = itemView.findViewById(R.id.app_system_image_view);
         }
 
-        void bindView(@NonNull InstalledPackageModel installedPackageModel) {
+        void bindView(@NonNull InstalledPackageModel installedPackageModel, @NonNull IconLoader iconLoader) {
             mAppTextView.setText(installedPackageModel.getAppName());
             mPackageNameTextView.setText(installedPackageModel.getAppPackageName());
-            mIconImageView.setImageDrawable(installedPackageModel.getAppIcon());
+            // размер вычисляется после загрузки списка и появляется при обновлении элемента
+            long appSize = installedPackageModel.getAppSize();
+            mSizeTextView.setText(appSize != InstalledPackageModel.APP_SIZE_UNKNOWN
+                    ? Formatter.formatShortFileSize(itemView.getContext(), appSize) : null);
+            bindIcon(installedPackageModel.getAppIconKey(), iconLoader);
             if (installedPackageModel.getIsAppSystem()){
                 mSystemImageView.setImageResource(R.drawable.ic_phonelink_setup_black_24dp);
             }
@@ -74,5 +350,59 @@ public class PackageInstalledRecyclerAdapter extends Adapter<PackageInstalledRec
                 mSystemImageView.setImageDrawable(null);
 
         }
+
+        /**
+         * Отображение дополнительных данных: версии, целевой версии SDK и количества разрешений.
+         */
+        void bindMetadata(@Nullable PackageMetadataModel metadata) {
+            if (metadata == null) {
+                mMetadataTextView.setText(null);
+                return;
+            }
+            String versionName = metadata.getVersionName();
+            mMetadataTextView.setText(itemView.getContext().getString(R.string.app_metadata_format,
+                    versionName != null ? versionName : "-", metadata.getVersionCode(),
+                    metadata.getTargetSdkVersion(), metadata.getRequestedPermissionCount()));
+        }
+
+        /**
+         * Отображение иконки: из памяти сразу, иначе после асинхронной загрузки.
+         */
+        private void bindIcon(@NonNull String iconKey, @NonNull IconLoader iconLoader) {
+            cancelIconRequest();
+
+            Drawable icon = iconLoader.peekIcon(iconKey);
+            mIconImageView.setImageDrawable(icon);
+            if (icon != null)
+                return;
+
+            mIconRequest = iconLoader.loadIcon(iconKey, new IconLoader.OnIconLoadedListener() {
+                @Override
+                public void onIconLoaded(@NonNull Drawable icon) {
+                    mIconRequest = null;
+                    mIconImageView.setImageDrawable(icon);
+                }
+            });
+        }
+
+        void cancelIconRequest() {
+            if (mIconRequest != null) {
+                mIconRequest.cancel();
+                mIconRequest = null;
+            }
+        }
+    }
+
+    /**
+     * Интерфейс слушателя запросов дополнительных данных.
+     */
+    public interface OnMetadataRequestListener {
+
+        /**
+         * Метод, вызываемый в главном потоке один раз за кадр для элементов, привязанных без дополнительных данных.
+         *
+         * @param modelList элементы, данные которых необходимо загрузить
+         */
+        void onMetadataRequested(@NonNull List<InstalledPackageModel> modelList);
     }
 }
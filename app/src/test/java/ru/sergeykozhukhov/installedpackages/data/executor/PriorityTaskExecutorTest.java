@@ -0,0 +1,101 @@
+package ru.sergeykozhukhov.installedpackages.data.executor;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Тестирование класса "PriorityTaskExecutor" уровня "data".
+ */
+public class PriorityTaskExecutorTest {
+
+    private static final long TIMEOUT_SECONDS = 5;
+
+    /**
+     * Тестирование порядка выполнения ожидающих задач: сначала VISIBLE, затем BACKGROUND в порядке добавления.
+     */
+    @Test
+    public void testPriorityOrder() throws InterruptedException {
+        PriorityTaskExecutor taskExecutor = createTaskExecutor();
+        final List<String> executed = Collections.synchronizedList(new ArrayList<String>());
+        final CountDownLatch blocker = new CountDownLatch(1);
+        final CountDownLatch finished = new CountDownLatch(3);
+
+        // единственный поток занят, пока остальные задачи ожидают в очереди
+        taskExecutor.executeInBackground(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    blocker.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, TaskExecutor.Priority.VISIBLE);
+        taskExecutor.executeInBackground(createTask("a", executed, finished), TaskExecutor.Priority.BACKGROUND);
+        taskExecutor.executeInBackground(createTask("b", executed, finished), TaskExecutor.Priority.VISIBLE);
+        taskExecutor.executeInBackground(createTask("c", executed, finished), TaskExecutor.Priority.BACKGROUND);
+        blocker.countDown();
+
+        assertTrue(finished.await(TIMEOUT_SECONDS, TimeUnit.SECONDS));
+        assertEquals(Arrays.asList("b", "a", "c"), executed);
+    }
+
+    /**
+     * Тестирование передачи задачи исполнителю главного потока.
+     */
+    @Test
+    public void testExecuteOnMainThread() {
+        final List<String> executed = new ArrayList<>();
+        new PriorityTaskExecutor(1, new Executor() {
+            @Override
+            public void execute(@NonNull Runnable runnable) {
+                executed.add("main");
+                runnable.run();
+            }
+        }).executeOnMainThread(createTask("task", executed, new CountDownLatch(1)));
+
+        assertEquals(Arrays.asList("main", "task"), executed);
+    }
+
+    @NonNull
+    private static PriorityTaskExecutor createTaskExecutor() {
+        return new PriorityTaskExecutor(1, new SynchronousExecutor()) {
+            @Override
+            void applyThreadPriority(@NonNull Priority priority) {
+                // приоритет потока Linux в тестах не меняется
+            }
+        };
+    }
+
+    @NonNull
+    private static Runnable createTask(@NonNull final String name, @NonNull final List<String> executed,
+                                       @NonNull final CountDownLatch finished) {
+        return new Runnable() {
+            @Override
+            public void run() {
+                executed.add(name);
+                finished.countDown();
+            }
+        };
+    }
+
+    private static class SynchronousExecutor implements Executor {
+
+        @Override
+        public void execute(@NonNull Runnable runnable) {
+            runnable.run();
+        }
+    }
+}
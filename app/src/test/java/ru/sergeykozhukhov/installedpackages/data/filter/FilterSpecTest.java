@@ -0,0 +1,124 @@
+package ru.sergeykozhukhov.installedpackages.data.filter;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackageModel;
+import ru.sergeykozhukhov.installedpackages.data.model.MetadataColumn;
+import ru.sergeykozhukhov.installedpackages.data.model.PackageMetadataModel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Тестирование класса "FilterSpec" уровня "data".
+ */
+public class FilterSpecTest {
+
+    private static final String PLAY_STORE = "com.android.vending";
+
+    private static final InstalledPackageModel USER_APP = createModel("com.example.user",
+            false, true, false, 10L);
+    private static final InstalledPackageModel SIDELOADED_APP = createModel("com.example.sideloaded",
+            false, true, false, InstalledPackageModel.APP_SIZE_UNKNOWN);
+    private static final InstalledPackageModel SYSTEM_APP = createModel("com.android.system",
+            true, true, false, 100L);
+    private static final InstalledPackageModel UPDATED_SYSTEM_APP = createModel("com.android.updated",
+            true, true, true, 1000L);
+    private static final InstalledPackageModel DISABLED_SYSTEM_APP = createModel("com.android.disabled",
+            true, false, false, 50L);
+
+    private static final List<InstalledPackageModel> MODELS = Arrays.asList(
+            USER_APP, SIDELOADED_APP, SYSTEM_APP, UPDATED_SYSTEM_APP, DISABLED_SYSTEM_APP);
+
+    /**
+     * Тестирование фильтра без условий: список возвращается без копирования.
+     */
+    @Test
+    public void testApply_all() {
+        assertTrue(FilterSpec.ALL.isAll());
+        assertSame(MODELS, FilterSpec.ALL.apply(MODELS));
+    }
+
+    /**
+     * Тестирование условий по признакам приложения.
+     */
+    @Test
+    public void testApply_flags() {
+        assertEquals(Arrays.asList(USER_APP, SIDELOADED_APP),
+                FilterSpec.ALL.withSystemApps(false).apply(MODELS));
+        assertEquals(Arrays.asList(SYSTEM_APP, UPDATED_SYSTEM_APP, DISABLED_SYSTEM_APP),
+                FilterSpec.ALL.withUserApps(false).apply(MODELS));
+        assertEquals(Collections.singletonList(UPDATED_SYSTEM_APP),
+                FilterSpec.ALL.withOnlyUpdatedSystemApps(true).apply(MODELS));
+        assertEquals(Collections.singletonList(DISABLED_SYSTEM_APP),
+                FilterSpec.ALL.withOnlyDisabledApps(true).apply(MODELS));
+
+        // снятие условия возвращает фильтр без условий
+        assertTrue(FilterSpec.ALL.withSystemApps(false).withSystemApps(true).isAll());
+    }
+
+    /**
+     * Тестирование условия по установщику: установщик берется из дополнительных данных текущей версии пакета,
+     * приложения без них условие не проходят.
+     */
+    @Test
+    public void testApply_installer() {
+        Map<String, PackageMetadataModel> metadata = new HashMap<>();
+        metadata.put(USER_APP.getAppPackageName(), createInstallerMetadata(USER_APP, PLAY_STORE));
+        metadata.put(SIDELOADED_APP.getAppPackageName(), createInstallerMetadata(SIDELOADED_APP, null));
+        metadata.put(SYSTEM_APP.getAppPackageName(), createInstallerMetadata(SYSTEM_APP, null));
+        // данные прежней версии пакета
+        metadata.put(UPDATED_SYSTEM_APP.getAppPackageName(), new PackageMetadataModel(
+                UPDATED_SYSTEM_APP.getAppPackageName(), 0L, EnumSet.of(MetadataColumn.INSTALLER),
+                null, 0, 0, 0, 0, PLAY_STORE));
+
+        FilterSpec playStoreFilter = FilterSpec.ALL.withInstaller(PLAY_STORE);
+        assertEquals(EnumSet.of(MetadataColumn.INSTALLER), playStoreFilter.getMetadataColumns());
+        assertTrue(FilterSpec.ALL.withSystemApps(false).getMetadataColumns().isEmpty());
+        assertEquals(Collections.singletonList(USER_APP), playStoreFilter.apply(MODELS, metadata));
+        assertTrue(playStoreFilter.apply(MODELS).isEmpty());
+        assertEquals(Collections.singletonList(SIDELOADED_APP),
+                FilterSpec.ALL.withInstaller(FilterSpec.INSTALLER_UNKNOWN).withSystemApps(false).apply(MODELS, metadata));
+    }
+
+    /**
+     * Тестирование условия по размеру.
+     */
+    @Test
+    public void testApply_size() {
+        // неизмеренные приложения не проходят условие по размеру
+        FilterSpec sizeFilter = FilterSpec.ALL.withAppSizeRange(10L, 100L);
+        assertEquals(Arrays.asList(USER_APP, SYSTEM_APP, DISABLED_SYSTEM_APP), sizeFilter.apply(MODELS));
+        assertFalse(sizeFilter.matches(SIDELOADED_APP, null));
+        assertTrue(sizeFilter.withoutAppSizeRange().isAll());
+    }
+
+    /**
+     * Тестирование неверного диапазона размера.
+     */
+    @Test(expected = IllegalArgumentException.class)
+    public void testWithAppSizeRange_invalid() {
+        FilterSpec.ALL.withAppSizeRange(100L, 10L);
+    }
+
+    private static InstalledPackageModel createModel(String packageName, boolean isAppSystem, boolean isAppEnabled,
+                                                     boolean isUpdatedSystemApp, long appSize) {
+        return new InstalledPackageModel(packageName, packageName, packageName, isAppSystem, isAppEnabled,
+                isUpdatedSystemApp, 1L, appSize);
+    }
+
+    private static PackageMetadataModel createInstallerMetadata(InstalledPackageModel model,
+                                                                String installerPackageName) {
+        return new PackageMetadataModel(model.getAppPackageName(), model.getLastUpdateTime(),
+                EnumSet.of(MetadataColumn.INSTALLER), null, 0, 0, 0, 0, installerPackageName);
+    }
+}
@@ -0,0 +1,78 @@
+package ru.sergeykozhukhov.installedpackages.data.metrics;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Тестирование классов "RecordingMetrics" и "MetricsSnapshot" уровня "data".
+ */
+public class RecordingMetricsTest {
+
+    /**
+     * Тестирование гистограммы этапа: количество, сумма, максимум и оценка процентилей.
+     */
+    @Test
+    public void testRecord() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 9; i++) {
+            histogram.record(1500); // 1.5 мкс - интервал до 2 мкс
+        }
+        histogram.record(3000000); // 3 мс
+
+        MetricsSnapshot.StageStats stageStats = histogram.snapshot();
+        assertEquals(10, stageStats.getCount());
+        assertEquals(9 * 1500 + 3000000, stageStats.getTotalNanos());
+        assertEquals(3000000, stageStats.getMaxNanos());
+        assertEquals(2000, stageStats.getPercentileNanos(50));
+        assertEquals(2000, stageStats.getPercentileNanos(90));
+        assertEquals(3000000, stageStats.getPercentileNanos(99));
+    }
+
+    /**
+     * Тестирование счетчиков, снимка и сброса.
+     */
+    @Test
+    public void testSnapshot() throws IOException {
+        RecordingMetrics metrics = new RecordingMetrics();
+        metrics.increment(Metrics.Counter.BINDER_CALLS);
+        metrics.increment(Metrics.Counter.BINDER_CALLS);
+        long elapsed = metrics.stopTimer(Metrics.Stage.SORT, metrics.startTimer());
+
+        MetricsSnapshot snapshot = metrics.getSnapshot();
+        assertEquals(2, snapshot.getCounter(Metrics.Counter.BINDER_CALLS));
+        assertEquals(0, snapshot.getCounter(Metrics.Counter.SLOW_PACKAGES));
+        assertEquals(1, snapshot.getStageStats(Metrics.Stage.SORT).getCount());
+        assertEquals(elapsed, snapshot.getStageStats(Metrics.Stage.SORT).getTotalNanos());
+        assertEquals(0, snapshot.getStageStats(Metrics.Stage.LOAD).getCount());
+
+        StringWriter writer = new StringWriter();
+        snapshot.writeTo(writer);
+        assertTrue(writer.toString().contains("SORT: count=1"));
+        assertTrue(writer.toString().contains("BINDER_CALLS: 2"));
+        assertFalse(writer.toString().contains("LOAD:"));
+
+        metrics.reset();
+        assertEquals(0, metrics.getSnapshot().getCounter(Metrics.Counter.BINDER_CALLS));
+        assertEquals(0, metrics.getSnapshot().getStageStats(Metrics.Stage.SORT).getCount());
+    }
+
+    /**
+     * Тестирование выключенных метрик: ничего не замеряется.
+     */
+    @Test
+    public void testDisabled() {
+        long startTime = Metrics.DISABLED.startTimer();
+        Metrics.DISABLED.increment(Metrics.Counter.BINDER_CALLS);
+
+        assertFalse(Metrics.DISABLED.isEnabled());
+        assertEquals(0, startTime);
+        assertEquals(0, Metrics.DISABLED.stopTimer(Metrics.Stage.SORT, startTime));
+        assertEquals(0, Metrics.DISABLED.getSnapshot().getCounter(Metrics.Counter.BINDER_CALLS));
+    }
+}
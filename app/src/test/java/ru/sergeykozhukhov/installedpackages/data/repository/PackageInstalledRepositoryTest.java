@@ -0,0 +1,393 @@
+package ru.sergeykozhukhov.installedpackages.data.repository;
+
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.mockito.stubbing.Answer;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import ru.sergeykozhukhov.installedpackages.data.cache.IconLoader;
+import ru.sergeykozhukhov.installedpackages.data.executor.SynchronousTaskExecutor;
+import ru.sergeykozhukhov.installedpackages.data.metrics.Metrics;
+import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackageChangeModel;
+import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackageModel;
+import ru.sergeykozhukhov.installedpackages.data.model.ScanMode;
+import ru.sergeykozhukhov.installedpackages.data.model.SortOption;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Тестирование загрузки класса "PackageInstalledRepository" уровня "data" с синхронным исполнителем задач:
+ * задачи выполняются сразу в вызывающем потоке, поэтому порядок загрузок и их отмены детерминирован.
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class PackageInstalledRepositoryTest {
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Mock
+    private Context mContext;
+    @Mock
+    private PackageManager mPackageManager;
+    @Mock
+    private IconLoader mIconLoader;
+    @Mock
+    private AppSizeEngine mAppSizeEngine;
+    @Mock
+    private PackageChangeTracker mChangeTracker;
+
+    private MainThreadTaskExecutor mTaskExecutor;
+    private PackageInstalledRepository mRepository;
+    private List<PackageInfo> mInstalledPackages;
+
+    @Before
+    public void setUp() throws Exception {
+        when(mContext.getPackageManager()).thenReturn(mPackageManager);
+        when(mContext.getCacheDir()).thenReturn(mTemporaryFolder.getRoot());
+        when(mPackageManager.getApplicationLabel(any(ApplicationInfo.class))).thenAnswer(new Answer<CharSequence>() {
+            @Override
+            public CharSequence answer(InvocationOnMock invocation) {
+                return "App " + ((ApplicationInfo) invocation.getArguments()[0]).packageName;
+            }
+        });
+
+        mInstalledPackages = Arrays.asList(createPackageInfo("ru.sberbankmobile"), createPackageInfo("ru.package.app"));
+        mTaskExecutor = new MainThreadTaskExecutor();
+        mRepository = createRepository();
+    }
+
+    /**
+     * Тестирование передачи хода загрузки и результата слушателям в главном потоке и сохранения снимка.
+     */
+    @Test
+    public void testLoadDataAsync_deliversOnMainThread() {
+        when(mPackageManager.getInstalledPackages(anyInt())).thenReturn(mInstalledPackages);
+        RecordingListener listener = new RecordingListener();
+
+        mRepository.loadDataAsync(true, null, listener, listener);
+
+        assertEquals(Arrays.asList(50, 100), listener.mProgress);
+        assertEquals(1, listener.mFinishCount);
+        assertFalse(listener.mIsCalledOffMainThread);
+        assertEquals(new HashSet<>(Arrays.asList("ru.sberbankmobile", "ru.package.app")), listener.mPackageNames);
+        assertNotNull(mRepository.getSnapshot(true));
+    }
+
+    /**
+     * Тестирование повторного запроса во время загрузки: запрос присоединяется к идущей загрузке,
+     * результат получает только новый слушатель, PackageManager запрашивается один раз.
+     */
+    @Test
+    public void testLoadDataAsync_joinsRunningLoading() {
+        final RecordingListener firstListener = new RecordingListener();
+        final RecordingListener secondListener = new RecordingListener();
+        when(mPackageManager.getInstalledPackages(anyInt())).thenAnswer(new Answer<List<PackageInfo>>() {
+            @Override
+            public List<PackageInfo> answer(InvocationOnMock invocation) {
+                mRepository.loadDataAsync(true, null, secondListener, secondListener);
+                return mInstalledPackages;
+            }
+        });
+
+        mRepository.loadDataAsync(true, null, firstListener, firstListener);
+
+        assertEquals(0, firstListener.mFinishCount);
+        assertEquals(1, secondListener.mFinishCount);
+        assertEquals(2, secondListener.mPackageNames.size());
+        verify(mPackageManager, times(1)).getInstalledPackages(anyInt());
+    }
+
+    /**
+     * Тестирование запроса с другими параметрами во время загрузки: идущая загрузка отменяется,
+     * ее слушатель не вызывается.
+     */
+    @Test
+    public void testLoadDataAsync_cancelsLoadingWithOtherParameters() {
+        final RecordingListener firstListener = new RecordingListener();
+        final RecordingListener secondListener = new RecordingListener();
+        when(mPackageManager.getInstalledPackages(anyInt())).thenAnswer(new Answer<List<PackageInfo>>() {
+            private boolean mIsFirstCall = true;
+
+            @Override
+            public List<PackageInfo> answer(InvocationOnMock invocation) {
+                if (mIsFirstCall) {
+                    mIsFirstCall = false;
+                    mRepository.loadDataAsync(false, null, secondListener, secondListener);
+                }
+                return mInstalledPackages;
+            }
+        });
+
+        mRepository.loadDataAsync(true, null, firstListener, firstListener);
+
+        assertEquals(0, firstListener.mFinishCount);
+        assertTrue(firstListener.mProgress.isEmpty());
+        assertEquals(1, secondListener.mFinishCount);
+        verify(mPackageManager, times(2)).getInstalledPackages(anyInt());
+    }
+
+    /**
+     * Тестирование порядка загрузки с сортировкой: порции передаются в порядке отображения,
+     * а результат - в порядке PackageManager, в котором список отображается без сортировки.
+     */
+    @Test
+    public void testLoadDataStreaming_displayOrder() {
+        when(mPackageManager.getInstalledPackages(anyInt())).thenReturn(mInstalledPackages);
+        RecordingListener listener = new RecordingListener();
+
+        mRepository.loadDataStreaming(true, SortOption.BY_APP_PACKAGE_NAME, listener, listener);
+
+        assertEquals(Arrays.asList("ru.package.app", "ru.sberbankmobile"), listener.mBatchPackageNames);
+        assertEquals(Arrays.asList("ru.sberbankmobile", "ru.package.app"), listener.mResultPackageNames);
+    }
+
+    /**
+     * Тестирование запроса с другой сортировкой во время загрузки: порции идут в порядке сортировки,
+     * поэтому запрос не присоединяется к идущей загрузке, а запускает новую.
+     */
+    @Test
+    public void testLoadDataStreaming_otherSortOptionRestartsLoading() {
+        final RecordingListener firstListener = new RecordingListener();
+        final RecordingListener secondListener = new RecordingListener();
+        when(mPackageManager.getInstalledPackages(anyInt())).thenAnswer(new Answer<List<PackageInfo>>() {
+            private boolean mIsFirstCall = true;
+
+            @Override
+            public List<PackageInfo> answer(InvocationOnMock invocation) {
+                if (mIsFirstCall) {
+                    mIsFirstCall = false;
+                    mRepository.loadDataStreaming(true, SortOption.BY_APP_PACKAGE_NAME, secondListener, secondListener);
+                }
+                return mInstalledPackages;
+            }
+        });
+
+        mRepository.loadDataStreaming(true, null, firstListener, firstListener);
+
+        assertEquals(0, firstListener.mFinishCount);
+        assertEquals(1, secondListener.mFinishCount);
+        assertEquals(Arrays.asList("ru.package.app", "ru.sberbankmobile"), secondListener.mBatchPackageNames);
+        verify(mPackageManager, times(2)).getInstalledPackages(anyInt());
+    }
+
+    /**
+     * Тестирование отмены загрузки: слушатели не вызываются, незавершенная загрузка не заменяет снимок.
+     */
+    @Test
+    public void testCancelLoading() {
+        when(mPackageManager.getInstalledPackages(anyInt())).thenAnswer(new Answer<List<PackageInfo>>() {
+            @Override
+            public List<PackageInfo> answer(InvocationOnMock invocation) {
+                mRepository.cancelLoading();
+                return mInstalledPackages;
+            }
+        });
+        RecordingListener listener = new RecordingListener();
+
+        mRepository.loadDataAsync(true, null, listener, listener);
+
+        assertEquals(0, listener.mFinishCount);
+        assertTrue(listener.mProgress.isEmpty());
+        assertNull(mRepository.getSnapshot(true));
+    }
+
+    /**
+     * Тестирование чтения снимка после перезапуска: снимок читается с диска в фоновом потоке
+     * и передается в главном потоке, снимок, сохраненный в другой локали, отбрасывается.
+     */
+    @Test
+    public void testLoadSnapshotAsync() {
+        when(mPackageManager.getInstalledPackages(anyInt())).thenReturn(mInstalledPackages);
+        RecordingListener loadingListener = new RecordingListener();
+        mRepository.loadDataAsync(true, null, loadingListener, loadingListener);
+
+        RecordingListener listener = new RecordingListener();
+        createRepository().loadSnapshotAsync(true, listener);
+        assertFalse(listener.mIsCalledOffMainThread);
+        assertNotNull(listener.mSnapshot);
+        assertEquals(2, listener.mSnapshot.size());
+
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.GERMAN.equals(locale) ? Locale.FRENCH : Locale.GERMAN);
+        try {
+            createRepository().loadSnapshotAsync(true, listener);
+            assertNull(listener.mSnapshot);
+        } finally {
+            Locale.setDefault(locale);
+        }
+    }
+
+    /**
+     * Тестирование смены локали во время работы: снимок сбрасывается и загружается заново,
+     * а слушатель изменений получает приложения с новыми названиями.
+     */
+    @Test
+    public void testLoadSnapshotAsync_localeChangeReloads() throws Exception {
+        when(mPackageManager.getInstalledPackages(anyInt())).thenReturn(mInstalledPackages);
+        RecordingListener loadingListener = new RecordingListener();
+        mRepository.loadDataAsync(true, null, loadingListener, loadingListener);
+
+        final List<InstalledPackageChangeModel> changes = new ArrayList<>();
+        final CountDownLatch changesLatch = new CountDownLatch(1);
+        mRepository.startTrackingChanges(new PackageInstalledRepository.OnPackagesChangedListener() {
+            @Override
+            public void onPackagesChanged(@NonNull List<InstalledPackageChangeModel> packageChanges) {
+                changes.addAll(packageChanges);
+                changesLatch.countDown();
+            }
+        });
+        when(mPackageManager.getApplicationLabel(any(ApplicationInfo.class))).thenAnswer(new Answer<CharSequence>() {
+            @Override
+            public CharSequence answer(InvocationOnMock invocation) {
+                return "App " + ((ApplicationInfo) invocation.getArguments()[0]).packageName + " (de)";
+            }
+        });
+
+        Locale locale = Locale.getDefault();
+        Locale.setDefault(Locale.GERMAN.equals(locale) ? Locale.FRENCH : Locale.GERMAN);
+        try {
+            RecordingListener listener = new RecordingListener();
+            mRepository.loadSnapshotAsync(true, listener);
+            assertNull(listener.mSnapshot);
+
+            assertTrue(changesLatch.await(5, TimeUnit.SECONDS));
+            mRepository.loadSnapshotAsync(true, listener);
+            assertNotNull(listener.mSnapshot);
+            assertEquals(2, listener.mSnapshot.size());
+        } finally {
+            Locale.setDefault(locale);
+        }
+
+        assertEquals(2, changes.size());
+        for (InstalledPackageChangeModel change : changes) {
+            assertEquals(InstalledPackageChangeModel.Type.UPDATED, change.getType());
+            assertTrue(change.getInstalledPackageModel().getAppName().endsWith(" (de)"));
+        }
+    }
+
+    /**
+     * Создание репозитория, который при первом обращении к снимку читает его с диска.
+     */
+    @NonNull
+    private PackageInstalledRepository createRepository() {
+        PackageInstalledRepository repository = new PackageInstalledRepository(mContext, Metrics.DISABLED, mTaskExecutor,
+                mIconLoader, mAppSizeEngine, mChangeTracker);
+        // список средства запуска запрашивается через Intent, поэтому загружается полный список пакетов
+        repository.setScanMode(ScanMode.FULL_INVENTORY);
+        return repository;
+    }
+
+    @NonNull
+    private static PackageInfo createPackageInfo(@NonNull String packageName) {
+        ApplicationInfo applicationInfo = Mockito.mock(ApplicationInfo.class);
+        applicationInfo.packageName = packageName;
+        applicationInfo.enabled = true;
+
+        PackageInfo packageInfo = Mockito.mock(PackageInfo.class);
+        packageInfo.packageName = packageName;
+        packageInfo.applicationInfo = applicationInfo;
+        return packageInfo;
+    }
+
+    /**
+     * Синхронный исполнитель, отмечающий выполнение задач главного потока.
+     * Задачи главного потока могут выполняться в потоках загрузчика пакетов, поэтому отметка хранится для каждого потока.
+     */
+    private static class MainThreadTaskExecutor extends SynchronousTaskExecutor {
+
+        private final ThreadLocal<Boolean> mIsMainThread = new ThreadLocal<>();
+
+        @Override
+        public void executeOnMainThread(@NonNull Runnable task) {
+            Boolean wasMainThread = mIsMainThread.get();
+            mIsMainThread.set(true);
+            try {
+                super.executeOnMainThread(task);
+            } finally {
+                mIsMainThread.set(wasMainThread);
+            }
+        }
+
+        boolean isMainThread() {
+            return Boolean.TRUE.equals(mIsMainThread.get());
+        }
+    }
+
+    /**
+     * Слушатель, запоминающий ход загрузки, порции, результат и снимок и проверяющий, что он вызывается в главном потоке.
+     */
+    private class RecordingListener implements PackageInstalledRepository.OnProgressUpdateListener,
+            PackageInstalledRepository.OnBatchLoadedListener, PackageInstalledRepository.OnLoadingFinishListener,
+            PackageInstalledRepository.OnSnapshotLoadedListener {
+
+        private final List<Integer> mProgress = new ArrayList<>();
+        private final List<String> mBatchPackageNames = new ArrayList<>();
+        private final List<String> mResultPackageNames = new ArrayList<>();
+        private final Set<String> mPackageNames = new HashSet<>();
+        private int mFinishCount;
+        private List<InstalledPackageModel> mSnapshot;
+        // проверка выполняется в потоке теста, так как слушатель может вызываться в потоках загрузчика
+        private volatile boolean mIsCalledOffMainThread;
+
+        @Override
+        public void onUpdate(int progress) {
+            mIsCalledOffMainThread |= !mTaskExecutor.isMainThread();
+            mProgress.add(progress);
+        }
+
+        @Override
+        public void onBatchLoaded(@NonNull List<InstalledPackageModel> packageModels) {
+            mIsCalledOffMainThread |= !mTaskExecutor.isMainThread();
+            for (InstalledPackageModel model : packageModels) {
+                mBatchPackageNames.add(model.getAppPackageName());
+            }
+        }
+
+        @Override
+        public void onFinish(List<InstalledPackageModel> packageModels) {
+            mIsCalledOffMainThread |= !mTaskExecutor.isMainThread();
+            mFinishCount++;
+            for (InstalledPackageModel model : packageModels) {
+                mPackageNames.add(model.getAppPackageName());
+                mResultPackageNames.add(model.getAppPackageName());
+            }
+        }
+
+        @Override
+        public void onSnapshotLoaded(List<InstalledPackageModel> packageModels) {
+            mIsCalledOffMainThread |= !mTaskExecutor.isMainThread();
+            mSnapshot = packageModels;
+        }
+    }
+}
@@ -0,0 +1,220 @@
+package ru.sergeykozhukhov.installedpackages.data.repository;
+
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+import android.os.TransactionTooLargeException;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import ru.sergeykozhukhov.installedpackages.data.metrics.Metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Тестирование класса "PackageInventoryScanner" уровня "data".
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class PackageInventoryScannerTest {
+
+    private static final int SYSTEM_UID = 1000;
+    private static final int SHARED_UID = 10010;
+    private static final int APP_UID = 10020;
+
+    @Mock
+    private PackageManager mPackageManager;
+
+    private PackageInventoryScanner mScanner;
+    private TestKnownPackages mKnownPackages;
+
+    @Before
+    public void setUp() {
+        mScanner = new PackageInventoryScanner(mPackageManager, Metrics.DISABLED);
+        mKnownPackages = new TestKnownPackages();
+    }
+
+    /**
+     * Тестирование получения пакетов одним запросом: повторяющиеся и системные пакеты отбрасываются,
+     * известные пакеты не запрашиваются.
+     */
+    @Test
+    public void testScan() {
+        when(mPackageManager.getInstalledPackages(anyInt())).thenReturn(Arrays.asList(
+                createPackageInfo("ru.package.app", false), createPackageInfo("android", true),
+                createPackageInfo("ru.sberbankmobile", false), createPackageInfo("ru.package.app", false)));
+
+        assertEquals(Arrays.asList("ru.package.app", "ru.sberbankmobile"),
+                getPackageNames(mScanner.scan(false, mKnownPackages, null)));
+        assertEquals(Arrays.asList("ru.package.app", "android", "ru.sberbankmobile"),
+                getPackageNames(mScanner.scan(true, mKnownPackages, null)));
+        verify(mPackageManager, never()).getInstalledApplications(anyInt());
+        assertEquals(0, mKnownPackages.mRequestCount);
+    }
+
+    /**
+     * Тестирование повторного запроса без обертки PackageInfo, если ответ превышает размер транзакции binder.
+     */
+    @Test
+    public void testScan_installedApplications() {
+        when(mPackageManager.getInstalledPackages(anyInt()))
+                .thenThrow(new RuntimeException("Package manager has died", new TransactionTooLargeException()));
+        when(mPackageManager.getInstalledApplications(anyInt())).thenReturn(Arrays.asList(
+                createApplicationInfo("ru.package.app", false, APP_UID), createApplicationInfo("android", true, SYSTEM_UID),
+                createApplicationInfo("ru.package.app", false, APP_UID)));
+
+        assertEquals(Collections.singletonList("ru.package.app"),
+                getPackageNames(mScanner.scan(false, mKnownPackages, null)));
+        verify(mPackageManager, never()).getPackagesForUid(anyInt());
+        assertEquals(0, mKnownPackages.mRequestCount);
+    }
+
+    /**
+     * Тестирование получения известных пакетов, если и список приложений превышает размер транзакции:
+     * запрашиваются только пакеты снимка и идентификаторы пользователя известных пакетов,
+     * удаленные пакеты снимка отбрасываются.
+     */
+    @Test
+    public void testScan_knownPackages() throws Exception {
+        RuntimeException failure = new RuntimeException(new TransactionTooLargeException());
+        when(mPackageManager.getInstalledPackages(anyInt())).thenThrow(failure);
+        when(mPackageManager.getInstalledApplications(anyInt())).thenThrow(failure);
+        mKnownPackages.mLauncherPackages = Arrays.asList(
+                createApplicationInfo("ru.package.app", false, SHARED_UID),
+                createApplicationInfo("com.android.settings", true, SYSTEM_UID));
+        mKnownPackages.mSnapshotPackageNames = Arrays.asList("ru.package.app", "ru.sberbankmobile", "ru.removed.app");
+        when(mPackageManager.getPackagesForUid(SHARED_UID))
+                .thenReturn(new String[]{"ru.package.app", "ru.package.app.plugin"});
+        when(mPackageManager.getPackagesForUid(SYSTEM_UID)).thenReturn(new String[]{"android", "com.android.settings"});
+        mockApplicationInfo("ru.sberbankmobile", false, APP_UID);
+        mockApplicationInfo("ru.package.app.plugin", false, SHARED_UID);
+        mockApplicationInfo("android", true, SYSTEM_UID);
+        when(mPackageManager.getApplicationInfo(eq("ru.removed.app"), anyInt()))
+                .thenThrow(new PackageManager.NameNotFoundException());
+
+        assertEquals(Arrays.asList("ru.package.app", "com.android.settings", "ru.sberbankmobile",
+                "ru.package.app.plugin", "android"), getPackageNames(mScanner.scan(true, mKnownPackages, null)));
+        verify(mPackageManager, times(3)).getPackagesForUid(anyInt());
+        verify(mPackageManager, never()).getApplicationInfo(eq("ru.package.app"), anyInt());
+    }
+
+    /**
+     * Тестирование получения известных пакетов без системных: идентификаторы системных пакетов не запрашиваются.
+     */
+    @Test
+    public void testScan_knownPackagesWithoutSystem() throws Exception {
+        RuntimeException failure = new RuntimeException(new TransactionTooLargeException());
+        when(mPackageManager.getInstalledPackages(anyInt())).thenThrow(failure);
+        when(mPackageManager.getInstalledApplications(anyInt())).thenThrow(failure);
+        // источник передает приложения средства запуска уже без системных
+        mKnownPackages.mLauncherPackages = Collections.singletonList(
+                createApplicationInfo("ru.package.app", false, APP_UID));
+        mKnownPackages.mSnapshotPackageNames = Collections.singletonList("android");
+        mockApplicationInfo("android", true, SYSTEM_UID);
+
+        assertEquals(Collections.singletonList("ru.package.app"),
+                getPackageNames(mScanner.scan(false, mKnownPackages, null)));
+        verify(mPackageManager, never()).getPackagesForUid(SYSTEM_UID);
+    }
+
+    /**
+     * Тестирование отмены получения известных пакетов.
+     */
+    @Test
+    public void testScan_knownPackagesCancelled() {
+        RuntimeException failure = new RuntimeException(new TransactionTooLargeException());
+        when(mPackageManager.getInstalledPackages(anyInt())).thenThrow(failure);
+        when(mPackageManager.getInstalledApplications(anyInt())).thenThrow(failure);
+        mKnownPackages.mLauncherPackages = Collections.singletonList(
+                createApplicationInfo("ru.package.app", false, APP_UID));
+        CancellationToken cancellationToken = new CancellationToken();
+        cancellationToken.cancel();
+
+        assertTrue(mScanner.scan(true, mKnownPackages, cancellationToken).isEmpty());
+        verify(mPackageManager, never()).getPackagesForUid(anyInt());
+    }
+
+    /**
+     * Тестирование прочих ошибок PackageManager: меньший ответ их не исправит, поэтому они передаются дальше.
+     */
+    @Test(expected = IllegalStateException.class)
+    public void testScan_otherFailure() {
+        when(mPackageManager.getInstalledPackages(anyInt())).thenThrow(new IllegalStateException());
+
+        mScanner.scan(true, mKnownPackages, null);
+    }
+
+    private void mockApplicationInfo(@NonNull String packageName, boolean isSystem, int uid) throws Exception {
+        ApplicationInfo applicationInfo = createApplicationInfo(packageName, isSystem, uid);
+        when(mPackageManager.getApplicationInfo(eq(packageName), anyInt())).thenReturn(applicationInfo);
+    }
+
+    @NonNull
+    private static PackageInfo createPackageInfo(@NonNull String packageName, boolean isSystem) {
+        PackageInfo packageInfo = Mockito.mock(PackageInfo.class);
+        packageInfo.packageName = packageName;
+        packageInfo.applicationInfo = createApplicationInfo(packageName, isSystem, 0);
+        return packageInfo;
+    }
+
+    @NonNull
+    private static ApplicationInfo createApplicationInfo(@NonNull String packageName, boolean isSystem, int uid) {
+        ApplicationInfo applicationInfo = Mockito.mock(ApplicationInfo.class);
+        applicationInfo.packageName = packageName;
+        applicationInfo.uid = uid;
+        applicationInfo.flags = isSystem ? ApplicationInfo.FLAG_SYSTEM : 0;
+        return applicationInfo;
+    }
+
+    @NonNull
+    private static List<String> getPackageNames(@NonNull List<ApplicationInfo> applicationInfoList) {
+        List<String> packageNames = new ArrayList<>(applicationInfoList.size());
+        for (ApplicationInfo applicationInfo : applicationInfoList) {
+            packageNames.add(applicationInfo.packageName);
+        }
+        return packageNames;
+    }
+
+    /**
+     * Источник известных пакетов, запоминающий количество обращений к нему.
+     */
+    private static class TestKnownPackages implements PackageInventoryScanner.KnownPackages {
+
+        private List<ApplicationInfo> mLauncherPackages = Collections.emptyList();
+        private List<String> mSnapshotPackageNames = Collections.emptyList();
+        private int mRequestCount;
+
+        @NonNull
+        @Override
+        public List<ApplicationInfo> getLauncherPackages() {
+            mRequestCount++;
+            return mLauncherPackages;
+        }
+
+        @NonNull
+        @Override
+        public Collection<String> getSnapshotPackageNames() {
+            mRequestCount++;
+            return mSnapshotPackageNames;
+        }
+    }
+}
@@ -0,0 +1,250 @@
+package ru.sergeykozhukhov.installedpackages.data.repository;
+
+import android.content.pm.ApplicationInfo;
+import android.content.pm.PackageInfo;
+import android.content.pm.PackageManager;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentMatcher;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import ru.sergeykozhukhov.installedpackages.data.metrics.Metrics;
+import ru.sergeykozhukhov.installedpackages.data.model.MetadataColumn;
+import ru.sergeykozhukhov.installedpackages.data.model.PackageMetadataModel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * Тестирование класса "PackageMetadataEngine" уровня "data".
+ */
+@RunWith(MockitoJUnitRunner.class)
+public class PackageMetadataEngineTest {
+
+    private static final Set<MetadataColumn> BASIC_COLUMNS = EnumSet.of(MetadataColumn.VERSION, MetadataColumn.TARGET_SDK);
+    private static final Set<MetadataColumn> ALL_COLUMNS = EnumSet.allOf(MetadataColumn.class);
+    // столбцы, которые приходят в PackageInfo, без установщика
+    private static final Set<MetadataColumn> PACKAGE_INFO_COLUMNS = EnumSet.complementOf(EnumSet.of(MetadataColumn.INSTALLER));
+
+    // версии пакетов - время изменения apk файлов, кратное секунде для любой файловой системы
+    private static final long VERSION = 1500000000000L;
+    private static final long NEW_VERSION = 1600000000000L;
+
+    @Rule
+    public TemporaryFolder mTemporaryFolder = new TemporaryFolder();
+
+    @Mock
+    private PackageManager mPackageManager;
+
+    private PackageMetadataEngine mEngine;
+
+    @Before
+    public void setUp() {
+        mEngine = new PackageMetadataEngine(mPackageManager, Metrics.DISABLED);
+    }
+
+    /**
+     * Тестирование кэша по версии пакета: повторный запрос той же версии не обращается к PackageManager,
+     * запрос после обновления пакета загружает данные заново.
+     */
+    @Test
+    public void testLoad_cachedByVersion() throws Exception {
+        PackageInfo packageInfo = createPackageInfo("ru.package.app", VERSION);
+        when(mPackageManager.getPackageInfo(eq("ru.package.app"), anyInt())).thenReturn(packageInfo);
+
+        Map<String, PackageMetadataModel> metadata = mEngine.load(versions("ru.package.app", VERSION), BASIC_COLUMNS);
+        assertEquals("1.0", metadata.get("ru.package.app").getVersionName());
+        assertEquals(VERSION, metadata.get("ru.package.app").getLastUpdateTime());
+
+        assertEquals(metadata, mEngine.load(versions("ru.package.app", VERSION), BASIC_COLUMNS));
+        verify(mPackageManager, times(1)).getPackageInfo(eq("ru.package.app"), anyInt());
+
+        // обновление пакета заменяет apk файл
+        setVersion(packageInfo, NEW_VERSION);
+        mEngine.load(versions("ru.package.app", NEW_VERSION), BASIC_COLUMNS);
+        verify(mPackageManager, times(2)).getPackageInfo(eq("ru.package.app"), anyInt());
+        assertNull(mEngine.getCached("ru.package.app", VERSION, BASIC_COLUMNS));
+        assertNotNull(mEngine.getCached("ru.package.app", NEW_VERSION, BASIC_COLUMNS));
+    }
+
+    /**
+     * Тестирование обновления пакета во время запроса: данные кэшируются под версией полученного пакета,
+     * а не под запрошенной версией.
+     */
+    @Test
+    public void testLoad_cachedUnderQueriedVersion() throws Exception {
+        PackageInfo packageInfo = createPackageInfo("ru.package.app", NEW_VERSION);
+        when(mPackageManager.getPackageInfo(eq("ru.package.app"), anyInt())).thenReturn(packageInfo);
+
+        Map<String, PackageMetadataModel> metadata = mEngine.load(versions("ru.package.app", VERSION), BASIC_COLUMNS);
+
+        assertEquals(NEW_VERSION, metadata.get("ru.package.app").getLastUpdateTime());
+        assertNull(mEngine.getCached("ru.package.app", VERSION, BASIC_COLUMNS));
+        assertNotNull(mEngine.getCached("ru.package.app", NEW_VERSION, BASIC_COLUMNS));
+    }
+
+    /**
+     * Тестирование объединения столбцов, загруженных разными запросами для одной версии пакета.
+     */
+    @Test
+    public void testLoad_mergesColumns() throws Exception {
+        PackageInfo packageInfo = createPackageInfo("ru.package.app", VERSION);
+        when(mPackageManager.getPackageInfo(eq("ru.package.app"), anyInt())).thenReturn(packageInfo);
+
+        mEngine.load(versions("ru.package.app", VERSION), BASIC_COLUMNS);
+        verify(mPackageManager, never()).getPackageInfo(anyString(),
+                Mockito.intThat(new HasFlagMatcher(PackageManager.GET_PERMISSIONS)));
+
+        PackageMetadataModel metadata = mEngine.load(versions("ru.package.app", VERSION), ALL_COLUMNS).get("ru.package.app");
+        verify(mPackageManager, times(1)).getPackageInfo(anyString(),
+                Mockito.intThat(new HasFlagMatcher(PackageManager.GET_PERMISSIONS)));
+        assertTrue(metadata.hasColumns(ALL_COLUMNS));
+        assertEquals("1.0", metadata.getVersionName());
+        assertEquals(2, metadata.getRequestedPermissionCount());
+        assertSame(metadata, mEngine.getCached("ru.package.app", VERSION, BASIC_COLUMNS));
+    }
+
+    /**
+     * Тестирование столбца установщика: установщик запрашивается отдельно для каждого пакета
+     * и только при запросе этого столбца.
+     */
+    @Test
+    public void testLoad_installer() throws Exception {
+        PackageInfo packageInfo = createPackageInfo("ru.package.app", VERSION);
+        when(mPackageManager.getPackageInfo(eq("ru.package.app"), anyInt())).thenReturn(packageInfo);
+        when(mPackageManager.getInstallerPackageName("ru.package.app")).thenReturn("com.android.vending");
+
+        mEngine.load(versions("ru.package.app", VERSION), BASIC_COLUMNS);
+        verify(mPackageManager, never()).getInstallerPackageName(anyString());
+
+        Set<MetadataColumn> installerColumns = EnumSet.of(MetadataColumn.INSTALLER);
+        PackageMetadataModel metadata = mEngine.load(versions("ru.package.app", VERSION), installerColumns)
+                .get("ru.package.app");
+        assertEquals("com.android.vending", metadata.getInstallerPackageName());
+        assertTrue(metadata.hasColumns(BASIC_COLUMNS));
+
+        mEngine.load(versions("ru.package.app", VERSION), installerColumns);
+        verify(mPackageManager, times(1)).getInstallerPackageName("ru.package.app");
+    }
+
+    /**
+     * Тестирование {@link PackageMetadataModel#merge(PackageMetadataModel)}: столбцы одной версии объединяются,
+     * данные другой версии заменяют прежние.
+     */
+    @Test
+    public void testMerge() {
+        PackageMetadataModel version = new PackageMetadataModel("ru.package.app", VERSION,
+                EnumSet.of(MetadataColumn.VERSION), "1.0", 1, 0, 0, 0, null);
+        PackageMetadataModel permissions = new PackageMetadataModel("ru.package.app", VERSION,
+                EnumSet.of(MetadataColumn.PERMISSIONS), "ignored", 0, 0, 0, 3, null);
+        PackageMetadataModel updated = new PackageMetadataModel("ru.package.app", NEW_VERSION,
+                EnumSet.of(MetadataColumn.PERMISSIONS), null, 0, 0, 0, 4, null);
+
+        PackageMetadataModel merged = version.merge(permissions);
+        assertEquals("1.0", merged.getVersionName());
+        assertEquals(1, merged.getVersionCode());
+        assertEquals(3, merged.getRequestedPermissionCount());
+        assertFalse(merged.hasColumn(MetadataColumn.TARGET_SDK));
+        assertEquals(PackageMetadataModel.UNKNOWN, merged.getTargetSdkVersion());
+
+        assertSame(updated, merged.merge(updated));
+    }
+
+    /**
+     * Тестирование выбора запроса: несколько пакетов запрашиваются по одному, много пакетов - одним запросом
+     * всех пакетов, данные которых кэшируются целиком.
+     */
+    @Test
+    public void testLoad_batchQuery() throws Exception {
+        List<PackageInfo> installedPackages = new ArrayList<>();
+        Map<String, Long> packageVersions = new HashMap<>();
+        for (int i = 0; i < PackageMetadataEngine.BATCH_QUERY_THRESHOLD + 2; i++) {
+            installedPackages.add(createPackageInfo("ru.package.app" + i, VERSION));
+            if (i < PackageMetadataEngine.BATCH_QUERY_THRESHOLD)
+                packageVersions.put("ru.package.app" + i, VERSION);
+        }
+        when(mPackageManager.getInstalledPackages(anyInt())).thenReturn(installedPackages);
+
+        Map<String, PackageMetadataModel> metadata = mEngine.load(packageVersions, ALL_COLUMNS);
+        assertEquals(packageVersions.keySet(), metadata.keySet());
+
+        // не запрошенные пакеты уже в кэше, кроме установщика
+        Map<String, Long> otherVersions = versions("ru.package.app" + PackageMetadataEngine.BATCH_QUERY_THRESHOLD, VERSION);
+        assertEquals(1, mEngine.load(otherVersions, PACKAGE_INFO_COLUMNS).size());
+
+        verify(mPackageManager, times(1)).getInstalledPackages(anyInt());
+        verify(mPackageManager, never()).getPackageInfo(anyString(), anyInt());
+        // установщик запрошен только для запрошенных пакетов
+        verify(mPackageManager, times(PackageMetadataEngine.BATCH_QUERY_THRESHOLD)).getInstallerPackageName(anyString());
+    }
+
+    @NonNull
+    private PackageInfo createPackageInfo(@NonNull String packageName, long lastUpdateTime) throws IOException {
+        ApplicationInfo applicationInfo = Mockito.mock(ApplicationInfo.class);
+        applicationInfo.sourceDir = mTemporaryFolder.newFile(packageName + ".apk").getPath();
+        applicationInfo.targetSdkVersion = 29;
+
+        PackageInfo packageInfo = Mockito.mock(PackageInfo.class);
+        packageInfo.packageName = packageName;
+        packageInfo.versionName = "1.0";
+        packageInfo.applicationInfo = applicationInfo;
+        packageInfo.requestedPermissions = new String[]{"android.permission.INTERNET", "android.permission.CAMERA"};
+        setVersion(packageInfo, lastUpdateTime);
+        return packageInfo;
+    }
+
+    private static void setVersion(@NonNull PackageInfo packageInfo, long lastUpdateTime) {
+        assertTrue(new File(packageInfo.applicationInfo.sourceDir).setLastModified(lastUpdateTime));
+    }
+
+    @NonNull
+    private static Map<String, Long> versions(@NonNull String packageName, long lastUpdateTime) {
+        return Collections.singletonMap(packageName, lastUpdateTime);
+    }
+
+    /**
+     * Проверка наличия флага в флагах запроса.
+     */
+    private static class HasFlagMatcher implements ArgumentMatcher<Integer> {
+
+        private final int mFlag;
+
+        HasFlagMatcher(int flag) {
+            mFlag = flag;
+        }
+
+        @Override
+        public boolean matches(Integer flags) {
+            return flags != null && (flags & mFlag) != 0;
+        }
+    }
+}
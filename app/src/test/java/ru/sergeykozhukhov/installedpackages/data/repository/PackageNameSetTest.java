@@ -0,0 +1,56 @@
+package ru.sergeykozhukhov.installedpackages.data.repository;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Тестирование класса "PackageNameSet" уровня "data".
+ */
+public class PackageNameSetTest {
+
+    /**
+     * Тестирование отбрасывания повторяющихся имен.
+     */
+    @Test
+    public void testAdd_rejectsDuplicates() {
+        PackageNameSet packageNames = new PackageNameSet(0);
+
+        assertTrue(packageNames.add("com.example.app"));
+        assertTrue(packageNames.add("com.example.other"));
+        assertFalse(packageNames.add("com.example.app"));
+        assertFalse(packageNames.add(new String("com.example.other")));
+        assertTrue(packageNames.add("com.example"));
+    }
+
+    /**
+     * Тестирование расширения таблицы: добавленные до расширения имена остаются в множестве.
+     */
+    @Test
+    public void testAdd_resize() {
+        PackageNameSet packageNames = new PackageNameSet(4);
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(packageNames.add("com.example.app" + i));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(packageNames.add("com.example.app" + i));
+        }
+    }
+
+    /**
+     * Тестирование имен с одинаковым хэшем.
+     */
+    @Test
+    public void testAdd_hashCollision() {
+        PackageNameSet packageNames = new PackageNameSet(0);
+        // "Aa" и "BB" имеют одинаковый String#hashCode
+        assertEquals("Aa".hashCode(), "BB".hashCode());
+
+        assertTrue(packageNames.add("Aa"));
+        assertTrue(packageNames.add("BB"));
+        assertFalse(packageNames.add("BB"));
+        assertFalse(packageNames.add("Aa"));
+    }
+}
@@ -0,0 +1,139 @@
+package ru.sergeykozhukhov.installedpackages.data.repository;
+
+import androidx.annotation.NonNull;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackageModel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Тестирование класса "ParallelPackageLoader" уровня "data".
+ */
+public class ParallelPackageLoaderTest {
+
+    /**
+     * Тестирование сохранения исходного порядка пакетов при их обработке в разном порядке.
+     */
+    @Test
+    public void testLoad_keepsOriginalOrder() {
+        List<String> packages = createTestPackages(50);
+        ParallelPackageLoader<String> loader = new ParallelPackageLoader<>(4);
+
+        List<InstalledPackageModel> models = loader.load(packages, new ParallelPackageLoader.ModelFactory<String>() {
+            @NonNull
+            @Override
+            public InstalledPackageModel create(@NonNull String packageName) {
+                // пакеты с меньшим номером обрабатываются дольше, поэтому завершаются позже
+                sleep(50 - Integer.parseInt(packageName.substring(packageName.lastIndexOf('.') + 1)));
+                return new InstalledPackageModel(packageName, packageName, null, false);
+            }
+        }, null);
+
+        assertEquals(packages.size(), models.size());
+        for (int i = 0; i < packages.size(); i++) {
+            assertEquals(packages.get(i), models.get(i).getAppPackageName());
+        }
+    }
+
+    /**
+     * Тестирование возрастания процента загрузки и его окончания на 100.
+     */
+    @Test
+    public void testLoad_reportsIncreasingProgress() {
+        final List<Integer> progress = new ArrayList<>();
+        ParallelPackageLoader<String> loader = new ParallelPackageLoader<>(4);
+
+        loader.load(createTestPackages(30), new ParallelPackageLoader.ModelFactory<String>() {
+            @NonNull
+            @Override
+            public InstalledPackageModel create(@NonNull String packageName) {
+                return new InstalledPackageModel(packageName, packageName, null, false);
+            }
+        }, new ParallelPackageLoader.OnProgressListener() {
+            @Override
+            public void onProgress(int percent) {
+                synchronized (progress) {
+                    progress.add(percent);
+                }
+            }
+        });
+
+        for (int i = 1; i < progress.size(); i++) {
+            assertTrue(progress.get(i) > progress.get(i - 1));
+        }
+        assertEquals(Integer.valueOf(100), progress.get(progress.size() - 1));
+    }
+
+    /**
+     * Тестирование передачи порций моделей без пропусков и в исходном порядке.
+     */
+    @Test
+    public void testLoad_publishesBatchesInOrder() {
+        List<String> packages = createTestPackages(100);
+        final List<InstalledPackageModel> published = new ArrayList<>();
+        ParallelPackageLoader<String> loader = new ParallelPackageLoader<>(4);
+
+        List<InstalledPackageModel> models = loader.load(packages, new ParallelPackageLoader.ModelFactory<String>() {
+            @NonNull
+            @Override
+            public InstalledPackageModel create(@NonNull String packageName) {
+                sleep(packageName.hashCode() & 3);
+                return new InstalledPackageModel(packageName, packageName, null, false);
+            }
+        }, null, new ParallelPackageLoader.OnBatchListener() {
+            @Override
+            public void onBatch(@NonNull List<InstalledPackageModel> batch) {
+                published.addAll(batch);
+            }
+        });
+
+        assertEquals(models, published);
+    }
+
+    /**
+     * Тестирование отмены загрузки: после отмены новые пакеты не обрабатываются, результат пустой.
+     */
+    @Test
+    public void testLoad_stopsAfterCancellation() {
+        final CancellationToken cancellationToken = new CancellationToken();
+        final AtomicInteger createdCount = new AtomicInteger();
+        ParallelPackageLoader<String> loader = new ParallelPackageLoader<>(2);
+
+        List<InstalledPackageModel> models = loader.load(createTestPackages(100), new ParallelPackageLoader.ModelFactory<String>() {
+            @NonNull
+            @Override
+            public InstalledPackageModel create(@NonNull String packageName) {
+                if (createdCount.incrementAndGet() == 10)
+                    cancellationToken.cancel();
+                return new InstalledPackageModel(packageName, packageName, null, false);
+            }
+        }, null, null, cancellationToken);
+
+        assertTrue(models.isEmpty());
+        // каждый поток может достроить не более одного уже начатого пакета
+        assertTrue(createdCount.get() <= 10 + 2);
+    }
+
+    private List<String> createTestPackages(int count) {
+        List<String> packages = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            packages.add("ru.package." + i);
+        }
+        return packages;
+    }
+
+    private void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,62 @@
+package ru.sergeykozhukhov.installedpackages.data.search;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackageModel;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Тестирование класса "PackageSearchIndex" уровня "data".
+ */
+public class PackageSearchIndexTest {
+
+    private final InstalledPackageModel mSberbank = new InstalledPackageModel("Сбербанк", "ru.sberbankmobile", null, false);
+    private final InstalledPackageModel mTest = new InstalledPackageModel("Test", "com.another.package.test", null, true);
+    private final InstalledPackageModel mApplication = new InstalledPackageModel("Application", "ru.package.app", null, false);
+
+    private final PackageSearchIndex mIndex = new PackageSearchIndex(Arrays.asList(mSberbank, mTest, mApplication));
+
+    /**
+     * Тестирование коротких запросов, отвечаемых списком n-граммы, без учета регистра.
+     */
+    @Test
+    public void testSearch_shortQuery() {
+        assertEquals(Arrays.asList(mSberbank, mApplication), mIndex.search("RU"));
+        assertEquals(Collections.singletonList(mSberbank), mIndex.search("сбе"));
+    }
+
+    /**
+     * Тестирование длинных запросов по названию и имени пакета с сохранением исходного порядка.
+     */
+    @Test
+    public void testSearch_longQuery() {
+        assertEquals(Arrays.asList(mTest, mApplication), mIndex.search("package"));
+        assertEquals(Collections.singletonList(mApplication), mIndex.search("applic"));
+        assertEquals(Collections.singletonList(mSberbank), mIndex.search("Сбербанк"));
+    }
+
+    /**
+     * Тестирование запроса, все триграммы которого есть в модели, но сама подстрока отсутствует.
+     */
+    @Test
+    public void testSearch_verifiesCandidates() {
+        // "test" и "est.test" встречаются, а "testest" - нет
+        List<InstalledPackageModel> result = mIndex.search("testest");
+        assertEquals(Collections.<InstalledPackageModel>emptyList(), result);
+    }
+
+    /**
+     * Тестирование пустого запроса и запроса без совпадений.
+     */
+    @Test
+    public void testSearch_emptyAndMissing() {
+        assertEquals(3, mIndex.search("  ").size());
+        assertEquals(Collections.<InstalledPackageModel>emptyList(), mIndex.search("xyz"));
+        assertEquals(Collections.<InstalledPackageModel>emptyList(), mIndex.search("sberbank.app"));
+    }
+}
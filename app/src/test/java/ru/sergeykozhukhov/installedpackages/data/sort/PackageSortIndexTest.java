@@ -0,0 +1,104 @@
+package ru.sergeykozhukhov.installedpackages.data.sort;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackageModel;
+import ru.sergeykozhukhov.installedpackages.data.model.SortOption;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Тестирование класса "PackageSortIndex" уровня "data".
+ */
+public class PackageSortIndexTest {
+
+    private final InstalledPackageModel mSberbank = new InstalledPackageModel("Sberbank", "ru.sberbankmobile", null, false);
+    private final InstalledPackageModel mTest = new InstalledPackageModel("Test", "com.another.package.test", null, true);
+    private final InstalledPackageModel mApplication = new InstalledPackageModel("Application", "ru.package.app", null, false);
+
+    private final PackageSortIndex mIndex = new PackageSortIndex(Arrays.asList(mSberbank, mTest, mApplication));
+
+    /**
+     * Тестирование получения данных в порядке каждого варианта сортировки.
+     */
+    @Test
+    public void testGet() {
+        assertEquals(Arrays.asList(mSberbank, mTest, mApplication), mIndex.get(SortOption.NONE));
+        assertEquals(Arrays.asList(mSberbank, mTest, mApplication), mIndex.get(null));
+        assertEquals(Arrays.asList(mApplication, mSberbank, mTest), mIndex.get(SortOption.BY_APP_NAME));
+        assertEquals(Arrays.asList(mTest, mApplication, mSberbank), mIndex.get(SortOption.BY_APP_PACKAGE_NAME));
+    }
+
+    /**
+     * Тестирование добавления, замены и удаления моделей после построения отсортированных представлений.
+     */
+    @Test
+    public void testPutAndRemove() {
+        mIndex.get(SortOption.BY_APP_NAME);
+
+        InstalledPackageModel banking = new InstalledPackageModel("Banking", "ru.sberbankmobile", null, false);
+        InstalledPackageModel zoo = new InstalledPackageModel("Zoo", "a.zoo", null, false);
+        mIndex.put(banking);
+        mIndex.put(zoo);
+        mIndex.remove("com.another.package.test");
+
+        assertEquals(3, mIndex.size());
+        assertEquals(Arrays.asList(banking, mApplication, zoo), mIndex.get(SortOption.NONE));
+        assertEquals(Arrays.asList(mApplication, banking, zoo), mIndex.get(SortOption.BY_APP_NAME));
+        assertEquals(Arrays.asList(zoo, mApplication, banking), mIndex.get(SortOption.BY_APP_PACKAGE_NAME));
+    }
+
+    /**
+     * Тестирование порядка равных по ключу моделей: сохраняется порядок загрузки.
+     */
+    @Test
+    public void testGet_stableForEqualKeys() {
+        InstalledPackageModel first = new InstalledPackageModel("Same", "b.first", null, false);
+        InstalledPackageModel second = new InstalledPackageModel("Same", "a.second", null, false);
+        PackageSortIndex index = new PackageSortIndex(Arrays.asList(first, mApplication, second));
+
+        assertEquals(Arrays.asList(mApplication, first, second), index.get(SortOption.BY_APP_NAME));
+
+        InstalledPackageModel third = new InstalledPackageModel("Same", "c.third", null, false);
+        index.put(third);
+        assertEquals(Arrays.asList(mApplication, first, second, third), index.get(SortOption.BY_APP_NAME));
+    }
+
+    /**
+     * Тестирование установки и удаления большого числа приложений: места удаленных моделей освобождаются,
+     * порядок загрузки и отсортированные представления сохраняются.
+     */
+    @Test
+    public void testRemove_compactsRemovedSlots() {
+        mIndex.get(SortOption.BY_APP_NAME);
+
+        List<InstalledPackageModel> installed = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            InstalledPackageModel model = new InstalledPackageModel("Module " + (char) ('z' - i % 26), "pkg." + i, null, false);
+            installed.add(model);
+            mIndex.put(model);
+        }
+        for (int i = 0; i < 100; i++) {
+            if (i != 50)
+                assertTrue(mIndex.remove("pkg." + i));
+        }
+        assertFalse(mIndex.remove("pkg.0"));
+
+        InstalledPackageModel kept = installed.get(50);
+        assertEquals(4, mIndex.size());
+        assertTrue(mIndex.getSlotCount() < 16);
+        assertEquals(Arrays.asList(mSberbank, mTest, mApplication, kept), mIndex.get(SortOption.NONE));
+        assertEquals(Arrays.asList(mApplication, kept, mSberbank, mTest), mIndex.get(SortOption.BY_APP_NAME));
+
+        InstalledPackageModel banking = new InstalledPackageModel("Banking", "ru.sberbankmobile", null, false);
+        mIndex.put(banking);
+        assertEquals(Arrays.asList(banking, mTest, mApplication, kept), mIndex.get(SortOption.NONE));
+        assertEquals(Arrays.asList(mApplication, banking, kept, mTest), mIndex.get(SortOption.BY_APP_NAME));
+    }
+}
@@ -0,0 +1,74 @@
+package ru.sergeykozhukhov.installedpackages.data.sort;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackageModel;
+import ru.sergeykozhukhov.installedpackages.data.model.SortOption;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Тестирование класса "SortEngine" уровня "data".
+ */
+public class SortEngineTest {
+
+    /**
+     * Тестирование составной сортировки: сначала системные, затем по имени приложения и имени пакета.
+     */
+    @Test
+    public void testSort_compositeSpec() {
+        InstalledPackageModel userB = new InstalledPackageModel("B", "user.b", null, false);
+        InstalledPackageModel systemA2 = new InstalledPackageModel("A", "system.a2", null, true);
+        InstalledPackageModel userA = new InstalledPackageModel("A", "user.a", null, false);
+        InstalledPackageModel systemA1 = new InstalledPackageModel("A", "system.a1", null, true);
+        List<InstalledPackageModel> models = new ArrayList<>(Arrays.asList(userB, systemA2, userA, systemA1));
+
+        SortEngine.sort(models, SortSpec.forOption(SortOption.BY_SYSTEM_THEN_APP_NAME));
+
+        assertEquals(Arrays.asList(systemA1, systemA2, userA, userB), models);
+    }
+
+    /**
+     * Тестирование перестановки: равные по всем ключам модели сохраняют исходный порядок.
+     */
+    @Test
+    public void testSortedOrder_stable() {
+        List<InstalledPackageModel> models = Arrays.asList(
+                new InstalledPackageModel("Same", "c", null, false),
+                new InstalledPackageModel("Other", "b", null, false),
+                new InstalledPackageModel("Same", "a", null, false)
+        );
+
+        int[] order = SortEngine.sortedOrder(models, new SortSpec(SortKey.APP_NAME));
+
+        assertArrayEquals(new int[]{1, 0, 2}, order);
+    }
+
+    /**
+     * Тестирование параллельной сортировки большого списка: результат совпадает с сортировкой компаратором.
+     */
+    @Test
+    public void testSort_parallelMatchesComparator() {
+        Random random = new Random(42);
+        List<InstalledPackageModel> models = new ArrayList<>();
+        for (int i = 0; i < SortEngine.PARALLEL_THRESHOLD * 3; i++) {
+            long appSize = random.nextInt(10) == 0 ? InstalledPackageModel.APP_SIZE_UNKNOWN : random.nextInt(1000);
+            models.add(new InstalledPackageModel("App " + random.nextInt(500), "pkg." + i, null,
+                    random.nextBoolean(), 0, appSize));
+        }
+        SortSpec sortSpec = new SortSpec(SortKey.SYSTEM_FIRST, SortKey.APP_SIZE, SortKey.APP_NAME);
+
+        List<InstalledPackageModel> expected = new ArrayList<>(models);
+        Collections.sort(expected, sortSpec.getComparator());
+        SortEngine.sort(models, sortSpec);
+
+        assertEquals(expected, models);
+    }
+}
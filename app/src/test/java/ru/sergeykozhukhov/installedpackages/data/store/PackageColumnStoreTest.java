@@ -0,0 +1,189 @@
+package ru.sergeykozhukhov.installedpackages.data.store;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+
+import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackageModel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Тестирование класса "PackageColumnStore" уровня "data".
+ */
+public class PackageColumnStoreTest {
+
+    /**
+     * Тестирование добавления и замены данных приложения.
+     */
+    @Test
+    public void testPut() {
+        PackageColumnStore store = new PackageColumnStore(1);
+        assertEquals(0, store.put(createModel("Alpha", "com.example.alpha", true, false, 10L, 100L)));
+        assertEquals(1, store.put(createModel("Beta", "com.example.beta", false, true, 20L, 200L)));
+        assertEquals(0, store.put(createModel("Alpha 2", "com.example.alpha", false, true, 30L, 300L)));
+
+        assertEquals(2, store.size());
+        assertEquals(1, store.indexOf("com.example.beta"));
+        assertEquals(-1, store.indexOf("com.example.gamma"));
+
+        PackageColumnStore.Row row = store.getRow(0);
+        assertEquals("Alpha 2", row.getAppName());
+        assertEquals("com.example.alpha", row.getAppPackageName());
+        assertFalse(row.getIsAppSystem());
+        assertTrue(row.getIsUpdatedSystemApp());
+        assertEquals(30L, row.getLastUpdateTime());
+        assertEquals(300L, row.getAppSize());
+    }
+
+    /**
+     * Тестирование добавления строки другого хранилища без создания модели.
+     */
+    @Test
+    public void testPut_row() {
+        PackageColumnStore source = new PackageColumnStore();
+        source.put(createModel("Alpha", "com.example.alpha", true, true, 10L, 100L));
+        PackageColumnStore store = new PackageColumnStore();
+
+        assertEquals(0, store.put(source.getRow(0)));
+
+        PackageColumnStore.Row row = store.getRow(0);
+        assertEquals("Alpha", row.getAppName());
+        assertEquals("com.example.alpha", row.getAppPackageName());
+        assertTrue(row.getIsAppSystem());
+        assertTrue(row.getIsUpdatedSystemApp());
+        assertEquals(10L, row.getLastUpdateTime());
+        assertEquals(100L, row.getAppSize());
+    }
+
+    /**
+     * Тестирование удаления: порядок и признаки остальных строк сохраняются.
+     */
+    @Test
+    public void testRemove() {
+        PackageColumnStore store = new PackageColumnStore();
+        for (int i = 0; i < 100; i++) {
+            store.put(createModel("App " + i, "com.example.app" + i, i % 2 == 0, i % 3 == 0, i, i));
+        }
+
+        assertTrue(store.remove("com.example.app0"));
+        assertFalse(store.remove("com.example.app0"));
+
+        assertEquals(99, store.size());
+        for (int i = 1; i < 100; i++) {
+            PackageColumnStore.Row row = store.getRow(i - 1);
+            assertEquals("com.example.app" + i, row.getAppPackageName());
+            assertEquals(i % 2 == 0, row.getIsAppSystem());
+            assertEquals(i % 3 == 0, row.getIsUpdatedSystemApp());
+            assertEquals(i - 1, store.indexOf("com.example.app" + i));
+        }
+    }
+
+    /**
+     * Тестирование независимости копии от исходного хранилища.
+     */
+    @Test
+    public void testCopy() {
+        PackageColumnStore store = new PackageColumnStore();
+        store.put(createModel("Alpha", "com.example.alpha", false, false, 10L, 100L));
+
+        PackageColumnStore copy = store.copy();
+        copy.setAppSize(0, 500L);
+        copy.put(createModel("Beta", "com.example.beta", false, false, 20L, 200L));
+
+        assertEquals(1, store.size());
+        assertEquals(100L, store.getRow(0).getAppSize());
+        assertFalse(store.contains("com.example.beta"));
+        assertEquals(500L, copy.getRow(0).getAppSize());
+        assertEquals(2, copy.size());
+    }
+
+    /**
+     * Тестирование замены разросшейся таблицы строк при копировании: данные копии и поиск по имени пакета сохраняются.
+     */
+    @Test
+    public void testCopy_compactsPool() {
+        PackageColumnStore store = new PackageColumnStore();
+        store.put(createModel("Alpha", "com.example.alpha", true, false, 10L, 100L));
+        store.put(createModel("Beta", "com.example.beta", false, true, 20L, 200L));
+        for (int i = 0; i < 500; i++) {
+            store = store.copy();
+            store.put(createModel("Gamma " + i, "com.example.gamma" + i, false, false, i, i));
+            store.remove("com.example.gamma" + i);
+        }
+
+        assertEquals(2, store.size());
+        assertEquals(1, store.indexOf("com.example.beta"));
+        assertFalse(store.contains("com.example.gamma0"));
+        PackageColumnStore.Row row = store.getRow(0);
+        assertEquals("Alpha", row.getAppName());
+        assertEquals("com.example.alpha", row.getAppPackageName());
+        assertTrue(row.getIsAppSystem());
+        assertEquals(100L, row.getAppSize());
+        assertTrue(store.getRow(1).getIsUpdatedSystemApp());
+    }
+
+    /**
+     * Тестирование записи только строк хранилища: строки, добавленные копией в общую таблицу, не записываются.
+     */
+    @Test
+    public void testWriteTo_onlyStoreStrings() throws Exception {
+        PackageColumnStore store = new PackageColumnStore();
+        store.put(createModel("Alpha", "com.example.alpha", false, false, 10L, 100L));
+        PackageColumnStore copy = store.copy();
+        copy.put(createModel("Alpha 2", "com.example.alpha", false, false, 20L, 100L));
+        copy.put(createModel("Beta", "com.example.beta", false, false, 20L, 200L));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        store.writeTo(output);
+        output.flush();
+        DataInputStream input = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+
+        // запись начинается с количества строк таблицы
+        assertEquals(2, input.readInt());
+    }
+
+    /**
+     * Тестирование записи и чтения хранилища.
+     */
+    @Test
+    public void testWriteToReadFrom() throws Exception {
+        PackageColumnStore store = new PackageColumnStore();
+        store.put(createModel("Alpha", "com.example.alpha", true, true, 10L, 100L));
+        store.put(createModel("Beta", "com.example.beta", false, false, 20L,
+                InstalledPackageModel.APP_SIZE_UNKNOWN));
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream output = new DataOutputStream(bytes);
+        store.writeTo(output);
+        output.flush();
+        PackageColumnStore restored = PackageColumnStore.readFrom(
+                new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(store.size(), restored.size());
+        for (int i = 0; i < store.size(); i++) {
+            PackageColumnStore.Row expected = store.getRow(i);
+            PackageColumnStore.Row actual = restored.getRow(i);
+            assertEquals(expected.getAppName(), actual.getAppName());
+            assertEquals(expected.getAppPackageName(), actual.getAppPackageName());
+            assertEquals(expected.getIsAppSystem(), actual.getIsAppSystem());
+            assertEquals(expected.getIsAppEnabled(), actual.getIsAppEnabled());
+            assertEquals(expected.getIsUpdatedSystemApp(), actual.getIsUpdatedSystemApp());
+            assertEquals(expected.getLastUpdateTime(), actual.getLastUpdateTime());
+            assertEquals(expected.getAppSize(), actual.getAppSize());
+        }
+        assertEquals(1, restored.indexOf("com.example.beta"));
+    }
+
+    private static InstalledPackageModel createModel(String appName, String packageName, boolean isAppSystem,
+                                                     boolean isUpdatedSystemApp, long lastUpdateTime, long appSize) {
+        return new InstalledPackageModel(appName, packageName, packageName, isAppSystem, true,
+                isUpdatedSystemApp, lastUpdateTime, appSize);
+    }
+}
@@ -3,6 +3,8 @@ package ru.sergeykozhukhov.installedpackages.model;
 import org.junit.Test;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackageModel;
@@ -31,6 +33,40 @@ public class InstalledPackageModelTest {
         assertNotEquals(testData1, testData3);
     }
 
+    /**
+     * Тестирование сортировки по размеру: сначала большие приложения, неизмеренные в конце
+     */
+    @Test
+    public void sortByAppSize(){
+        InstalledPackageModel small = new InstalledPackageModel("Small", "ru.package.small", null, false).withAppSize(10);
+        InstalledPackageModel large = new InstalledPackageModel("Large", "ru.package.large", null, false).withAppSize(1000);
+        InstalledPackageModel unknown = new InstalledPackageModel("Unknown", "ru.package.unknown", null, false);
+
+        List<InstalledPackageModel> testData = new ArrayList<>(Arrays.asList(unknown, small, large));
+        Collections.sort(testData, InstalledPackageModel.BY_APP_SIZE);
+
+        assertEquals(Arrays.asList(large, small, unknown), testData);
+        assertNotEquals(small, small.withAppSize(20));
+    }
+
+    /**
+     * Тестирование сортировки по названию с учетом локали: регистр не влияет на порядок букв
+     */
+    @Test
+    public void sortByAppName(){
+        InstalledPackageModel apple = new InstalledPackageModel("apple", "ru.package.apple", null, false);
+        InstalledPackageModel banana = new InstalledPackageModel("Banana", "ru.package.banana", null, false);
+        InstalledPackageModel cherry = new InstalledPackageModel("cherry", "ru.package.cherry", null, false);
+
+        List<InstalledPackageModel> testData = new ArrayList<>(Arrays.asList(cherry, banana, apple));
+        Collections.sort(testData, InstalledPackageModel.BY_APP_NAME);
+
+        // String.compareTo поставил бы "Banana" перед "apple"
+        assertEquals(Arrays.asList(apple, banana, cherry), testData);
+        // копия с размером сохраняет ключ сортировки
+        assertEquals(0, InstalledPackageModel.BY_APP_NAME.compare(apple, apple.withAppSize(1)));
+    }
+
     private List<InstalledPackageModel> createTestData(boolean isSystem) {
         List<InstalledPackageModel> testData = new ArrayList<>();
 
@@ -12,16 +12,29 @@ import org.mockito.invocation.InvocationOnMock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.mockito.stubbing.Answer;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 
+import ru.sergeykozhukhov.installedpackages.data.filter.FilterSpec;
+import ru.sergeykozhukhov.installedpackages.data.metrics.Metrics;
+import ru.sergeykozhukhov.installedpackages.data.metrics.MetricsSnapshot;
+import ru.sergeykozhukhov.installedpackages.data.metrics.RecordingMetrics;
+import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackageChangeModel;
 import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackageModel;
 import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackedSortOptionModel;
+import ru.sergeykozhukhov.installedpackages.data.model.MetadataColumn;
+import ru.sergeykozhukhov.installedpackages.data.model.PackageMetadataModel;
+import ru.sergeykozhukhov.installedpackages.data.model.ScanMode;
 import ru.sergeykozhukhov.installedpackages.data.model.SortOption;
 import ru.sergeykozhukhov.installedpackages.data.repository.PackageInstalledRepository;
 import ru.sergeykozhukhov.installedpackages.presentation.view.IPackageInstalledView;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyBoolean;
 import static org.mockito.ArgumentMatchers.anyInt;
 import static org.mockito.Mockito.verify;
@@ -68,7 +81,7 @@ public class PackageInstalledPresenterTest {
 
         //Проверка, что презентер действительно вызывает методы представления
         verify(mPackageInstalledView).showProgress();
-        verify(mPackageInstalledView).showData(testData);
+        verify(mPackageInstalledView).showData(createTestData(SortOption.BY_APP_NAME));
         verify(mPackageInstalledView).hideProgress();
     }
 
@@ -96,7 +109,7 @@ public class PackageInstalledPresenterTest {
         //Проверка, что презентер действительно вызывает методы представления, причем в порядке вызова этих методов. Можно сравнить с предыдущим тестом.
         inOrder.verify(mPackageInstalledView).showProgress();
         inOrder.verify(mPackageInstalledView).hideProgress();
-        inOrder.verify(mPackageInstalledView).showData(testData);
+        inOrder.verify(mPackageInstalledView).showData(createTestData(SortOption.BY_APP_NAME));
 
         //Проверка, что никакой метод не будет вызван у mPackageInstalledView.
         inOrder.verifyNoMoreInteractions();
@@ -117,10 +130,10 @@ public class PackageInstalledPresenterTest {
             public Object answer(InvocationOnMock invocation) {
                 //получаем слушателей из метода loadDataAsync().
                 PackageInstalledRepository.OnProgressUpdateListener onProgressUpdateListener =
-                        (PackageInstalledRepository.OnProgressUpdateListener) invocation.getArguments()[1];
+                        (PackageInstalledRepository.OnProgressUpdateListener) invocation.getArguments()[2];
 
                 PackageInstalledRepository.OnLoadingFinishListener onLoadingFinishListener =
-                        (PackageInstalledRepository.OnLoadingFinishListener) invocation.getArguments()[2];
+                        (PackageInstalledRepository.OnLoadingFinishListener) invocation.getArguments()[3];
 
                 //кидаем в них ответ
                 onProgressUpdateListener.onUpdate(anyInt());
@@ -130,6 +143,7 @@ public class PackageInstalledPresenterTest {
             }
         }).when(mPackageInstalledRepository).loadDataAsync(
                 anyBoolean(),
+                Mockito.eq(SortOption.BY_APP_NAME),
                 Mockito.any(PackageInstalledRepository.OnProgressUpdateListener.class),
                 Mockito.any(PackageInstalledRepository.OnLoadingFinishListener.class)
         );
@@ -141,11 +155,405 @@ public class PackageInstalledPresenterTest {
         inOrder.verify(mPackageInstalledView).showProgress();
         inOrder.verify(mPackageInstalledView).showPercentProgress(anyInt());
         inOrder.verify(mPackageInstalledView).hideProgress();
-        inOrder.verify(mPackageInstalledView).showData(testData);
+        inOrder.verify(mPackageInstalledView).showData(createTestData(SortOption.BY_APP_NAME));
 
         inOrder.verifyNoMoreInteractions();
     }
 
+    /**
+     * Тестирование асинхронного метода получения данных порциями в презентере.
+     */
+    @Test
+    public void testLoadDataStreaming() {
+        final List<InstalledPackageModel> testData = createTestData();
+
+        Mockito.doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                PackageInstalledRepository.OnBatchLoadedListener onBatchLoadedListener =
+                        (PackageInstalledRepository.OnBatchLoadedListener) invocation.getArguments()[2];
+
+                PackageInstalledRepository.OnLoadingFinishListener onLoadingFinishListener =
+                        (PackageInstalledRepository.OnLoadingFinishListener) invocation.getArguments()[3];
+
+                //отдаем данные двумя порциями, затем весь список
+                onBatchLoadedListener.onBatchLoaded(testData.subList(0, 1));
+                onBatchLoadedListener.onBatchLoaded(testData.subList(1, testData.size()));
+                onLoadingFinishListener.onFinish(new ArrayList<>(testData));
+
+                return null;
+            }
+        }).when(mPackageInstalledRepository).loadDataStreaming(
+                anyBoolean(),
+                Mockito.eq(SortOption.BY_APP_NAME),
+                Mockito.any(PackageInstalledRepository.OnBatchLoadedListener.class),
+                Mockito.any(PackageInstalledRepository.OnLoadingFinishListener.class)
+        );
+
+        mMainPresenter.loadDataStreaming(true, createTestSortOption());
+
+        //Порции отображаются по мере загрузки, а в конце отображается отсортированный список.
+        InOrder inOrder = Mockito.inOrder(mPackageInstalledView);
+        inOrder.verify(mPackageInstalledView).showData(Collections.<InstalledPackageModel>emptyList());
+        inOrder.verify(mPackageInstalledView).appendData(testData.subList(0, 1));
+        inOrder.verify(mPackageInstalledView).appendData(testData.subList(1, testData.size()));
+        inOrder.verify(mPackageInstalledView).showData(createTestData(SortOption.BY_APP_NAME));
+
+        inOrder.verifyNoMoreInteractions();
+    }
+
+    /**
+     * Тестирование поиска во время загрузки порциями: поиск выполняется среди полученных приложений,
+     * следующие порции и список после загрузки отображаются с учетом запроса, в том числе без сортировки.
+     */
+    @Test
+    public void testLoadDataStreaming_withSearch() {
+        final List<InstalledPackageModel> testData = createTestData();
+
+        Mockito.doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                PackageInstalledRepository.OnBatchLoadedListener onBatchLoadedListener =
+                        (PackageInstalledRepository.OnBatchLoadedListener) invocation.getArguments()[2];
+
+                PackageInstalledRepository.OnLoadingFinishListener onLoadingFinishListener =
+                        (PackageInstalledRepository.OnLoadingFinishListener) invocation.getArguments()[3];
+
+                //запрос вводится между порциями
+                onBatchLoadedListener.onBatchLoaded(testData.subList(0, 1));
+                mMainPresenter.search("ru.");
+                onBatchLoadedListener.onBatchLoaded(testData.subList(1, testData.size()));
+                onLoadingFinishListener.onFinish(new ArrayList<>(testData));
+
+                return null;
+            }
+        }).when(mPackageInstalledRepository).loadDataStreaming(
+                anyBoolean(),
+                Mockito.eq(SortOption.NONE),
+                Mockito.any(PackageInstalledRepository.OnBatchLoadedListener.class),
+                Mockito.any(PackageInstalledRepository.OnLoadingFinishListener.class)
+        );
+
+        mMainPresenter.loadDataStreaming(true, new InstalledPackedSortOptionModel(SortOption.NONE, "None"));
+
+        InstalledPackageModel sberbank = new InstalledPackageModel("Sberbank","ru.sberbankmobile", null, false);
+        InstalledPackageModel application = new InstalledPackageModel("Application","ru.package.app", null, false);
+        InOrder inOrder = Mockito.inOrder(mPackageInstalledView);
+        inOrder.verify(mPackageInstalledView).showData(Collections.<InstalledPackageModel>emptyList());
+        inOrder.verify(mPackageInstalledView).appendData(Collections.singletonList(sberbank));
+        inOrder.verify(mPackageInstalledView).showData(Collections.singletonList(sberbank));
+        inOrder.verify(mPackageInstalledView).appendData(Collections.singletonList(application));
+        inOrder.verify(mPackageInstalledView).showData(Arrays.asList(sberbank, application));
+
+        inOrder.verifyNoMoreInteractions();
+    }
+
+    /**
+     * Тестирование повторной загрузки при уже отображаемых данных: загрузка выполняется без порций и индикатора,
+     * список не очищается, а заменяется целиком.
+     */
+    @Test
+    public void testLoadDataStreaming_whenDataShown() {
+        when(
+                mPackageInstalledRepository.getData(anyBoolean())
+        ).
+                thenReturn(new ArrayList<>(createTestData()));
+
+        Mockito.doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                PackageInstalledRepository.OnLoadingFinishListener onLoadingFinishListener =
+                        (PackageInstalledRepository.OnLoadingFinishListener) invocation.getArguments()[3];
+
+                onLoadingFinishListener.onFinish(new ArrayList<>(createTestData()));
+                return null;
+            }
+        }).when(mPackageInstalledRepository).loadDataAsync(
+                anyBoolean(),
+                Mockito.eq(SortOption.BY_APP_NAME),
+                Mockito.any(PackageInstalledRepository.OnProgressUpdateListener.class),
+                Mockito.any(PackageInstalledRepository.OnLoadingFinishListener.class)
+        );
+
+        mMainPresenter.loadDataSync(true, createTestSortOption());
+        mMainPresenter.loadDataStreaming(true, createTestSortOption());
+
+        verify(mPackageInstalledView, Mockito.never()).showData(Collections.<InstalledPackageModel>emptyList());
+        verify(mPackageInstalledView, Mockito.never()).appendData(Mockito.<InstalledPackageModel>anyList());
+        verify(mPackageInstalledView, Mockito.times(2)).showData(createTestData(SortOption.BY_APP_NAME));
+        verify(mPackageInstalledRepository, Mockito.never()).loadDataStreaming(anyBoolean(),
+                Mockito.<SortOption>any(),
+                Mockito.any(PackageInstalledRepository.OnBatchLoadedListener.class),
+                Mockito.any(PackageInstalledRepository.OnLoadingFinishListener.class));
+        // индикатор показывается только синхронной загрузкой
+        verify(mPackageInstalledView, Mockito.times(1)).showProgress();
+        verify(mPackageInstalledView, Mockito.never()).showPercentProgress(anyInt());
+    }
+
+    /**
+     * Тестирование отображения снимка данных с последующим обновлением в презентере.
+     */
+    @Test
+    public void testLoadDataCached() {
+        final List<InstalledPackageModel> testData = createTestData();
+
+        mockSnapshot(new ArrayList<>(testData));
+
+        Mockito.doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                PackageInstalledRepository.OnLoadingFinishListener onLoadingFinishListener =
+                        (PackageInstalledRepository.OnLoadingFinishListener) invocation.getArguments()[3];
+
+                onLoadingFinishListener.onFinish(new ArrayList<>(testData));
+                return null;
+            }
+        }).when(mPackageInstalledRepository).loadDataAsync(
+                anyBoolean(),
+                Mockito.eq(SortOption.BY_APP_NAME),
+                Mockito.any(PackageInstalledRepository.OnProgressUpdateListener.class),
+                Mockito.any(PackageInstalledRepository.OnLoadingFinishListener.class)
+        );
+
+        mMainPresenter.loadDataCached(true, createTestSortOption());
+
+        //Снимок отображается сразу и без индикатора загрузки, затем отображаются обновленные данные.
+        InOrder inOrder = Mockito.inOrder(mPackageInstalledView);
+        inOrder.verify(mPackageInstalledView, Mockito.times(2)).showData(createTestData(SortOption.BY_APP_NAME));
+        inOrder.verifyNoMoreInteractions();
+    }
+
+    /**
+     * Тестирование {@link PackageInstalledPresenter#loadDataCached(boolean, Object)} при отсутствии снимка данных.
+     */
+    @Test
+    public void testLoadDataCached_withoutSnapshot() {
+        mockSnapshot(null);
+
+        mMainPresenter.loadDataCached(true, createTestSortOption());
+
+        verifyNoMoreInteractions(mPackageInstalledView);
+    }
+
+    /**
+     * Тестирование {@link PackageInstalledPresenter#loadDataCached(boolean, Object)}, если до окончания чтения снимка
+     * запрошена загрузка: снимок старее загружаемых данных и не отображается.
+     */
+    @Test
+    public void testLoadDataCached_whenLoadingRequested() {
+        final PackageInstalledRepository.OnSnapshotLoadedListener[] onSnapshotLoadedListener =
+                new PackageInstalledRepository.OnSnapshotLoadedListener[1];
+        Mockito.doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                onSnapshotLoadedListener[0] =
+                        (PackageInstalledRepository.OnSnapshotLoadedListener) invocation.getArguments()[1];
+                return null;
+            }
+        }).when(mPackageInstalledRepository).loadSnapshotAsync(
+                anyBoolean(),
+                Mockito.any(PackageInstalledRepository.OnSnapshotLoadedListener.class)
+        );
+
+        mMainPresenter.loadDataCached(true, createTestSortOption());
+        mMainPresenter.loadDataAsync(true, createTestSortOption());
+        onSnapshotLoadedListener[0].onSnapshotLoaded(createTestData());
+
+        verify(mPackageInstalledView).showProgress();
+        verifyNoMoreInteractions(mPackageInstalledView);
+    }
+
+    /**
+     * Тестирование применения изменений установленных приложений к отображаемым данным с сохранением сортировки.
+     */
+    @Test
+    public void testTrackChanges() {
+        when(
+                mPackageInstalledRepository.getData(anyBoolean())
+        ).
+                thenReturn(new ArrayList<>(createTestData()));
+
+        Mockito.doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                PackageInstalledRepository.OnPackagesChangedListener onPackagesChangedListener =
+                        (PackageInstalledRepository.OnPackagesChangedListener) invocation.getArguments()[0];
+
+                onPackagesChangedListener.onPackagesChanged(Arrays.asList(
+                        new InstalledPackageChangeModel(InstalledPackageChangeModel.Type.REMOVED, "ru.sberbankmobile", null),
+                        new InstalledPackageChangeModel(InstalledPackageChangeModel.Type.ADDED, "ru.package.browser",
+                                new InstalledPackageModel("Browser", "ru.package.browser", null, false))
+                ));
+                return null;
+            }
+        }).when(mPackageInstalledRepository).startTrackingChanges(
+                Mockito.any(PackageInstalledRepository.OnPackagesChangedListener.class)
+        );
+
+        mMainPresenter.loadDataSync(true, createTestSortOption());
+        mMainPresenter.startTrackingChanges();
+
+        verify(mPackageInstalledView).showData(Arrays.asList(
+                new InstalledPackageModel("Application","ru.package.app", null, false),
+                new InstalledPackageModel("Browser", "ru.package.browser", null, false),
+                new InstalledPackageModel("Test", "com.another.package.test", null, true)
+        ));
+    }
+
+    /**
+     * Тестирование прикрепления новой View: она сразу получает уже загруженные данные без повторной загрузки.
+     */
+    @Test
+    public void testAttachView_replaysData() {
+        when(
+                mPackageInstalledRepository.getData(anyBoolean())
+        ).
+                thenReturn(new ArrayList<>(createTestData()));
+
+        mMainPresenter.loadDataSync(true, createTestSortOption());
+        mMainPresenter.detachView();
+
+        IPackageInstalledView recreatedView = Mockito.mock(IPackageInstalledView.class);
+        mMainPresenter.attachView(recreatedView);
+
+        assertTrue(mMainPresenter.isDataRequested());
+        verify(recreatedView).showData(createTestData(SortOption.BY_APP_NAME));
+        verifyNoMoreInteractions(recreatedView);
+        verify(mPackageInstalledRepository, Mockito.times(1)).getData(anyBoolean());
+    }
+
+    /**
+     * Тестирование режима поиска: отображаются только найденные приложения в порядке сортировки,
+     * пустой запрос возвращает полный список.
+     */
+    @Test
+    public void testSearch() {
+        when(
+                mPackageInstalledRepository.getData(anyBoolean())
+        ).
+                thenReturn(new ArrayList<>(createTestData()));
+
+        mMainPresenter.loadDataSync(true, createTestSortOption());
+        mMainPresenter.search("ru.");
+        mMainPresenter.search("");
+
+        InOrder inOrder = Mockito.inOrder(mPackageInstalledView);
+        inOrder.verify(mPackageInstalledView).showData(createTestData(SortOption.BY_APP_NAME));
+        inOrder.verify(mPackageInstalledView).showData(Arrays.asList(
+                new InstalledPackageModel("Application","ru.package.app", null, false),
+                new InstalledPackageModel("Sberbank","ru.sberbankmobile", null, false)
+        ));
+        inOrder.verify(mPackageInstalledView).showData(createTestData(SortOption.BY_APP_NAME));
+        verify(mPackageInstalledRepository, Mockito.times(1)).getData(anyBoolean());
+    }
+
+    /**
+     * Тестирование смены сортировки: данные показываются в новом порядке без повторной загрузки,
+     * повторный выбор того же варианта ничего не делает.
+     */
+    @Test
+    public void testChangeSortOption() {
+        when(
+                mPackageInstalledRepository.getData(anyBoolean())
+        ).
+                thenReturn(new ArrayList<>(createTestData()));
+
+        mMainPresenter.loadDataSync(true, createTestSortOption());
+        mMainPresenter.changeSortOption(new InstalledPackedSortOptionModel(SortOption.BY_APP_PACKAGE_NAME, "Package name"));
+        mMainPresenter.changeSortOption(new InstalledPackedSortOptionModel(SortOption.BY_APP_PACKAGE_NAME, "Package name"));
+        mMainPresenter.changeSortOption(new InstalledPackedSortOptionModel(SortOption.NONE, "None"));
+
+        InOrder inOrder = Mockito.inOrder(mPackageInstalledView);
+        inOrder.verify(mPackageInstalledView).showData(createTestData(SortOption.BY_APP_NAME));
+        inOrder.verify(mPackageInstalledView).showData(createTestData(SortOption.BY_APP_PACKAGE_NAME));
+        inOrder.verify(mPackageInstalledView).showData(createTestData(SortOption.NONE));
+        verify(mPackageInstalledRepository, Mockito.times(1)).getData(anyBoolean());
+    }
+
+    /**
+     * Тестирование смены сортировки во время загрузки: загруженные данные отображаются в порядке,
+     * выбранном пользователем, а не в порядке, переданном в загрузку.
+     */
+    @Test
+    public void testChangeSortOption_whileLoading() {
+        final PackageInstalledRepository.OnLoadingFinishListener[] onLoadingFinishListener =
+                new PackageInstalledRepository.OnLoadingFinishListener[1];
+        Mockito.doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                onLoadingFinishListener[0] =
+                        (PackageInstalledRepository.OnLoadingFinishListener) invocation.getArguments()[3];
+                return null;
+            }
+        }).when(mPackageInstalledRepository).loadDataAsync(
+                anyBoolean(),
+                Mockito.eq(SortOption.BY_APP_NAME),
+                Mockito.any(PackageInstalledRepository.OnProgressUpdateListener.class),
+                Mockito.any(PackageInstalledRepository.OnLoadingFinishListener.class)
+        );
+
+        mMainPresenter.loadDataAsync(true, createTestSortOption());
+        mMainPresenter.changeSortOption(new InstalledPackedSortOptionModel(SortOption.BY_APP_PACKAGE_NAME, "Package name"));
+        onLoadingFinishListener[0].onFinish(new ArrayList<>(createTestData()));
+
+        verify(mPackageInstalledView).showData(createTestData(SortOption.BY_APP_PACKAGE_NAME));
+        verify(mPackageInstalledView, Mockito.never()).showData(createTestData(SortOption.BY_APP_NAME));
+    }
+
+    /**
+     * Тестирование смены сортировки во время обновления отображаемого снимка: обновленные данные
+     * отображаются в новом порядке, а не возвращаются к порядку, в котором был отображен снимок.
+     */
+    @Test
+    public void testChangeSortOption_whileRefreshingSnapshot() {
+        final PackageInstalledRepository.OnLoadingFinishListener[] onLoadingFinishListener =
+                new PackageInstalledRepository.OnLoadingFinishListener[1];
+        mockSnapshot(new ArrayList<>(createTestData()));
+        Mockito.doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                onLoadingFinishListener[0] =
+                        (PackageInstalledRepository.OnLoadingFinishListener) invocation.getArguments()[3];
+                return null;
+            }
+        }).when(mPackageInstalledRepository).loadDataAsync(
+                anyBoolean(),
+                Mockito.eq(SortOption.BY_APP_NAME),
+                Mockito.any(PackageInstalledRepository.OnProgressUpdateListener.class),
+                Mockito.any(PackageInstalledRepository.OnLoadingFinishListener.class)
+        );
+
+        mMainPresenter.loadDataCached(true, createTestSortOption());
+        mMainPresenter.changeSortOption(new InstalledPackedSortOptionModel(SortOption.BY_APP_PACKAGE_NAME, "Package name"));
+        onLoadingFinishListener[0].onFinish(new ArrayList<>(createTestData()));
+
+        InOrder inOrder = Mockito.inOrder(mPackageInstalledView);
+        inOrder.verify(mPackageInstalledView).showData(createTestData(SortOption.BY_APP_NAME));
+        inOrder.verify(mPackageInstalledView, Mockito.times(2)).showData(createTestData(SortOption.BY_APP_PACKAGE_NAME));
+        inOrder.verifyNoMoreInteractions();
+    }
+
+    /**
+     * Тестирование замера сортировки и поиска в presenter с включенными метриками.
+     */
+    @Test
+    public void testMetrics() {
+        when(
+                mPackageInstalledRepository.getData(anyBoolean())
+        ).
+                thenReturn(new ArrayList<>(createTestData()));
+        Metrics metrics = new RecordingMetrics();
+        PackageInstalledPresenter presenter = new PackageInstalledPresenter(mPackageInstalledRepository, metrics);
+        presenter.attachView(mPackageInstalledView);
+
+        presenter.loadDataSync(true, createTestSortOption());
+        presenter.search("ru.");
+
+        MetricsSnapshot snapshot = metrics.getSnapshot();
+        assertEquals(2, snapshot.getStageStats(Metrics.Stage.SORT).getCount());
+        assertEquals(1, snapshot.getStageStats(Metrics.Stage.SEARCH).getCount());
+    }
+
     /**
      * Тестирование {@link PackageInstalledPresenter#sortData(List, SortOption)} на верность сортировки.
      */
@@ -180,6 +588,139 @@ public class PackageInstalledPresenterTest {
         verify(mPackageInstalledView).showSortOptions(createTestListSortOptions());
     }
 
+    /**
+     * Тестирование выбора режима получения списка приложений: режим передается в репозиторий без загрузки данных.
+     */
+    @Test
+    public void testSetScanMode() {
+        mMainPresenter.setScanMode(ScanMode.FULL_INVENTORY);
+
+        verify(mPackageInstalledRepository).setScanMode(ScanMode.FULL_INVENTORY);
+        verifyNoMoreInteractions(mPackageInstalledRepository);
+        verifyNoMoreInteractions(mPackageInstalledView);
+    }
+
+    /**
+     * Тестирование смены фильтра: данные, загруженные с системными приложениями, фильтруются без обращения к репозиторию.
+     */
+    @Test
+    public void testSetFilterSpec() {
+        when(
+                mPackageInstalledRepository.getData(anyBoolean())
+        ).
+                thenReturn(createTestData());
+
+        mMainPresenter.loadDataSync(true, createTestSortOption());
+        mMainPresenter.setFilterSpec(mMainPresenter.getFilterSpec().withSystemApps(false));
+        mMainPresenter.setFilterSpec(FilterSpec.ALL);
+
+        InOrder inOrder = Mockito.inOrder(mPackageInstalledView);
+        inOrder.verify(mPackageInstalledView).showData(createTestData(SortOption.BY_APP_NAME));
+        inOrder.verify(mPackageInstalledView).showData(Arrays.asList(
+                new InstalledPackageModel("Application","ru.package.app", null, false),
+                new InstalledPackageModel("Sberbank","ru.sberbankmobile", null, false)));
+        inOrder.verify(mPackageInstalledView).showData(createTestData(SortOption.BY_APP_NAME));
+        verify(mPackageInstalledRepository, Mockito.times(1)).getData(true);
+        verifyNoMoreInteractions(mPackageInstalledRepository);
+    }
+
+    /**
+     * Тестирование отображения системных приложений, скрытых при загрузке: они загружаются в любом случае,
+     * поэтому переключение их отображения к репозиторию не обращается.
+     */
+    @Test
+    public void testSetFilterSpec_showsSystemAppsWithoutLoading() {
+        when(
+                mPackageInstalledRepository.getData(anyBoolean())
+        ).
+                thenReturn(createTestData());
+
+        mMainPresenter.loadDataSync(false, createTestSortOption());
+        mMainPresenter.setFilterSpec(mMainPresenter.getFilterSpec().withSystemApps(true));
+
+        InOrder inOrder = Mockito.inOrder(mPackageInstalledView);
+        inOrder.verify(mPackageInstalledView).showData(Arrays.asList(
+                new InstalledPackageModel("Application","ru.package.app", null, false),
+                new InstalledPackageModel("Sberbank","ru.sberbankmobile", null, false)));
+        inOrder.verify(mPackageInstalledView).showData(createTestData(SortOption.BY_APP_NAME));
+        verify(mPackageInstalledRepository, Mockito.times(1)).getData(true);
+        verifyNoMoreInteractions(mPackageInstalledRepository);
+    }
+
+    /**
+     * Тестирование условия по установщику: установщик загружается только для фильтра с таким условием,
+     * до загрузки приложения условие не проходят, после загрузки список отображается заново.
+     */
+    @Test
+    public void testSetFilterSpec_installer() {
+        when(
+                mPackageInstalledRepository.getData(anyBoolean())
+        ).
+                thenReturn(createTestData());
+        final Map<String, PackageMetadataModel> metadata = Collections.singletonMap("ru.package.app",
+                new PackageMetadataModel("ru.package.app", 0, EnumSet.of(MetadataColumn.INSTALLER),
+                        null, 0, 0, 0, 0, "com.android.vending"));
+
+        Mockito.doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                PackageInstalledRepository.OnMetadataLoadedListener onMetadataLoadedListener =
+                        (PackageInstalledRepository.OnMetadataLoadedListener) invocation.getArguments()[2];
+                onMetadataLoadedListener.onMetadataLoaded(metadata);
+                return null;
+            }
+        }).when(mPackageInstalledRepository).loadMetadataAsync(
+                Mockito.eq(createTestData(SortOption.BY_APP_NAME)),
+                Mockito.eq(EnumSet.of(MetadataColumn.INSTALLER)),
+                Mockito.any(PackageInstalledRepository.OnMetadataLoadedListener.class)
+        );
+
+        mMainPresenter.loadDataSync(true, createTestSortOption());
+        mMainPresenter.setFilterSpec(FilterSpec.ALL.withInstaller("com.android.vending"));
+
+        InOrder inOrder = Mockito.inOrder(mPackageInstalledView);
+        inOrder.verify(mPackageInstalledView).showData(createTestData(SortOption.BY_APP_NAME));
+        inOrder.verify(mPackageInstalledView).showData(new ArrayList<InstalledPackageModel>());
+        inOrder.verify(mPackageInstalledView).showData(Collections.singletonList(
+                new InstalledPackageModel("Application","ru.package.app", null, false)));
+        verify(mPackageInstalledRepository, Mockito.times(1)).loadMetadataAsync(
+                Mockito.<InstalledPackageModel>anyList(),
+                Mockito.<MetadataColumn>anySet(),
+                Mockito.any(PackageInstalledRepository.OnMetadataLoadedListener.class));
+    }
+
+    /**
+     * Тестирование загрузки дополнительных данных: запрашиваются отображаемые столбцы,
+     * загруженные данные передаются в View.
+     */
+    @Test
+    public void testLoadMetadata() {
+        final List<InstalledPackageModel> testData = createTestData();
+        final Map<String, PackageMetadataModel> metadata = Collections.singletonMap("ru.package.app",
+                new PackageMetadataModel("ru.package.app", 0, PackageInstalledPresenter.DISPLAYED_METADATA_COLUMNS,
+                        "1.0", 1, 0, 29, 5, null));
+
+        Mockito.doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                PackageInstalledRepository.OnMetadataLoadedListener onMetadataLoadedListener =
+                        (PackageInstalledRepository.OnMetadataLoadedListener) invocation.getArguments()[2];
+                onMetadataLoadedListener.onMetadataLoaded(metadata);
+                return null;
+            }
+        }).when(mPackageInstalledRepository).loadMetadataAsync(
+                Mockito.eq(testData),
+                Mockito.eq(PackageInstalledPresenter.DISPLAYED_METADATA_COLUMNS),
+                Mockito.any(PackageInstalledRepository.OnMetadataLoadedListener.class)
+        );
+
+        mMainPresenter.loadMetadata(testData);
+        mMainPresenter.loadMetadata(new ArrayList<InstalledPackageModel>());
+
+        verify(mPackageInstalledView).showMetadata(metadata);
+        verifyNoMoreInteractions(mPackageInstalledView);
+    }
+
     /**
      * Тестирование {@link PackageInstalledPresenter#detachView()}.
      *
@@ -190,6 +731,8 @@ public class PackageInstalledPresenterTest {
         mMainPresenter.detachView();
 
         mMainPresenter.loadDataAsync(true, createTestSortOption());
+        mMainPresenter.loadDataStreaming(true, createTestSortOption());
+        mMainPresenter.loadDataCached(true, createTestSortOption());
         mMainPresenter.loadDataSync(true, createTestSortOption());
         mMainPresenter.loadSortOptions();
 
@@ -197,6 +740,24 @@ public class PackageInstalledPresenterTest {
     }
 
 
+    /**
+     * Передача снимка слушателю {@link PackageInstalledRepository#loadSnapshotAsync} сразу при запросе.
+     */
+    private void mockSnapshot(final List<InstalledPackageModel> snapshot) {
+        Mockito.doAnswer(new Answer() {
+            @Override
+            public Object answer(InvocationOnMock invocation) {
+                PackageInstalledRepository.OnSnapshotLoadedListener onSnapshotLoadedListener =
+                        (PackageInstalledRepository.OnSnapshotLoadedListener) invocation.getArguments()[1];
+                onSnapshotLoadedListener.onSnapshotLoaded(snapshot);
+                return null;
+            }
+        }).when(mPackageInstalledRepository).loadSnapshotAsync(
+                anyBoolean(),
+                Mockito.any(PackageInstalledRepository.OnSnapshotLoadedListener.class)
+        );
+    }
+
     /**
      * Создание тестового списка моделей с информацией по приложениям
      * @return список моделей, описывающих приложения
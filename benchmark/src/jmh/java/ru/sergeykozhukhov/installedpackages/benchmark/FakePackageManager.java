@@ -0,0 +1,82 @@
+package ru.sergeykozhukhov.installedpackages.benchmark;
+
+import androidx.annotation.NonNull;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Замена PackageManager для бенчмарков на обычной JVM: выдает заданное количество синтетических пакетов.
+ *
+ * <p> Данные детерминированы (фиксированное зерно генератора), поэтому результаты запусков сравнимы.
+ * Названия содержат латиницу и кириллицу в разном регистре, как на реальных устройствах,
+ * а часть названий повторяется, чтобы сортировка встречала равные ключи.
+ */
+class FakePackageManager {
+
+    private static final long SEED = 20191226L;
+    private static final String[] WORDS = {
+            "Camera", "calendar", "Сбербанк", "Карты", "mail", "Mail", "Notes", "заметки",
+            "Player", "Browser", "Ёлка", "weather", "Погода", "Files", "clock", "Музыка"
+    };
+    // доля системных пакетов на типичном устройстве
+    private static final double SYSTEM_SHARE = 0.6;
+
+    private final List<FakeApplicationInfo> mApplications;
+
+    FakePackageManager(int packageCount) {
+        Random random = new Random(SEED);
+        List<FakeApplicationInfo> applications = new ArrayList<>(packageCount);
+        for (int i = 0; i < packageCount; i++) {
+            String label = WORDS[random.nextInt(WORDS.length)] + " " + WORDS[random.nextInt(WORDS.length)]
+                    + (random.nextInt(4) == 0 ? "" : " " + random.nextInt(packageCount));
+            String packageName = (random.nextBoolean() ? "com." : "ru.") + "vendor" + random.nextInt(50)
+                    + ".app" + i;
+            boolean isSystem = random.nextDouble() < SYSTEM_SHARE;
+            long lastUpdateTime = 1500000000000L + random.nextInt(Integer.MAX_VALUE);
+            long appSize = 1024L * (64 + random.nextInt(512 * 1024));
+            applications.add(new FakeApplicationInfo(packageName, label, isSystem, lastUpdateTime, appSize));
+        }
+        mApplications = Collections.unmodifiableList(applications);
+    }
+
+    /**
+     * Аналог {@code PackageManager#getInstalledApplications}: каждый вызов возвращает новый список.
+     */
+    @NonNull
+    List<FakeApplicationInfo> getInstalledApplications() {
+        return new ArrayList<>(mApplications);
+    }
+
+    /**
+     * Аналог {@code ApplicationInfo#loadLabel}.
+     */
+    @NonNull
+    CharSequence loadLabel(@NonNull FakeApplicationInfo applicationInfo) {
+        return applicationInfo.mLabel;
+    }
+
+    /**
+     * Синтетический аналог ApplicationInfo с полями, которые использует репозиторий.
+     */
+    static class FakeApplicationInfo {
+
+        final String mPackageName;
+        final String mLabel;
+        final boolean mIsSystem;
+        // время изменения apk файла, по которому репозиторий определяет версию пакета
+        final long mLastUpdateTime;
+        final long mAppSize;
+
+        FakeApplicationInfo(@NonNull String packageName, @NonNull String label, boolean isSystem,
+                            long lastUpdateTime, long appSize) {
+            mPackageName = packageName;
+            mLabel = label;
+            mIsSystem = isSystem;
+            mLastUpdateTime = lastUpdateTime;
+            mAppSize = appSize;
+        }
+    }
+}
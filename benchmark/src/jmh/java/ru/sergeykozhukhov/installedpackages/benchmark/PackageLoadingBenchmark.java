@@ -0,0 +1,78 @@
+package ru.sergeykozhukhov.installedpackages.benchmark;
+
+import androidx.annotation.NonNull;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackageModel;
+import ru.sergeykozhukhov.installedpackages.data.repository.ParallelPackageLoader;
+
+/**
+ * Бенчмарки загрузки данных: путь {@code PackageInstalledRepository#getData} с заменой PackageManager
+ * на {@link FakePackageManager} и отдельно создание моделей.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PackageLoadingBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int packageCount;
+
+    private FakePackageManager mPackageManager;
+    private List<FakePackageManager.FakeApplicationInfo> mApplications;
+    private ParallelPackageLoader<FakePackageManager.FakeApplicationInfo> mLoader;
+    private ParallelPackageLoader.ModelFactory<FakePackageManager.FakeApplicationInfo> mModelFactory;
+
+    @Setup
+    public void setUp() {
+        mPackageManager = new FakePackageManager(packageCount);
+        mApplications = mPackageManager.getInstalledApplications();
+        mLoader = new ParallelPackageLoader<>();
+        mModelFactory = new ParallelPackageLoader.ModelFactory<FakePackageManager.FakeApplicationInfo>() {
+            @NonNull
+            @Override
+            public InstalledPackageModel create(@NonNull FakePackageManager.FakeApplicationInfo applicationInfo) {
+                return createModel(applicationInfo);
+            }
+        };
+    }
+
+    /**
+     * Получение списка пакетов и параллельное построение моделей, как в getData.
+     */
+    @Benchmark
+    public List<InstalledPackageModel> getData() {
+        return mLoader.load(mPackageManager.getInstalledApplications(), mModelFactory, null);
+    }
+
+    /**
+     * Построение моделей в одном потоке: стоимость самой модели, включая ключ сортировки названия.
+     */
+    @Benchmark
+    public void createModels(Blackhole blackhole) {
+        for (FakePackageManager.FakeApplicationInfo applicationInfo : mApplications) {
+            blackhole.consume(createModel(applicationInfo));
+        }
+    }
+
+    @NonNull
+    private InstalledPackageModel createModel(@NonNull FakePackageManager.FakeApplicationInfo applicationInfo) {
+        // ключ иконки строится так же, как IconCache#createKey
+        return new InstalledPackageModel(
+                mPackageManager.loadLabel(applicationInfo).toString(), applicationInfo.mPackageName,
+                applicationInfo.mPackageName + '_' + applicationInfo.mLastUpdateTime,
+                applicationInfo.mIsSystem, applicationInfo.mLastUpdateTime, applicationInfo.mAppSize);
+    }
+}
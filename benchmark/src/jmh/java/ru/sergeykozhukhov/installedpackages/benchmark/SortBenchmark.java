@@ -0,0 +1,92 @@
+package ru.sergeykozhukhov.installedpackages.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import ru.sergeykozhukhov.installedpackages.data.model.InstalledPackageModel;
+import ru.sergeykozhukhov.installedpackages.data.model.SortOption;
+import ru.sergeykozhukhov.installedpackages.data.sort.PackageSortIndex;
+import ru.sergeykozhukhov.installedpackages.data.sort.SortEngine;
+import ru.sergeykozhukhov.installedpackages.data.sort.SortSpec;
+
+/**
+ * Бенчмарки сортировки: {@code PackageInstalledPresenter#sortData}, сортировка компаратором для сравнения
+ * и индекс отсортированных представлений, используемый при смене сортировки.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class SortBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int packageCount;
+
+    @Param({"BY_APP_NAME", "BY_APP_PACKAGE_NAME", "BY_APP_SIZE", "BY_SYSTEM_THEN_APP_NAME"})
+    public SortOption sortOption;
+
+    private List<InstalledPackageModel> mModels;
+    private SortSpec mSortSpec;
+    private PackageSortIndex mSortIndex;
+
+    @Setup
+    public void setUp() {
+        FakePackageManager packageManager = new FakePackageManager(packageCount);
+        mModels = new ArrayList<>(packageCount);
+        for (FakePackageManager.FakeApplicationInfo applicationInfo : packageManager.getInstalledApplications()) {
+            mModels.add(new InstalledPackageModel(
+                    applicationInfo.mLabel, applicationInfo.mPackageName,
+                    applicationInfo.mPackageName + '_' + applicationInfo.mLastUpdateTime,
+                    applicationInfo.mIsSystem, applicationInfo.mLastUpdateTime, applicationInfo.mAppSize));
+        }
+        mSortSpec = SortSpec.forOption(sortOption);
+        mSortIndex = new PackageSortIndex(mModels);
+        mSortIndex.get(sortOption);
+    }
+
+    /**
+     * Сортировка копии списка так же, как в sortData.
+     */
+    @Benchmark
+    public List<InstalledPackageModel> sortData() {
+        List<InstalledPackageModel> data = new ArrayList<>(mModels);
+        SortEngine.sort(data, SortSpec.forOption(sortOption));
+        return data;
+    }
+
+    /**
+     * Сортировка копии списка компаратором в одном потоке - исходная реализация sortData.
+     */
+    @Benchmark
+    public List<InstalledPackageModel> collectionsSort() {
+        List<InstalledPackageModel> data = new ArrayList<>(mModels);
+        Collections.sort(data, mSortSpec.getComparator());
+        return data;
+    }
+
+    /**
+     * Первый выбор варианта сортировки: построение отсортированного представления.
+     */
+    @Benchmark
+    public List<InstalledPackageModel> buildSortIndex() {
+        return new PackageSortIndex(mModels).get(sortOption);
+    }
+
+    /**
+     * Повторный выбор варианта сортировки: представление уже построено.
+     */
+    @Benchmark
+    public List<InstalledPackageModel> switchSortOption() {
+        return mSortIndex.get(sortOption);
+    }
+}